@@ -0,0 +1,79 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.parser.AutoDetectParser;
+import org.jemberai.dataintake.domain.ParserModeEnum;
+import org.jemberai.dataintake.utils.tika.ApacheTikaDocumentMetaParser;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Configuration
+public class DocumentParserConfig {
+
+    /**
+     * Closed on shutdown, which stops the fork workers.
+     */
+    @Bean
+    public ApacheTikaDocumentMetaParser documentParser(JemberProperties jemberProperties) {
+        JemberProperties.ParserProperties parser = jemberProperties.getParser();
+
+        if (parser.getMode() == ParserModeEnum.FORK) {
+            JemberProperties.ParserProperties.Fork fork = parser.getFork();
+            log.info("Parsing documents in {} forked workers with {} heap", fork.getWorkers(), fork.getMaxHeap());
+
+            // one parse context per worker, callers wait here rather than for a worker
+            return new ApacheTikaDocumentMetaParser(forkParser(parser), fork.getWorkers(), parser.getTimeout(),
+                    parser.getMaxTextLength());
+        }
+
+        // loading the Tika configuration and parser registry is expensive, the parser is thread safe and shared
+        return new ApacheTikaDocumentMetaParser(new AutoDetectParser(), parser.getParseContextPoolSize(),
+                parser.getTimeout(), parser.getMaxTextLength());
+    }
+
+    /**
+     * Workers are started on first use. The parser and its classes are sent to the workers over their pipe, so the
+     * workers need no class path. A worker exits when a parse exceeds the timeout and is replaced after the maximum
+     * number of documents.
+     */
+    static ForkParser forkParser(JemberProperties.ParserProperties parser) {
+        JemberProperties.ParserProperties.Fork fork = parser.getFork();
+
+        String javaCommand = fork.getJavaCommand() != null ? fork.getJavaCommand()
+                : Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        ForkParser forkParser = new ForkParser(DocumentParserConfig.class.getClassLoader(), new AutoDetectParser());
+        forkParser.setPoolSize(fork.getWorkers());
+        forkParser.setJavaCommand(List.of(javaCommand, "-Xmx" + fork.getMaxHeap().toMegabytes() + "m",
+                "-XX:+ExitOnOutOfMemoryError"));
+        forkParser.setServerParseTimeoutMillis(parser.getTimeout().toMillis());
+        forkParser.setMaxFilesProcessedPerServer(fork.getMaxDocumentsPerWorker());
+
+        return forkParser;
+    }
+}
@@ -18,7 +18,6 @@
 
 package org.jemberai.dataintake.config;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.flywaydb.core.Flyway;
 import org.springframework.boot.jdbc.DatabaseDriver;
@@ -28,16 +27,38 @@ import org.springframework.jdbc.support.MetaDataAccessException;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
 import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
 @Slf4j
-@RequiredArgsConstructor
 public class FlywayMigrator {
     private final DataSource dataSource;
     private final String location;
     private final String vendorLocationPlaceholder;
+    private final List<String> optionalVendorLocationPlaceholders;
+    private final Map<String, String> placeholders;
+
+    public FlywayMigrator(DataSource dataSource, String location, String vendorLocationPlaceholder) {
+        this(dataSource, location, vendorLocationPlaceholder, List.of(), Map.of());
+    }
+
+    /**
+     * @param optionalVendorLocationPlaceholders further vendor locations, for migrations only needed by some
+     *                                           configurations
+     * @param placeholders                       Flyway placeholders for the migration scripts
+     */
+    public FlywayMigrator(DataSource dataSource, String location, String vendorLocationPlaceholder,
+                          List<String> optionalVendorLocationPlaceholders, Map<String, String> placeholders) {
+        this.dataSource = dataSource;
+        this.location = location;
+        this.vendorLocationPlaceholder = vendorLocationPlaceholder;
+        this.optionalVendorLocationPlaceholders = optionalVendorLocationPlaceholders;
+        this.placeholders = placeholders;
+    }
 
     void doMigration() {
         log.info("Starting KeyStore Flyway migration");
@@ -47,11 +68,13 @@ public class FlywayMigrator {
         String vendor = databaseDriver.getId();
         String vendorLocation = this.vendorLocationPlaceholder.replace(VENDOR_PLACEHOLDER, vendor);
 
-        String[] locations = {this.location, vendorLocation};
+        List<String> locations = new ArrayList<>(List.of(this.location, vendorLocation));
+        this.optionalVendorLocationPlaceholders.forEach(placeholder -> locations.add(placeholder.replace(VENDOR_PLACEHOLDER, vendor)));
 
         Flyway flyway = Flyway.configure()
                 .dataSource(this.dataSource)
-                .locations(locations)
+                .locations(locations.toArray(String[]::new))
+                .placeholders(this.placeholders)
                 .baselineOnMigrate(true)
                 .encoding(StandardCharsets.UTF_8)
                 .load();
@@ -20,6 +20,14 @@ package org.jemberai.dataintake.config;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.jemberai.dataintake.domain.ChunkStorageModeEnum;
+import org.jemberai.dataintake.domain.IterativeScanEnum;
+import org.jemberai.dataintake.domain.ParserModeEnum;
+import org.jemberai.dataintake.domain.QuantizationEnum;
+import org.jemberai.dataintake.domain.VectorIndexTypeEnum;
+import org.jemberai.dataintake.domain.VectorStoreTypeEnum;
+import org.jemberai.dataintake.utils.ReciprocalRankFusion;
+import org.jemberai.dataintake.utils.parser.PayloadParsers;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -27,6 +35,10 @@ import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -42,23 +54,59 @@ public class JemberProperties {
     private DataSource datasource = new DataSource();
     private Jpa jpa = new Jpa();
     private CryptographyProperties cryptography = new CryptographyProperties();
+    private EmbeddingProperties embedding = new EmbeddingProperties();
+    private WorkQueueProperties workQueue = new WorkQueueProperties();
+    private IngestProperties ingest = new IngestProperties();
+    private ChunkStorageProperties chunkStorage = new ChunkStorageProperties();
+    private KeywordSearchProperties keywordSearch = new KeywordSearchProperties();
+    private QueryProperties query = new QueryProperties();
+    private ParserProperties parser = new ParserProperties();
 
     @Setter
     @Getter
     public static class Llm {
         private OpenAi openAi = new OpenAi();
+        private RateLimit rateLimit = new RateLimit();
 
         @Getter
         @Setter
         public static class OpenAi {
             private String apiKey;
         }
+
+        @Getter
+        @Setter
+        public static class RateLimit {
+            /**
+             * Limit calls to the embedding model. Disable if limits are enforced elsewhere, e.g. by a gateway.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Maximum number of concurrent calls to the embedding model.
+             */
+            private int maxConcurrency = 8;
+
+            /**
+             * Requests per minute allowed by the provider.
+             */
+            private long requestsPerMinute = 3000;
+
+            /**
+             * Tokens per minute allowed by the provider.
+             */
+            private long tokensPerMinute = 1000000;
+        }
     }
 
     @Setter
     @Getter
     public static class Vectorstore {
+        private VectorStoreTypeEnum type = VectorStoreTypeEnum.MILVUS;
         private Milvus milvus = new Milvus();
+        private Local local = new Local();
+        private PgVector pgVector = new PgVector();
+        private StoreCache cache = new StoreCache();
 
         @Getter
         @Setter
@@ -68,6 +116,114 @@ public class JemberProperties {
             private String databaseName;
             private String username;
             private String password;
+
+            /**
+             * Return the stored vectors with search results, needed for includeEmbedding on queries.
+             */
+            private boolean retrieveEmbeddingsOnSearch = false;
+        }
+
+        @Getter
+        @Setter
+        public static class Local {
+            /**
+             * Directory for the index files, one sub directory per collection. Held in memory when not set, in which
+             * case the embeddings are lost on restart.
+             */
+            private Path directory;
+
+            /**
+             * Links per node of the HNSW graph, twice as many on the bottom layer. More links improve recall at the
+             * cost of memory and insert time.
+             */
+            private int m = 16;
+
+            /**
+             * Candidates considered when linking a new node.
+             */
+            private int efConstruction = 200;
+
+            /**
+             * Candidates considered by a search, at least the number of results requested.
+             */
+            private int efSearch = 64;
+
+            /**
+             * Log records after which the index is written to a snapshot and the log is emptied.
+             */
+            private int snapshotInterval = 10000;
+
+            /**
+             * Encoding of the vectors in the graph for new collections, unless the embedding configurations of the
+             * client select one. Quantized graphs use a quarter (INT8) or a thirty second (BINARY) of the memory and
+             * keep the full precision vectors in a memory mapped file for rescoring.
+             */
+            private QuantizationEnum quantization = QuantizationEnum.NONE;
+
+            /**
+             * Candidates taken from a quantized graph per requested result, rescored with the full precision vectors.
+             */
+            private int rescoreFactor = 4;
+        }
+
+        @Getter
+        @Setter
+        public static class PgVector {
+            /**
+             * Dimension of the vector column, fixed when the table is created and must match the embedding model.
+             */
+            private int dimension = 1536;
+
+            /**
+             * Index of the embedding column, rebuilt on startup when it or one of its options is changed.
+             */
+            private VectorIndexTypeEnum indexType = VectorIndexTypeEnum.HNSW;
+
+            /**
+             * HNSW links per node.
+             */
+            private int m = 16;
+
+            /**
+             * HNSW candidates considered when linking a new node.
+             */
+            private int efConstruction = 64;
+
+            /**
+             * IVFFlat number of lists, roughly rows / 1000 up to a million rows.
+             */
+            private int lists = 100;
+
+            /**
+             * HNSW candidates kept while searching, raised to the number of requested results per query. The index
+             * is shared by all clients, so the candidates are filtered on the client after the scan.
+             */
+            private int efSearch = 40;
+
+            /**
+             * IVFFlat lists searched per query.
+             */
+            private int probes = 1;
+
+            /**
+             * Scan the index further until enough rows pass the client and metadata filters, requires pgvector 0.8
+             * or later. Set to OFF for older versions.
+             */
+            private IterativeScanEnum iterativeScan = IterativeScanEnum.STRICT_ORDER;
+        }
+
+        @Getter
+        @Setter
+        public static class StoreCache {
+            /**
+             * Maximum number of embedding store instances kept open, one per collection and dimension.
+             */
+            private long maximumSize = 100;
+
+            /**
+             * Embedding stores not used for this long are closed and evicted.
+             */
+            private Duration expireAfterAccess = Duration.ofMinutes(30);
         }
     }
 
@@ -140,5 +296,259 @@ public class JemberProperties {
         private String jemberKeyId;
         private String jemberAesKey;
         private String jemberHmacKey;
+
+        /**
+         * Number of threads used to encrypt the chunks of a document before they are saved.
+         */
+        private int chunkEncryptionParallelism = Runtime.getRuntime().availableProcessors();
+
+        private KeyCache keyCache = new KeyCache();
+
+        @Getter
+        @Setter
+        public static class KeyCache {
+            /**
+             * Maximum number of keys cached, per cache.
+             */
+            private long maximumSize = 10000;
+
+            /**
+             * Keys are read from the keystore again after this long, so rotated or revoked keys are picked up.
+             */
+            private Duration timeToLive = Duration.ofMinutes(10);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class EmbeddingProperties {
+        /**
+         * Maximum number of text segments sent to the embedding model in a single call.
+         */
+        private int batchSize = 128;
+
+        /**
+         * Maximum estimated number of tokens sent to the embedding model in a single call.
+         * A segment larger than this budget is sent on its own.
+         */
+        private int maxTokensPerBatch = 16000;
+
+        private EmbeddingCache cache = new EmbeddingCache();
+
+        @Getter
+        @Setter
+        public static class EmbeddingCache {
+            /**
+             * Cache embeddings by model, dimension and hash of the text.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Maximum memory used by cached vectors, in bytes.
+             */
+            private long maximumWeightBytes = 64 * 1024 * 1024;
+
+            /**
+             * Also store embeddings in the primary database, shared by all nodes.
+             */
+            private boolean persistent = false;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class WorkQueueProperties {
+        /**
+         * Start the embedding work queue workers on this node.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of work items processed concurrently on this node.
+         */
+        private int concurrency = 4;
+
+        /**
+         * Maximum number of work items for a single client processed concurrently on this node, so one client
+         * cannot use all workers. Zero or less disables the limit.
+         */
+        private int maxConcurrencyPerClient = 2;
+
+        /**
+         * How often the queue is polled for due work items.
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * Claimed work items not completed within this time are considered abandoned and may be claimed
+         * by another node.
+         */
+        private Duration leaseTimeout = Duration.ofMinutes(15);
+
+        /**
+         * Number of attempts before a work item is moved to the dead letter state.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Delay before the first retry, doubled on each further attempt.
+         */
+        private Duration initialBackoff = Duration.ofSeconds(10);
+
+        /**
+         * Maximum delay between retries.
+         */
+        private Duration maxBackoff = Duration.ofMinutes(10);
+
+        /**
+         * Identifies this node in claimed work items, defaults to the JVM name (pid@host).
+         */
+        private String nodeId;
+    }
+
+    @Getter
+    @Setter
+    public static class IngestProperties {
+        /**
+         * Maximum size of an event payload sent to the streaming endpoint.
+         */
+        private DataSize maxPayloadSize = DataSize.ofMegabytes(512);
+
+        /**
+         * Directory for spooled payloads, defaults to the system temporary directory.
+         */
+        private Path spoolDirectory;
+
+        /**
+         * Maximum number of events accepted by the batch endpoint.
+         */
+        private int maxBatchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class ChunkStorageProperties {
+        /**
+         * ROW encrypts each chunk on its own, BLOCK packs the chunks of an event into encrypted blocks.
+         */
+        private ChunkStorageModeEnum mode = ChunkStorageModeEnum.ROW;
+
+        /**
+         * Target size of a block of chunk texts in BLOCK mode. A query decrypts whole blocks.
+         */
+        private DataSize blockSize = DataSize.ofKilobytes(256);
+    }
+
+    @Getter
+    @Setter
+    public static class KeywordSearchProperties {
+        /**
+         * Keep a full text index of chunk texts for KEYWORD and HYBRID search modes. The index holds the terms of
+         * the chunk texts unencrypted, keep the index directory on protected storage.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory for the index files, one sub directory per client. Held in memory when not set, in which case
+         * the index is rebuilt from the stored chunks after a restart. The index is local to each node, don't share
+         * the directory between nodes.
+         */
+        private Path indexDirectory;
+
+        /**
+         * How often a search first catches up the index with chunks saved since the last catch up, including those
+         * saved on other nodes.
+         */
+        private Duration syncInterval = Duration.ofSeconds(10);
+
+        /**
+         * How far before the newest indexed chunk the catch up looks for chunks. A transaction committing late can
+         * save chunks older than ones already indexed, and node clocks differ.
+         */
+        private Duration syncLookBack = Duration.ofMinutes(1);
+
+        /**
+         * In HYBRID mode each search returns top k times this many candidates for fusion.
+         */
+        private int hybridCandidateFactor = 4;
+
+        /**
+         * Rank constant of reciprocal rank fusion, higher values flatten the difference between ranks.
+         */
+        private int rrfK = ReciprocalRankFusion.DEFAULT_K;
+    }
+
+    @Getter
+    @Setter
+    public static class QueryProperties {
+        /**
+         * Maximum number of queries accepted by the batch query endpoint.
+         */
+        private int maxBatchSize = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class ParserProperties {
+        private ParserModeEnum mode = ParserModeEnum.IN_PROCESS;
+
+        /**
+         * Parse text/plain, JSON and text/csv payloads directly by their content type, without Tika.
+         */
+        private boolean fastPathEnabled = true;
+
+        /**
+         * Number of reusable Tika parse contexts, the maximum number of documents parsed concurrently in process.
+         */
+        private int parseContextPoolSize = 8;
+
+        /**
+         * Maximum time to parse a document. The event fails when it is exceeded.
+         */
+        private Duration timeout = Duration.ofMinutes(2);
+
+        /**
+         * Maximum number of characters extracted from a document, the event fails when it is exceeded. Zero or
+         * less for no limit.
+         */
+        private int maxTextLength = -1;
+
+        /**
+         * Text segments split ahead of the embedding stage while a document is parsed. The parser waits when the
+         * queue is full, so memory use does not grow with the document. Unbounded in FORK mode.
+         */
+        private int segmentQueueCapacity = 256;
+
+        /**
+         * Token budget of a text/csv segment. Whole rows are packed into a segment, a row over the budget is split
+         * on its own.
+         */
+        private int csvMaxTokensPerSegment = PayloadParsers.CSV_MAX_TOKENS_PER_SEGMENT;
+
+        private Fork fork = new Fork();
+
+        @Getter
+        @Setter
+        public static class Fork {
+            /**
+             * Number of worker JVMs, the maximum number of documents parsed concurrently.
+             */
+            private int workers = 4;
+
+            /**
+             * Maximum heap of a worker JVM.
+             */
+            private DataSize maxHeap = DataSize.ofMegabytes(512);
+
+            /**
+             * Java executable of the workers, defaults to the one running the service.
+             */
+            private String javaCommand;
+
+            /**
+             * Documents parsed by a worker before it is replaced, limiting the effect of leaks in parsers.
+             */
+            private int maxDocumentsPerWorker = 1000;
+        }
     }
-}
\ No newline at end of file
+}
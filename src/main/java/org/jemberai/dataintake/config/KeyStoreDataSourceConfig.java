@@ -18,6 +18,7 @@
 
 package org.jemberai.dataintake.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.zaxxer.hikari.HikariDataSource;
 import org.jemberai.cryptography.domain.EncryptionKeysListener;
 import org.jemberai.cryptography.keymanagement.AesKeyDTO;
@@ -37,7 +38,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -49,6 +50,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
 import java.util.Base64;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -63,6 +65,10 @@ import java.util.UUID;
         transactionManagerRef = "keyStoreTransactionManager")
 public class KeyStoreDataSourceConfig {
 
+    // caches used by JpaKeyService
+    public static final String DEFAULT_KEY_CACHE = "defaultKey";
+    public static final String KEY_BY_ID_CACHE = "getKeyById";
+
     @Bean
     public HikariDataSource dataSourceKeyStore(@Qualifier("dataSourcePropertiesKeyStore") DataSourceProperties dataSourcePropertiesKeyStore) {
         return dataSourcePropertiesKeyStore.initializeDataSourceBuilder()
@@ -128,9 +134,22 @@ public class KeyStoreDataSourceConfig {
         return new EncryptionProviderImpl(keyService);
     }
 
+    /**
+     * Bounded key caches with a time to live. The caches are created up front, so Spring Boot binds their
+     * hit, miss and eviction metrics (cache.gets etc.) at startup.
+     */
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("defaultKey", "getKeyById");
+    public CacheManager cacheManager(JemberProperties jemberProperties) {
+        JemberProperties.CryptographyProperties.KeyCache keyCache = jemberProperties.getCryptography().getKeyCache();
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(keyCache.getMaximumSize())
+                .expireAfterWrite(keyCache.getTimeToLive())
+                .recordStats());
+        cacheManager.setCacheNames(List.of(DEFAULT_KEY_CACHE, KEY_BY_ID_CACHE));
+
+        return cacheManager;
     }
 
 
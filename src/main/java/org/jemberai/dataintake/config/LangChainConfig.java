@@ -18,35 +18,126 @@
 
 package org.jemberai.dataintake.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModelName;
 import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.param.ConnectParam;
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.domain.EmbeddingConfiguration;
+import org.jemberai.dataintake.domain.QuantizationEnum;
+import org.jemberai.dataintake.domain.VectorStoreTypeEnum;
+import org.jemberai.dataintake.embedding.CachingEmbeddingModel;
+import org.jemberai.dataintake.embedding.CachingEmbeddingStoreFactory;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.jemberai.dataintake.embedding.JpaEmbeddingCacheStore;
+import org.jemberai.dataintake.embedding.RateLimitedEmbeddingModel;
+import org.jemberai.dataintake.embedding.local.LocalEmbeddingStoreFactory;
+import org.jemberai.dataintake.embedding.pgvector.PgVectorEmbeddingStoreFactory;
 import org.jemberai.dataintake.embedding.milvus.MilvusEmbeddingStoreFactory;
+import org.jemberai.dataintake.repositories.EmbeddingCacheEntryRepository;
+import org.jemberai.dataintake.repositories.EmbeddingConfigurationRepository;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
+@Slf4j
 @Configuration
 public class LangChainConfig {
 
     @Bean
-    EmbeddingModel openAiEmbeddingModelLangChain(JemberProperties jemberProperties) {
-        return OpenAiEmbeddingModel.builder()
+    EmbeddingModel openAiEmbeddingModelLangChain(JemberProperties jemberProperties, MeterRegistry meterRegistry,
+                                                 EmbeddingCacheEntryRepository embeddingCacheEntryRepository) {
+        EmbeddingModel embeddingModel = OpenAiEmbeddingModel.builder()
                 .apiKey(jemberProperties.getLlm().getOpenAi().getApiKey())
                 .modelName(OpenAiEmbeddingModelName.TEXT_EMBEDDING_3_SMALL)
                 .logRequests(true)
                 .logResponses(true)
                 .build();
+
+        if (jemberProperties.getLlm().getRateLimit().isEnabled()) {
+            embeddingModel = new RateLimitedEmbeddingModel(embeddingModel, jemberProperties.getLlm().getRateLimit());
+        }
+
+        JemberProperties.EmbeddingProperties.EmbeddingCache cache = jemberProperties.getEmbedding().getCache();
+
+        if (cache.isEnabled()) {
+            // cache hits do not count against the rate limit
+            embeddingModel = new CachingEmbeddingModel(embeddingModel, OpenAiEmbeddingModelName.TEXT_EMBEDDING_3_SMALL.toString(),
+                    cache, cache.isPersistent() ? new JpaEmbeddingCacheStore(embeddingCacheEntryRepository) : null,
+                    meterRegistry);
+        }
+
+        return embeddingModel;
     }
 
     @Bean
-    public EmbeddingStoreFactory milvusEmbeddingStoreFactory(JemberProperties jemberProperties) {
-        return new MilvusEmbeddingStoreFactory(MilvusEmbeddingStore.builder()
-                .host(jemberProperties.getVectorstore().getMilvus().getHost())
-                .port(Integer.parseInt(jemberProperties.getVectorstore().getMilvus().getPort())));
+    public EmbeddingStoreFactory embeddingStoreFactory(JemberProperties jemberProperties, DataSource dataSource,
+                                                       ObjectMapper objectMapper,
+                                                       EmbeddingConfigurationRepository embeddingConfigurationRepository) {
+        if (jemberProperties.getVectorstore().getType() == VectorStoreTypeEnum.LOCAL) {
+            JemberProperties.Vectorstore.Local local = jemberProperties.getVectorstore().getLocal();
+
+            // collections are per client
+            return new LocalEmbeddingStoreFactory(local,
+                    quantizationResolver(embeddingConfigurationRepository, local.getQuantization()));
+        }
+
+        if (jemberProperties.getVectorstore().getType() == VectorStoreTypeEnum.PGVECTOR) {
+            // the primary datasource, the embeddings are stored next to the chunks
+            return new PgVectorEmbeddingStoreFactory(new JdbcTemplate(dataSource), objectMapper,
+                    jemberProperties.getVectorstore().getPgVector());
+        }
+
+        JemberProperties.Vectorstore.Milvus milvus = jemberProperties.getVectorstore().getMilvus();
+
+        // one client for all collections, connected on first use
+        return new CachingEmbeddingStoreFactory(new MilvusEmbeddingStoreFactory(
+                () -> new MilvusServiceClient(ConnectParam.newBuilder()
+                        .withHost(milvus.getHost())
+                        .withPort(Integer.parseInt(milvus.getPort()))
+                        .build()),
+                () -> MilvusEmbeddingStore.builder()
+                        .retrieveEmbeddingsOnSearch(milvus.isRetrieveEmbeddingsOnSearch())),
+                jemberProperties.getVectorstore().getCache());
+    }
+
+    /**
+     * The quantization selected by the client's embedding configurations. If they select different ones the most
+     * precise is used, the collection is shared by all of them.
+     */
+    static Function<String, QuantizationEnum> quantizationResolver(EmbeddingConfigurationRepository repository,
+                                                                  QuantizationEnum defaultQuantization) {
+        return clientId -> {
+            List<QuantizationEnum> selected = repository.findByClientId(clientId).stream()
+                    .map(EmbeddingConfiguration::getQuantization)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+
+            if (selected.isEmpty()) {
+                return defaultQuantization;
+            }
+
+            if (selected.size() > 1) {
+                log.warn("Embedding configurations of client {} select quantizations {}, using {}", clientId, selected,
+                        selected.getFirst());
+            }
+
+            return selected.getFirst();
+        };
     }
 }
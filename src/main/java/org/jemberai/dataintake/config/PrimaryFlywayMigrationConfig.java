@@ -18,11 +18,14 @@
 
 package org.jemberai.dataintake.config;
 
+import org.jemberai.dataintake.domain.VectorStoreTypeEnum;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -32,9 +35,34 @@ public class PrimaryFlywayMigrationConfig {
 
     public static final String LOCATION = "classpath:db/migration";
     public static final String VENDOR_LOCATION_PLACEHOLDER = "classpath:db/vendor/{vendor}";
+    public static final String PGVECTOR_LOCATION_PLACEHOLDER = "classpath:db/pgvector/{vendor}";
 
     @Bean
-    public FlywayMigrator flywayMigratorPrimary(@Qualifier("dataSourcePrimaryFlyway") DataSource dataSourcePrimaryFlyway) {
-        return new FlywayMigrator( dataSourcePrimaryFlyway, LOCATION, VENDOR_LOCATION_PLACEHOLDER);
+    public FlywayMigrator flywayMigratorPrimary(@Qualifier("dataSourcePrimaryFlyway") DataSource dataSourcePrimaryFlyway,
+                                                JemberProperties jemberProperties) {
+        JemberProperties.Vectorstore vectorstore = jemberProperties.getVectorstore();
+
+        if (vectorstore.getType() != VectorStoreTypeEnum.PGVECTOR) {
+            return new FlywayMigrator( dataSourcePrimaryFlyway, LOCATION, VENDOR_LOCATION_PLACEHOLDER);
+        }
+
+        // the vector extension is only required when the embeddings are stored in Postgres
+        JemberProperties.Vectorstore.PgVector pgVector = vectorstore.getPgVector();
+
+        return new FlywayMigrator(dataSourcePrimaryFlyway, LOCATION, VENDOR_LOCATION_PLACEHOLDER,
+                List.of(PGVECTOR_LOCATION_PLACEHOLDER),
+                Map.of("embeddingDimension", String.valueOf(pgVector.getDimension()),
+                        "embeddingIndex", embeddingIndex(pgVector)));
+    }
+
+    /**
+     * Index method and options, cosine distance to match the similarity used by the other stores.
+     */
+    static String embeddingIndex(JemberProperties.Vectorstore.PgVector pgVector) {
+        return switch (pgVector.getIndexType()) {
+            case HNSW -> "hnsw (embedding vector_cosine_ops) with (m = %d, ef_construction = %d)"
+                    .formatted(pgVector.getM(), pgVector.getEfConstruction());
+            case IVFFLAT -> "ivfflat (embedding vector_cosine_ops) with (lists = %d)".formatted(pgVector.getLists());
+        };
     }
 }
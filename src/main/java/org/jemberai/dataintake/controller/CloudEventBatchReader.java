@@ -0,0 +1,78 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.jackson.JsonFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads structured mode CloudEvents sent either as a JSON array (application/cloudevents-batch+json) or as
+ * newline delimited JSON. Events are read one at a time, so an oversized batch is rejected without reading it all.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Component
+public class CloudEventBatchReader {
+
+    public static final String CLOUDEVENTS_BATCH_JSON = "application/cloudevents-batch+json";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectReader reader;
+
+    public CloudEventBatchReader(ObjectMapper objectMapper) {
+        this.reader = objectMapper.copy()
+                .registerModule(JsonFormat.getCloudEventJacksonModule())
+                .readerFor(CloudEvent.class);
+    }
+
+    public List<CloudEvent> read(InputStream inputStream, int maxEvents) {
+        List<CloudEvent> events = new ArrayList<>();
+
+        // a root level array is unwrapped, otherwise root level values are read in sequence
+        try (MappingIterator<CloudEvent> iterator = reader.readValues(inputStream)) {
+            while (iterator.hasNextValue()) {
+                if (events.size() >= maxEvents) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                            "Batch exceeds maximum of " + maxEvents + " events");
+                }
+
+                events.add(iterator.nextValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ResponseStatusException responseStatusException) {
+                throw responseStatusException;
+            }
+
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid CloudEvent batch: " + e.getMessage(), e);
+        }
+
+        return events;
+    }
+}
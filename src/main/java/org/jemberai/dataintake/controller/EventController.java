@@ -20,16 +20,26 @@ package org.jemberai.dataintake.controller;
 
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.v1.CloudEventBuilder;
+import io.cloudevents.http.HttpMessageFactory;
+import io.cloudevents.rw.CloudEventRWException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.model.BatchEventResponse;
 import org.jemberai.dataintake.service.EventRecordService;
 import org.jemberai.dataintake.service.EventRecordServiceImpl;
+import org.jemberai.dataintake.utils.SpooledPayload;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -41,6 +51,8 @@ import java.util.UUID;
 public class EventController {
 
     private final EventRecordService eventRecordService;
+    private final JemberProperties jemberProperties;
+    private final CloudEventBatchReader cloudEventBatchReader;
 
     @GetMapping(value = "/v1/event/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<CloudEvent> getEventById(@PathVariable("id") UUID id) {
@@ -61,4 +73,64 @@ public class EventController {
         return ResponseEntity.created(URI.create("/v1/event/" + savedEvent.getExtension(EventRecordServiceImpl.JEMBERAIEVENTID)))
                 .body(new CloudEventBuilder(savedEvent).build());
     }
+
+    /**
+     * Binary mode CloudEvent, attributes in ce- headers and the data as the raw request body. The body is streamed to
+     * a temporary file rather than bound into memory, and its size is capped. The response does not echo the data.
+     * <p>
+     * The data is still read into memory once to be encrypted, and the embedding worker parses the decrypted data
+     * from memory. The temporary file only lives for the request.
+     */
+    @PostMapping("/v1/event/stream")
+    public ResponseEntity<CloudEvent> stream(@RequestHeader HttpHeaders headers, HttpServletRequest request,
+                                             Authentication authentication) throws IOException {
+
+        String clientId = authentication.getName();
+
+        CloudEvent attributes = readAttributes(headers);
+
+        JemberProperties.IngestProperties ingest = jemberProperties.getIngest();
+
+        try (SpooledPayload payload = SpooledPayload.spool(request.getInputStream(), ingest.getSpoolDirectory(),
+                ingest.getMaxPayloadSize().toBytes())) {
+
+            CloudEvent savedEvent = eventRecordService.save(attributes, payload, clientId);
+
+            return ResponseEntity.created(URI.create("/v1/event/" + savedEvent.getExtension(EventRecordServiceImpl.JEMBERAIEVENTID)))
+                    .body(savedEvent);
+        }
+    }
+
+    /**
+     * Structured mode CloudEvents, as a JSON array or newline delimited JSON, saved in a single transaction.
+     * Returns the result for each event in the order sent.
+     */
+    @PostMapping(value = "/v1/event/batch",
+            consumes = {CloudEventBatchReader.CLOUDEVENTS_BATCH_JSON, CloudEventBatchReader.NDJSON},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchEventResponse> batch(HttpServletRequest request, Authentication authentication) throws IOException {
+
+        String clientId = authentication.getName();
+
+        List<CloudEvent> events = cloudEventBatchReader.read(request.getInputStream(),
+                jemberProperties.getIngest().getMaxBatchSize());
+
+        if (events.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch contains no events");
+        }
+
+        return ResponseEntity.ok(BatchEventResponse.builder()
+                .results(eventRecordService.saveAll(events, clientId))
+                .build());
+    }
+
+    private CloudEvent readAttributes(HttpHeaders headers) {
+        try {
+            return HttpMessageFactory.createReader(consumer -> headers.forEach((name, values) ->
+                            values.forEach(value -> consumer.accept(name, value))), new byte[0])
+                    .toEvent();
+        } catch (CloudEventRWException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
 }
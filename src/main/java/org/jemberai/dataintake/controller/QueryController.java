@@ -19,14 +19,20 @@
 package org.jemberai.dataintake.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.model.BatchQueryRequest;
+import org.jemberai.dataintake.model.BatchQueryResponse;
 import org.jemberai.dataintake.model.QueryRequest;
+import org.jemberai.dataintake.model.QueryResponse;
 import org.jemberai.dataintake.model.QueryResponseDocument;
 import org.jemberai.dataintake.service.QueryService;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 
@@ -38,6 +44,7 @@ import java.util.List;
 public class QueryController {
 
     private final QueryService queryService;
+    private final JemberProperties jemberProperties;
 
     @PostMapping("/v1/query")
     public List<QueryResponseDocument> getDocuments(@RequestParam(required = false) String clientId,
@@ -50,4 +57,35 @@ public class QueryController {
 
         return queryService.getDocuments(clientId, queryRequest);
     }
+
+    /**
+     * Runs several queries in one request. Returns the documents of each query in the order sent.
+     */
+    @PostMapping("/v1/query/batch")
+    public BatchQueryResponse getDocuments(@RequestParam(required = false) String clientId,
+                                           @RequestBody BatchQueryRequest batchQueryRequest,
+                                           Authentication authentication) {
+        if (clientId == null || clientId.isEmpty()) {
+            clientId = authentication.getName();
+        }
+
+        List<QueryRequest> queries = batchQueryRequest.getQueries();
+
+        if (queries == null || queries.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch contains no queries");
+        }
+
+        int maxBatchSize = jemberProperties.getQuery().getMaxBatchSize();
+
+        if (queries.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Batch exceeds the maximum of " + maxBatchSize + " queries");
+        }
+
+        return BatchQueryResponse.builder()
+                .results(queryService.getDocuments(clientId, queries).stream()
+                        .map(documents -> QueryResponse.builder().documents(documents).build())
+                        .toList())
+                .build();
+    }
 }
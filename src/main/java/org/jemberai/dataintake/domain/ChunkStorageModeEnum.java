@@ -0,0 +1,31 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * How chunk text is stored.
+ * <p>
+ * ROW - each chunk row is encrypted on its own.
+ * BLOCK - the chunk texts of an event are packed into encrypted blocks, chunk rows hold an offset into the block.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum ChunkStorageModeEnum {
+    ROW, BLOCK
+}
@@ -8,4 +8,9 @@ package org.jemberai.dataintake.domain;
 public class DocumentMetadataKeys {
     public static final String PARENT_DOCUMENT_ID = "parentDocumentId";
     public static final String CSV_HEADER = "csvHeader";
+    public static final String EVENT_ID = "eventId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String SOURCE = "source";
+    public static final String SUBJECT = "subject";
+    public static final String TIME = "time";
 }
@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent tier of the embedding cache. The vector is stored as little endian floats.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@ToString(exclude = "embedding")
+public class EmbeddingCacheEntry implements Persistable<String> {
+
+    // model name, dimension and SHA-256 of the text
+    @Id
+    @Column(length = 255, updatable = false, nullable = false)
+    private String cacheKey;
+
+    private byte[] embedding;
+
+    @CreationTimestamp
+    private LocalDateTime dateCreated;
+
+    // entries are never updated, saving a new entry should insert without selecting it first
+    @Transient
+    @Builder.Default
+    private boolean newEntry = true;
+
+    @Override
+    public String getId() {
+        return cacheKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntry = false;
+    }
+}
@@ -58,6 +58,12 @@ public class EmbeddingConfiguration {
     @Enumerated(EnumType.STRING)
     private EmbeddingModelEnum embeddingModel;
 
+    /**
+     * Quantization of the client's local vector store, the configured default when not set.
+     */
+    @Enumerated(EnumType.STRING)
+    private QuantizationEnum quantization;
+
     @CreationTimestamp
     private LocalDateTime dateCreated;
 
@@ -0,0 +1,87 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A unit of embedding work for an event record and embedding configuration. Work items are claimed by
+ * worker nodes, retried with backoff on failure and moved to DEAD_LETTER after the maximum number of attempts.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@ToString
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+public class EmbeddingWorkItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @JdbcTypeCode(SqlTypes.CHAR)
+    @Column(length = 36, columnDefinition = "char(36)", updatable = false, nullable = false)
+    private UUID id;
+
+    @Version
+    private Integer version;
+
+    @JdbcTypeCode(SqlTypes.CHAR)
+    @Column(length = 36, columnDefinition = "char(36)", updatable = false, nullable = false)
+    private UUID eventRecordId;
+
+    private String clientId;
+
+    @Enumerated(EnumType.STRING)
+    private ModelEnum model;
+
+    @Enumerated(EnumType.STRING)
+    private EmbeddingModelEnum embeddingModel;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    private WorkItemStatusEnum status = WorkItemStatusEnum.PENDING;
+
+    @Builder.Default
+    private int attempts = 0;
+
+    private LocalDateTime nextAttemptAt;
+
+    private String lockedBy;
+
+    private LocalDateTime lockedAt;
+
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime dateCreated;
+
+    @UpdateTimestamp
+    private LocalDateTime dateUpdated;
+}
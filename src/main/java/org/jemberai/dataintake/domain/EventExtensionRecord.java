@@ -48,7 +48,7 @@ public class EventExtensionRecord {
     @Version
     private Integer version;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "event_record_id")
     private EventRecord eventRecord;
 
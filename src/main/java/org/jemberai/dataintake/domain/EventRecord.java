@@ -31,11 +31,12 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
-@ToString(exclude = {"extensions", "data", "encryptedValue"})
+@ToString(exclude = {"extensions", "chunks", "data", "dataDecryptor", "encryptedValue"})
 @Getter
 @Setter
 @RequiredArgsConstructor
@@ -47,7 +48,8 @@ public class EventRecord {
     public EventRecord(UUID id, Integer version, String clientId, String specVersion, String eventType, String source,
                        String subject, String eventId, OffsetDateTime time, String dataContentType,
                        byte[] data, String sha256, EmbeddingStatusEnum embeddingStatus, List<EventExtensionRecord> extensions,
-                       List<EventRecordChunk> chunks, LocalDateTime dateCreated, LocalDateTime dateUpdated, String csvHeader) {
+                       List<EventRecordChunk> chunks, LocalDateTime dateCreated, LocalDateTime dateUpdated, String csvHeader,
+                       UUID duplicateOfId) {
         this.id = id;
         this.version = version;
         this.clientId = clientId;
@@ -66,6 +68,7 @@ public class EventRecord {
         this.dateCreated = dateCreated;
         this.dateUpdated = dateUpdated;
         this.csvHeader = csvHeader;
+        this.duplicateOfId = duplicateOfId;
 
         //Keeps JPA happy
         if (extensions != null) {
@@ -73,7 +76,10 @@ public class EventRecord {
         }
 
         if (this.chunks != null) {
-            this.chunks.forEach(chunk -> chunk.setEventRecord(this));
+            this.chunks.forEach(chunk -> {
+                chunk.setEventRecord(this);
+                chunk.setClientId(clientId);
+            });
         }
     }
 
@@ -105,8 +111,25 @@ public class EventRecord {
     private String dataContentType;
 
     @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private byte[] data;
 
+    /**
+     * Set by the entity listener on load, the data is only decrypted when first read.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Supplier<byte[]> dataDecryptor;
+
+    /**
+     * True when the data was set after loading, only then does the listener encrypt it again on update.
+     */
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private boolean dataModified;
+
     @Column(name = "data_provider")
     private String provider;
 
@@ -133,10 +156,18 @@ public class EventRecord {
 
     private String csvHeader; // Comma separated header attributes
 
-    @OneToMany(mappedBy = "eventRecord", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    /**
+     * Set when the data was identical to an already completed event, whose chunks and embeddings are used instead.
+     */
+    @JdbcTypeCode(SqlTypes.CHAR)
+    @Column(columnDefinition = "char(36)")
+    private UUID duplicateOfId;
+
+    @OneToMany(mappedBy = "eventRecord", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private List<EventExtensionRecord> extensions = new ArrayList<>();
 
-    @OneToMany(mappedBy = "eventRecord", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    // loading a chunk decrypts it, only load them when needed
+    @OneToMany(mappedBy = "eventRecord", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private List<EventRecordChunk> chunks = new ArrayList<>();
 
     @CreationTimestamp
@@ -145,6 +176,31 @@ public class EventRecord {
     @UpdateTimestamp
     private LocalDateTime dateUpdated;
 
+    public byte[] getData() {
+        if (data == null && dataDecryptor != null) {
+            data = dataDecryptor.get();
+            dataDecryptor = null;
+        }
+
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+        this.dataDecryptor = null;
+        this.dataModified = true;
+    }
+
+    void setDataDecryptor(Supplier<byte[]> dataDecryptor) {
+        this.data = null;
+        this.dataDecryptor = dataDecryptor;
+        this.dataModified = false;
+    }
+
+    void clearDataModified() {
+        this.dataModified = false;
+    }
+
     public void addExtension(EventExtensionRecord extension) {
         List<EventExtensionRecord> newExtensions = new ArrayList<>(extensions);
         newExtensions.add(extension);
@@ -154,6 +210,7 @@ public class EventRecord {
 
     public void addChunk(EventRecordChunk chunk) {
         chunk.setEventRecord(this);
+        chunk.setClientId(clientId);
         this.chunks.add(chunk);
     }
 }
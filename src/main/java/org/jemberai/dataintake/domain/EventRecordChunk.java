@@ -49,11 +49,25 @@ public class EventRecordChunk {
     @Version
     private Integer version;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "event_record_id", columnDefinition = "char(36)")
     @JdbcTypeCode(SqlTypes.CHAR)
     private EventRecord eventRecord;
 
+    /**
+     * Client id of the event record, the key for encryption. Kept on the chunk so a chunk is decrypted without
+     * loading its event record.
+     */
+    private String clientId;
+
+    /**
+     * Model and dimension of the embedding, an embedding is only reused by chunks embedded with the same ones.
+     */
+    @Enumerated(EnumType.STRING)
+    private EmbeddingModelEnum embeddingModel;
+
+    private Integer embeddingDimension;
+
     // This is the embedding id that is used to store the embedding in the embedding store.
     private String embeddingId;
 
@@ -64,6 +78,13 @@ public class EventRecordChunk {
      */
     private byte[] data;
 
+    /**
+     * Plain text kept by the listener while the data is replaced by the encrypted marker, so it can be restored
+     * after the insert without decrypting. Not copied by merge.
+     */
+    @Transient
+    private byte[] plainData;
+
     @Column(name = "data_provider")
     private String provider;
 
@@ -80,6 +101,17 @@ public class EventRecordChunk {
     @Column(name = "data_initialization_vector")
     private byte[] initializationVector;
 
+    /**
+     * Set in block storage mode, the data is then stored in the block at this offset and the data and encryption
+     * columns of the chunk are empty.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "block_id", columnDefinition = "char(36)")
+    @JdbcTypeCode(SqlTypes.CHAR)
+    private EventRecordChunkBlock block;
+
+    private Integer blockOffset;
+
     @Column(name = "sha_256")
     private String sha256;
 
@@ -26,6 +26,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+
 /**
  * We're making an assumption that the chunk entities will be persisted via the parent EventRecord entity.
  * <p>
@@ -36,6 +38,9 @@ import org.springframework.stereotype.Component;
 @Slf4j
 @Component
 public class EventRecordChunkListener {
+
+    public static final byte[] ENCRYPTED_MARKER = "encrypted".getBytes();
+
     private EncryptionProvider encryptionProvider;
 
     @Autowired
@@ -45,6 +50,11 @@ public class EventRecordChunkListener {
 
     @PrePersist
     public void prePersist(EventRecordChunk eventRecordChunk){
+        // the event record is in memory when a chunk is saved, not when it is loaded
+        if (eventRecordChunk.getClientId() == null && eventRecordChunk.getEventRecord() != null) {
+            eventRecordChunk.setClientId(eventRecordChunk.getEventRecord().getClientId());
+        }
+
         setEncryptedFields(eventRecordChunk);
     }
 
@@ -54,35 +64,63 @@ public class EventRecordChunkListener {
     }
 
     private void setEncryptedFields(EventRecordChunk eventRecordChunk) {
+        // already encrypted ahead of the flush, see ChunkEncryptionService, or stored in a block, see ChunkBlockService
+        if (isEncrypted(eventRecordChunk) || eventRecordChunk.getBlock() != null) {
+            return;
+        }
+
         setSha256(eventRecordChunk);
 
-        EncryptedValueDTO dto = encryptionProvider.encrypt(eventRecordChunk.getEventRecord().getClientId(), eventRecordChunk.getData());
+        EncryptedValueDTO dto = encryptionProvider.encrypt(eventRecordChunk.getClientId(), eventRecordChunk.getData());
 
+        eventRecordChunk.setPlainData(eventRecordChunk.getData());
+        setEncryptedValue(eventRecordChunk, dto);
+    }
+
+    public static boolean isEncrypted(EventRecordChunk eventRecordChunk) {
+        return eventRecordChunk.getEncryptedValue() != null && Arrays.equals(ENCRYPTED_MARKER, eventRecordChunk.getData());
+    }
+
+    public static void setEncryptedValue(EventRecordChunk eventRecordChunk, EncryptedValueDTO dto) {
         eventRecordChunk.setProvider(dto.provider());
         eventRecordChunk.setKeyId(dto.keyId());
         eventRecordChunk.setHmac(dto.hmac());
         eventRecordChunk.setEncryptedValue(dto.encryptedValue());
         eventRecordChunk.setInitializationVector(dto.initializationVector());
-        eventRecordChunk.setData("encrypted".getBytes());
+        eventRecordChunk.setData(ENCRYPTED_MARKER.clone());
     }
 
     @PostUpdate
     void postUpdate(EventRecordChunk eventRecordChunk) {
-        decryptData(eventRecordChunk);
+        restorePlainData(eventRecordChunk);
     }
 
     @PostPersist
     void postPersist(EventRecordChunk eventRecordChunk) {
-        decryptData(eventRecordChunk);
+        restorePlainData(eventRecordChunk);
     }
 
     @PostLoad
     public void postLoad(EventRecordChunk eventRecordChunk) {
-        decryptData(eventRecordChunk);
+        // block stored data is read through the block
+        if (eventRecordChunk.getBlock() == null) {
+            decryptData(eventRecordChunk);
+        }
+    }
+
+    /**
+     * No need to decrypt what was just encrypted. Chunks encrypted ahead of the flush keep the marker, their
+     * data is not needed after saving.
+     */
+    private static void restorePlainData(EventRecordChunk eventRecordChunk) {
+        if (eventRecordChunk.getPlainData() != null) {
+            eventRecordChunk.setData(eventRecordChunk.getPlainData());
+            eventRecordChunk.setPlainData(null);
+        }
     }
 
     private void decryptData(EventRecordChunk eventRecordChunk) {
-        eventRecordChunk.setData(encryptionProvider.decrypt(eventRecordChunk.getEventRecord().getClientId(),
+        eventRecordChunk.setData(encryptionProvider.decrypt(eventRecordChunk.getClientId(),
                 new EncryptedValueDTO(eventRecordChunk.getProvider(), eventRecordChunk.getKeyId(), eventRecordChunk.getHmac(),
                         eventRecordChunk.getEncryptedValue(), eventRecordChunk.getInitializationVector())));
     }
@@ -19,6 +19,8 @@
 package org.jemberai.dataintake.domain;
 
 import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import lombok.extern.slf4j.Slf4j;
@@ -46,9 +48,20 @@ public class EventRecordListener {
         setEncryptedFields(eventRecord);
     }
 
+    /**
+     * Status updates don't touch the data, it is only encrypted again when it was set after loading.
+     */
     @PreUpdate
     public void preUpdate(EventRecord eventRecord){
-        setEncryptedFields(eventRecord);
+        if (eventRecord.isDataModified()) {
+            setEncryptedFields(eventRecord);
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void postWrite(EventRecord eventRecord) {
+        eventRecord.clearDataModified();
     }
 
     private static void setSha256(EventRecord eventRecord) {
@@ -70,10 +83,16 @@ public class EventRecordListener {
         eventRecord.setInitializationVector(dto.initializationVector());
     }
 
+    /**
+     * Decryption is deferred until the data is read, callers which only need the status or other attributes don't
+     * pay for it. The decrypted data is kept on the entity instance.
+     */
     @PostLoad
     public void postLoad(EventRecord eventRecord) {
-        eventRecord.setData(encryptionProvider.decrypt(eventRecord.getClientId(),
-                new EncryptedValueDTO(eventRecord.getProvider(), eventRecord.getKeyId(), eventRecord.getHmac(),
-                        eventRecord.getEncryptedValue(), eventRecord.getInitializationVector())));
+        String clientId = eventRecord.getClientId();
+        EncryptedValueDTO encryptedValue = new EncryptedValueDTO(eventRecord.getProvider(), eventRecord.getKeyId(),
+                eventRecord.getHmac(), eventRecord.getEncryptedValue(), eventRecord.getInitializationVector());
+
+        eventRecord.setDataDecryptor(() -> encryptionProvider.decrypt(clientId, encryptedValue));
     }
 }
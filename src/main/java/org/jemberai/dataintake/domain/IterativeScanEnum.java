@@ -0,0 +1,33 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * Iterative index scans of pgvector 0.8 and later. The index is scanned further until enough rows pass the client
+ * and metadata filters, otherwise a filtered search can return fewer rows than requested.
+ * <p>
+ * OFF - a single scan of ef_search (HNSW) or probes (IVFFlat) candidates, for older pgvector versions.
+ * STRICT_ORDER - results in exact distance order, HNSW only. IVFFlat falls back to RELAXED_ORDER.
+ * RELAXED_ORDER - results may be slightly out of order, they are sorted again by the store.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum IterativeScanEnum {
+    OFF, STRICT_ORDER, RELAXED_ORDER
+}
@@ -0,0 +1,31 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * Where documents are parsed.
+ * <p>
+ * IN_PROCESS - in the service JVM, with a shared parser.
+ * FORK - in a pool of forked worker JVMs, so a document exhausting heap or hanging only takes down its worker.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum ParserModeEnum {
+    IN_PROCESS, FORK
+}
@@ -0,0 +1,34 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * Encoding of the vectors held in memory by the vector index.
+ * <p>
+ * NONE - 32 bit floats.
+ * INT8 - one byte per dimension and a scale per vector, 4x smaller.
+ * BINARY - the sign of each dimension as one bit, 32x smaller.
+ * <p>
+ * Quantized searches rescore the best candidates with the full precision vectors.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum QuantizationEnum {
+    NONE, INT8, BINARY
+}
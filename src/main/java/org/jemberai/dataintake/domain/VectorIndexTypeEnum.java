@@ -0,0 +1,31 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * Approximate nearest neighbour index of the pgvector embedding table.
+ * <p>
+ * HNSW - better speed and recall, slower to build and uses more memory.
+ * IVFFLAT - faster to build and smaller, best created once the table holds data.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum VectorIndexTypeEnum {
+    HNSW, IVFFLAT
+}
@@ -0,0 +1,32 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+/**
+ * Vector store holding the embeddings.
+ * <p>
+ * MILVUS - a Milvus cluster, one collection per client.
+ * LOCAL - an in-process HNSW index per client, optionally persisted to a local directory.
+ * PGVECTOR - a pgvector table in the primary Postgres database, next to the chunks.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public enum VectorStoreTypeEnum {
+    MILVUS, LOCAL, PGVECTOR
+}
@@ -0,0 +1,172 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.TokenCountEstimator;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jemberai.dataintake.config.JemberProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches embeddings by model name, dimension and SHA-256 of the text, so repeated queries and repeated
+ * boilerplate segments are not sent to the provider again.
+ * <p>
+ * Vectors are held in memory as float arrays, bounded by their size in bytes. An optional persistent tier is
+ * checked before calling the model and shared by all nodes.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, TokenCountEstimator {
+
+    // approximate size of the array header, cache key and entry
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final ToIntFunction<String> tokenEstimator;
+    private final Cache<String, float[]> cache;
+    private final EmbeddingCacheStore persistentStore;
+    private final Counter persistentHits;
+    private final Counter persistentMisses;
+
+    private volatile Integer dimension;
+
+    /**
+     * @param persistentStore persistent tier, or null to use the in memory tier only
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, JemberProperties.EmbeddingProperties.EmbeddingCache properties,
+                                 EmbeddingCacheStore persistentStore, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.tokenEstimator = EmbeddingBatcher.tokenEstimator(delegate);
+        this.persistentStore = persistentStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeightBytes())
+                .weigher((String key, float[] vector) -> vector.length * Float.BYTES + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "embedding", "model", modelName);
+
+        this.persistentHits = Counter.builder("embedding.cache.persistent")
+                .tag("model", modelName)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.persistentMisses = Counter.builder("embedding.cache.persistent")
+                .tag("model", modelName)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<String> keys = textSegments.stream()
+                .map(textSegment -> cacheKey(textSegment.text()))
+                .toList();
+
+        Map<String, float[]> found = new HashMap<>(cache.getAllPresent(keys));
+
+        // unique misses, in order of first appearance
+        Map<String, TextSegment> misses = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (!found.containsKey(keys.get(i))) {
+                misses.putIfAbsent(keys.get(i), textSegments.get(i));
+            }
+        }
+
+        if (!misses.isEmpty() && persistentStore != null) {
+            Map<String, float[]> stored = persistentStore.findAll(misses.keySet());
+
+            persistentHits.increment(stored.size());
+            persistentMisses.increment(misses.size() - stored.size());
+
+            cache.putAll(stored);
+            found.putAll(stored);
+            misses.keySet().removeAll(stored.keySet());
+        }
+
+        Response<List<Embedding>> response = null;
+
+        if (!misses.isEmpty()) {
+            log.debug("Embedding cache misses: {} of {} segments", misses.size(), textSegments.size());
+
+            List<String> missKeys = new ArrayList<>(misses.keySet());
+            response = delegate.embedAll(new ArrayList<>(misses.values()));
+
+            Map<String, float[]> embedded = new HashMap<>(missKeys.size());
+            for (int i = 0; i < missKeys.size(); i++) {
+                embedded.put(missKeys.get(i), response.content().get(i).vector());
+            }
+
+            cache.putAll(embedded);
+            found.putAll(embedded);
+
+            if (persistentStore != null) {
+                try {
+                    persistentStore.saveAll(embedded);
+                } catch (Exception e) {
+                    // another node may have stored the same text, the cache is best effort
+                    log.debug("Unable to save embeddings to persistent cache", e);
+                }
+            }
+        }
+
+        List<Embedding> embeddings = keys.stream()
+                .map(key -> Embedding.from(found.get(key)))
+                .toList();
+
+        return response == null ? Response.from(embeddings) : Response.from(embeddings, response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        if (dimension == null) {
+            dimension = delegate.dimension();
+        }
+
+        return dimension;
+    }
+
+    @Override
+    public int estimateTokenCount(String text) {
+        return tokenEstimator.applyAsInt(text);
+    }
+
+    String cacheKey(String text) {
+        return modelName + ":" + dimension() + ":" + DigestUtils.sha256Hex(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Keeps embedding stores open between requests. Creating a store opens a new client connection and checks,
+ * creates and loads the collection, which is too expensive to do for every ingest and query.
+ * <p>
+ * Stores are keyed by collection name and dimension and evicted after being idle. An evicted store may still
+ * be in use by another thread, so it is not closed; the delegate owns the connections and is destroyed on
+ * shutdown.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+public class CachingEmbeddingStoreFactory implements EmbeddingStoreFactory, DisposableBean {
+
+    private final EmbeddingStoreFactory delegate;
+    private final Cache<StoreKey, EmbeddingStore<TextSegment>> stores;
+
+    public CachingEmbeddingStoreFactory(EmbeddingStoreFactory delegate, JemberProperties.Vectorstore.StoreCache properties) {
+        this.delegate = delegate;
+        this.stores = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .build();
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> createEmbeddingStore(String collectionName, int dimension) {
+
+        if (collectionName == null) {
+            throw new IllegalArgumentException("Collection name must not be null");
+        }
+
+        return stores.get(new StoreKey(collectionName, dimension),
+                key -> delegate.createEmbeddingStore(key.collectionName(), key.dimension()));
+    }
+
+    public long size() {
+        stores.cleanUp();
+        return stores.estimatedSize();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        log.debug("Dropping {} embedding stores", stores.estimatedSize());
+        stores.invalidateAll();
+        stores.cleanUp();
+
+        if (delegate instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    record StoreKey(String collectionName, int dimension) {
+    }
+}
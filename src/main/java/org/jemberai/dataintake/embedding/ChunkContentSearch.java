@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+
+import java.util.List;
+
+/**
+ * Implemented by embedding stores which keep the vectors in the same database as the chunks. The search returns
+ * the chunk contents of the nearest embeddings directly, saving the separate chunk lookup.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface ChunkContentSearch {
+
+    record ChunkMatch(String embeddingId, double score, EventRecordChunkRepository.ChunkContent chunk) {
+    }
+
+    /**
+     * @return matches with a chunk, best first. Embeddings without a chunk of the client are skipped.
+     */
+    List<ChunkMatch> searchChunkContents(EmbeddingSearchRequest request);
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+/**
+ * Groups text segments into batches for {@link EmbeddingModel#embedAll(List)}. A batch is closed when adding
+ * the next segment would exceed either the maximum number of segments or the estimated token budget.
+ * <p>
+ * Not thread safe, create one per document.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class EmbeddingBatcher {
+
+    private final int batchSize;
+    private final int maxTokensPerBatch;
+    private final ToIntFunction<String> tokenEstimator;
+
+    private List<TextSegment> current = new ArrayList<>();
+    private int currentTokens = 0;
+
+    public EmbeddingBatcher(int batchSize, int maxTokensPerBatch, ToIntFunction<String> tokenEstimator) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+
+        this.batchSize = batchSize;
+        this.maxTokensPerBatch = maxTokensPerBatch;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    /**
+     * Creates a batcher using the model's own token estimate when it provides one, otherwise
+     * a rough estimate of four characters per token.
+     */
+    public static EmbeddingBatcher forModel(EmbeddingModel embeddingModel, int batchSize, int maxTokensPerBatch) {
+        return new EmbeddingBatcher(batchSize, maxTokensPerBatch, tokenEstimator(embeddingModel));
+    }
+
+    public static ToIntFunction<String> tokenEstimator(EmbeddingModel embeddingModel) {
+        if (embeddingModel instanceof TokenCountEstimator estimator) {
+            return estimator::estimateTokenCount;
+        }
+
+        return EmbeddingBatcher::estimateTokenCount;
+    }
+
+    public static int estimateTokenCount(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Adds a segment to the current batch.
+     *
+     * @return the previous batch if this segment did not fit into it
+     */
+    public Optional<List<TextSegment>> add(TextSegment segment) {
+        int tokens = tokenEstimator.applyAsInt(segment.text());
+
+        Optional<List<TextSegment>> closed = Optional.empty();
+
+        if (!current.isEmpty() && (current.size() >= batchSize || currentTokens + tokens > maxTokensPerBatch)) {
+            closed = Optional.of(current);
+            current = new ArrayList<>();
+            currentTokens = 0;
+        }
+
+        current.add(segment);
+        currentTokens += tokens;
+
+        return closed;
+    }
+
+    /**
+     * @return the remaining segments, if any
+     */
+    public Optional<List<TextSegment>> flush() {
+        if (current.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<TextSegment> closed = current;
+        current = new ArrayList<>();
+        currentTokens = 0;
+
+        return Optional.of(closed);
+    }
+
+    public List<List<TextSegment>> partition(List<TextSegment> segments) {
+        List<List<TextSegment>> batches = new ArrayList<>();
+
+        segments.forEach(segment -> add(segment).ifPresent(batches::add));
+        flush().ifPresent(batches::add);
+
+        return batches;
+    }
+}
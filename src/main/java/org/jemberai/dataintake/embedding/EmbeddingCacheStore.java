@@ -0,0 +1,37 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persistent tier of the embedding cache, shared by all nodes.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface EmbeddingCacheStore {
+
+    /**
+     * @return the cached vectors found, keyed by cache key
+     */
+    Map<String, float[]> findAll(Collection<String> cacheKeys);
+
+    void saveAll(Map<String, float[]> embeddings);
+}
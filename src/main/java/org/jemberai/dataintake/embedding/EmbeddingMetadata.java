@@ -0,0 +1,121 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.jemberai.dataintake.domain.DocumentMetadataKeys;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.model.QueryFilter;
+import org.jemberai.dataintake.utils.InvalidQueryFilterException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Event attributes stored with each embedding in the vector store, and the translation of a {@link QueryFilter}
+ * into a filter on them. Times are stored as epoch milliseconds so the store can compare them as numbers.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public final class EmbeddingMetadata {
+
+    /**
+     * Text stored in the vector store in place of the chunk text, which is only kept encrypted in the database.
+     */
+    public static final String PLACEHOLDER_TEXT = "-";
+
+    private EmbeddingMetadata() {
+    }
+
+    public static Metadata forEventRecord(EventRecord eventRecord) {
+        Metadata metadata = new Metadata();
+
+        if (eventRecord.getId() != null) {
+            metadata.put(DocumentMetadataKeys.PARENT_DOCUMENT_ID, eventRecord.getId().toString());
+        }
+        if (eventRecord.getEventId() != null) {
+            metadata.put(DocumentMetadataKeys.EVENT_ID, eventRecord.getEventId());
+        }
+        if (eventRecord.getEventType() != null) {
+            metadata.put(DocumentMetadataKeys.EVENT_TYPE, eventRecord.getEventType());
+        }
+        if (eventRecord.getSource() != null) {
+            metadata.put(DocumentMetadataKeys.SOURCE, eventRecord.getSource());
+        }
+        if (eventRecord.getSubject() != null) {
+            metadata.put(DocumentMetadataKeys.SUBJECT, eventRecord.getSubject());
+        }
+        if (eventRecord.getTime() != null) {
+            metadata.put(DocumentMetadataKeys.TIME, eventRecord.getTime().toInstant().toEpochMilli());
+        }
+
+        return metadata;
+    }
+
+    /**
+     * @return a segment carrying only the metadata, for adding an embedding to the vector store
+     */
+    public static TextSegment segment(Metadata metadata) {
+        return TextSegment.from(PLACEHOLDER_TEXT, metadata);
+    }
+
+    /**
+     * @return the filter, or null if the query filter has no conditions
+     */
+    public static Filter toFilter(QueryFilter queryFilter) {
+        if (queryFilter == null) {
+            return null;
+        }
+
+        if (queryFilter.getTimeFrom() != null && queryFilter.getTimeTo() != null
+                && !queryFilter.getTimeFrom().isBefore(queryFilter.getTimeTo())) {
+            throw new InvalidQueryFilterException("Filter timeFrom must be before timeTo");
+        }
+
+        List<Filter> filters = new ArrayList<>();
+
+        addIsIn(filters, DocumentMetadataKeys.EVENT_ID, queryFilter.getEventIds());
+        addIsIn(filters, DocumentMetadataKeys.EVENT_TYPE, queryFilter.getEventTypes());
+        addIsIn(filters, DocumentMetadataKeys.SOURCE, queryFilter.getSources());
+        addIsIn(filters, DocumentMetadataKeys.SUBJECT, queryFilter.getSubjects());
+
+        if (queryFilter.getTimeFrom() != null) {
+            filters.add(metadataKey(DocumentMetadataKeys.TIME)
+                    .isGreaterThanOrEqualTo(queryFilter.getTimeFrom().toInstant().toEpochMilli()));
+        }
+        if (queryFilter.getTimeTo() != null) {
+            filters.add(metadataKey(DocumentMetadataKeys.TIME)
+                    .isLessThan(queryFilter.getTimeTo().toInstant().toEpochMilli()));
+        }
+
+        return filters.stream().reduce(Filter::and).orElse(null);
+    }
+
+    private static void addIsIn(List<Filter> filters, String key, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+
+        filters.add(values.size() == 1 ? metadataKey(key).isEqualTo(values.getFirst()) : metadataKey(key).isIn(values));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import org.jemberai.dataintake.domain.EmbeddingCacheEntry;
+import org.jemberai.dataintake.repositories.EmbeddingCacheEntryRepository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Embedding cache tier stored in the primary database.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class JpaEmbeddingCacheStore implements EmbeddingCacheStore {
+
+    private final EmbeddingCacheEntryRepository embeddingCacheEntryRepository;
+
+    public JpaEmbeddingCacheStore(EmbeddingCacheEntryRepository embeddingCacheEntryRepository) {
+        this.embeddingCacheEntryRepository = embeddingCacheEntryRepository;
+    }
+
+    @Override
+    public Map<String, float[]> findAll(Collection<String> cacheKeys) {
+        return embeddingCacheEntryRepository.findAllById(cacheKeys).stream()
+                .collect(Collectors.toMap(EmbeddingCacheEntry::getCacheKey, entry -> toFloats(entry.getEmbedding())));
+    }
+
+    @Override
+    public void saveAll(Map<String, float[]> embeddings) {
+        embeddingCacheEntryRepository.saveAll(embeddings.entrySet().stream()
+                .map(entry -> EmbeddingCacheEntry.builder()
+                        .cacheKey(entry.getKey())
+                        .embedding(toBytes(entry.getValue()))
+                        .build())
+                .toList());
+    }
+
+    static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    static float[] toFloats(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.TokenCountEstimator;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToIntFunction;
+
+/**
+ * Limits concurrent calls to an embedding model and keeps request and token rates within the provider limits.
+ * Token usage is estimated before each call, using the model's own estimate where it provides one.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+public class RateLimitedEmbeddingModel implements EmbeddingModel, TokenCountEstimator {
+
+    private final EmbeddingModel delegate;
+    private final ToIntFunction<String> tokenEstimator;
+    private final Semaphore concurrency;
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+
+    public RateLimitedEmbeddingModel(EmbeddingModel delegate, JemberProperties.Llm.RateLimit rateLimit) {
+        this.delegate = delegate;
+        this.tokenEstimator = EmbeddingBatcher.tokenEstimator(delegate);
+        this.concurrency = new Semaphore(rateLimit.getMaxConcurrency(), true);
+        this.requests = new TokenBucket(rateLimit.getRequestsPerMinute());
+        this.tokens = new TokenBucket(rateLimit.getTokensPerMinute());
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        long estimatedTokens = textSegments.stream()
+                .mapToLong(textSegment -> tokenEstimator.applyAsInt(textSegment.text()))
+                .sum();
+
+        try {
+            requests.acquire(1);
+            tokens.acquire(estimatedTokens);
+            concurrency.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for embedding model rate limit", e);
+        }
+
+        try {
+            log.debug("Calling embedding model, segments: {}, estimated tokens: {}", textSegments.size(), estimatedTokens);
+            return delegate.embedAll(textSegments);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public int estimateTokenCount(String text) {
+        return tokenEstimator.applyAsInt(text);
+    }
+}
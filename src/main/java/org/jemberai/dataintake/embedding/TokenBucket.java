@@ -0,0 +1,93 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket refilled continuously at a fixed rate per minute. Callers reserve permits up front and wait
+ * for any deficit, so concurrent callers are spaced out evenly instead of all retrying when the bucket refills.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final long capacity;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+
+    private double available;
+    private long lastRefill;
+
+    public TokenBucket(long permitsPerMinute) {
+        this(permitsPerMinute, System::nanoTime);
+    }
+
+    TokenBucket(long permitsPerMinute, LongSupplier nanoClock) {
+        if (permitsPerMinute < 1) {
+            throw new IllegalArgumentException("Permits per minute must be greater than zero");
+        }
+
+        this.capacity = permitsPerMinute;
+        this.refillPerNano = (double) permitsPerMinute / NANOS_PER_MINUTE;
+        this.nanoClock = nanoClock;
+        this.available = permitsPerMinute;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes permits from the bucket. A request larger than the bucket capacity is limited to the capacity,
+     * otherwise it could never be satisfied.
+     *
+     * @return nanoseconds the caller must wait before using the permits
+     */
+    public synchronized long reserve(long permits) {
+        refill();
+
+        available -= Math.min(permits, capacity);
+
+        if (available >= 0) {
+            return 0;
+        }
+
+        return (long) Math.ceil(-available / refillPerNano);
+    }
+
+    public void acquire(long permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    synchronized double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Binary quantized vectors, one bit per dimension set if the value is positive. Similarity between stored vectors is
+ * derived from the hamming distance, 1 for equal signs in every dimension and -1 for opposite signs. Queries keep
+ * their float values and are compared with the sign vector, which ranks candidates noticeably better than hamming
+ * distance to a quantized query.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class BinaryGraphVectors implements GraphVectors {
+
+    private final int dimension;
+    private final int words;
+    private LongBuffer bits;
+    private int capacity = 0;
+
+    BinaryGraphVectors(int dimension) {
+        this.dimension = dimension;
+        this.words = (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    @Override
+    public QuantizationEnum quantization() {
+        return QuantizationEnum.BINARY;
+    }
+
+    @Override
+    public void allocate(int newCapacity) {
+        LongBuffer allocated = ByteBuffer.allocateDirect(newCapacity * bytesPerVector())
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+
+        if (bits != null) {
+            allocated.put(0, bits, 0, capacity * words);
+        }
+
+        bits = allocated;
+        capacity = newCapacity;
+    }
+
+    @Override
+    public void set(int node, float[] normalized) {
+        long[] encoded = encode(normalized);
+        bits.put(node * words, encoded);
+    }
+
+    @Override
+    public Query query(float[] normalized) {
+        float scale = (float) (1 / Math.sqrt(dimension));
+
+        // the query is not quantized, the sign bits are applied to its values
+        return node -> {
+            int offset = node * words;
+            float sum = 0;
+            for (int word = 0; word < words; word++) {
+                long value = bits.get(offset + word);
+                int base = word * Long.SIZE;
+                int end = Math.min(Long.SIZE, dimension - base);
+                for (int bit = 0; bit < end; bit++) {
+                    sum += (value & (1L << bit)) != 0 ? normalized[base + bit] : -normalized[base + bit];
+                }
+            }
+            return sum * scale;
+        };
+    }
+
+    @Override
+    public float similarity(int node, int other) {
+        int offset = node * words;
+        int otherOffset = other * words;
+        int distance = 0;
+        for (int i = 0; i < words; i++) {
+            distance += Long.bitCount(bits.get(offset + i) ^ bits.get(otherOffset + i));
+        }
+        return similarity(distance);
+    }
+
+    @Override
+    public float[] get(int node) {
+        int offset = node * words;
+        float value = (float) (1 / Math.sqrt(dimension));
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            boolean positive = (bits.get(offset + i / Long.SIZE) & (1L << (i % Long.SIZE))) != 0;
+            vector[i] = positive ? value : -value;
+        }
+        return vector;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, int size) throws IOException {
+        for (int i = 0; i < size * words; i++) {
+            out.writeLong(bits.get(i));
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in, int size) throws IOException {
+        for (int i = 0; i < size * words; i++) {
+            bits.put(i, in.readLong());
+        }
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return words * Long.BYTES;
+    }
+
+    private float similarity(int hammingDistance) {
+        return 1 - 2f * hammingDistance / dimension;
+    }
+
+    private long[] encode(float[] normalized) {
+        long[] encoded = new long[words];
+        for (int i = 0; i < dimension; i++) {
+            if (normalized[i] > 0) {
+                encoded[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Full precision vectors in a single off-heap buffer.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class FloatGraphVectors implements GraphVectors {
+
+    private final int dimension;
+    private FloatBuffer vectors;
+    private int capacity = 0;
+
+    FloatGraphVectors(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public QuantizationEnum quantization() {
+        return QuantizationEnum.NONE;
+    }
+
+    @Override
+    public void allocate(int newCapacity) {
+        FloatBuffer allocated = ByteBuffer.allocateDirect(newCapacity * bytesPerVector())
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+
+        if (vectors != null) {
+            allocated.put(0, vectors, 0, capacity * dimension);
+        }
+
+        vectors = allocated;
+        capacity = newCapacity;
+    }
+
+    @Override
+    public void set(int node, float[] normalized) {
+        vectors.put(node * dimension, normalized);
+    }
+
+    @Override
+    public Query query(float[] normalized) {
+        return node -> {
+            int offset = node * dimension;
+            float sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += normalized[i] * vectors.get(offset + i);
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public float similarity(int node, int other) {
+        int offset = node * dimension;
+        int otherOffset = other * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors.get(offset + i) * vectors.get(otherOffset + i);
+        }
+        return sum;
+    }
+
+    @Override
+    public float[] get(int node) {
+        float[] vector = new float[dimension];
+        vectors.get(node * dimension, vector);
+        return vector;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, int size) throws IOException {
+        for (int i = 0; i < size * dimension; i++) {
+            out.writeFloat(vectors.get(i));
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in, int size) throws IOException {
+        for (int i = 0; i < size * dimension; i++) {
+            vectors.put(i, in.readFloat());
+        }
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return dimension * Float.BYTES;
+    }
+}
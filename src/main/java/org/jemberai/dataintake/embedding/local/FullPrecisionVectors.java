@@ -0,0 +1,141 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Normalized full precision vectors of a quantized index, used to rescore search candidates. With a file the
+ * vectors are memory mapped in segments, so the operating system pages in only the vectors being rescored and they
+ * do not count against the index memory. Without a file they are held in off-heap buffers.
+ * <p>
+ * Vectors are written at the position of their node, writing a node again after a log replay is harmless.
+ * <p>
+ * Segments are only mapped by {@link #ensureCapacity(int)} and {@link #set(int, float[])}, which the store calls
+ * under its write lock. Reads under the read lock only use segments already mapped.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class FullPrecisionVectors implements Closeable {
+
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private final int dimension;
+    private final int vectorsPerSegment;
+    private final FileChannel channel;
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+
+    /**
+     * @param file file of the vectors, null to keep them in memory
+     */
+    FullPrecisionVectors(int dimension, Path file) throws IOException {
+        this.dimension = dimension;
+        this.vectorsPerSegment = Math.max(1, SEGMENT_BYTES / (dimension * Float.BYTES));
+        this.channel = file == null ? null
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Maps the segments for the given number of nodes, when the store is opened.
+     */
+    void ensureCapacity(int nodes) throws IOException {
+        if (nodes > 0) {
+            map(nodes - 1);
+        }
+    }
+
+    void set(int node, float[] normalized) throws IOException {
+        map(node).put((node % vectorsPerSegment) * dimension, normalized);
+    }
+
+    float similarity(float[] normalizedQuery, int node) {
+        FloatBuffer segment = segment(node);
+        int offset = (node % vectorsPerSegment) * dimension;
+
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += normalizedQuery[i] * segment.get(offset + i);
+        }
+        return sum;
+    }
+
+    float[] get(int node) {
+        float[] vector = new float[dimension];
+        segment(node).get((node % vectorsPerSegment) * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * Writes the mapped vectors to disk, before a snapshot which refers to them.
+     */
+    void force() {
+        mapped.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+
+    private FloatBuffer segment(int node) {
+        int index = node / vectorsPerSegment;
+
+        if (index >= segments.size()) {
+            throw new IllegalStateException("Full precision vector of node " + node + " is not mapped");
+        }
+
+        return segments.get(index);
+    }
+
+    private FloatBuffer map(int node) throws IOException {
+        int index = node / vectorsPerSegment;
+
+        while (segments.size() <= index) {
+            int bytes = vectorsPerSegment * dimension * Float.BYTES;
+            ByteBuffer buffer;
+
+            if (channel == null) {
+                buffer = ByteBuffer.allocateDirect(bytes);
+            } else {
+                // mapping read write extends the file to the end of the segment
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * bytes, bytes);
+                mapped.add(segment);
+                buffer = segment;
+            }
+
+            segments.add(buffer.order(ByteOrder.nativeOrder()).asFloatBuffer());
+        }
+
+        return segments.get(index);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Vectors used to traverse and build the HNSW graph, one per node, in the encoding of a {@link QuantizationEnum}.
+ * Vectors are normalized before they are encoded, similarities approximate cosine similarity.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+interface GraphVectors {
+
+    /**
+     * A query encoded for comparison with the stored vectors.
+     */
+    interface Query {
+        float similarity(int node);
+    }
+
+    static GraphVectors create(QuantizationEnum quantization, int dimension) {
+        return switch (quantization) {
+            case NONE -> new FloatGraphVectors(dimension);
+            case INT8 -> new Int8GraphVectors(dimension);
+            case BINARY -> new BinaryGraphVectors(dimension);
+        };
+    }
+
+    QuantizationEnum quantization();
+
+    /**
+     * @param capacity number of nodes to make room for, existing vectors are kept
+     */
+    void allocate(int capacity);
+
+    void set(int node, float[] normalized);
+
+    Query query(float[] normalized);
+
+    float similarity(int node, int other);
+
+    /**
+     * @return the vector as stored, decoded as far as the encoding allows
+     */
+    float[] get(int node);
+
+    void writeTo(DataOutput out, int size) throws IOException;
+
+    void readFrom(DataInput in, int size) throws IOException;
+
+    /**
+     * Bytes per vector, to check the capacity fits a single buffer.
+     */
+    int bytesPerVector();
+}
@@ -0,0 +1,403 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest neighbour search by cosine similarity.
+ * <p>
+ * Vectors are normalized on insert and kept off-heap as {@link GraphVectors}, in full precision or quantized. With
+ * quantization, similarities are approximate and callers rescore the results. Nodes are numbered in insertion order.
+ * Neighbours are chosen with the heuristic of the HNSW paper, which keeps links to different regions of the graph
+ * rather than only the closest nodes.
+ * <p>
+ * Not thread safe, callers synchronize.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private final GraphVectors vectors;
+    private int capacity;
+    private int size = 0;
+
+    private int[] levels;
+
+    /**
+     * Per node and level, element 0 is the number of links followed by the linked nodes.
+     */
+    private int[][][] links;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    record Result(int node, float similarity) {
+    }
+
+    HnswIndex(int dimension, int m, int efConstruction) {
+        this(dimension, m, efConstruction, QuantizationEnum.NONE);
+    }
+
+    HnswIndex(int dimension, int m, int efConstruction, QuantizationEnum quantization) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Dimension must be greater than zero");
+        }
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2");
+        }
+
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = GraphVectors.create(quantization, dimension);
+
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    QuantizationEnum quantization() {
+        return vectors.quantization();
+    }
+
+    /**
+     * @return the node number of the vector
+     */
+    int add(float[] vector) {
+        int node = store(vector);
+        int level = randomLevel();
+
+        levels[node] = level;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        GraphVectors.Query query = vectors.query(normalize(vector));
+        int nearest = entryPoint;
+
+        for (int l = maxLevel; l > level; l--) {
+            nearest = searchLayer(query, nearest, 1, l, null).getFirst().node();
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Result> candidates = searchLayer(query, nearest, efConstruction, l, null);
+            List<Result> selected = selectNeighbours(candidates, maxLinks(l));
+
+            for (Result neighbour : selected) {
+                link(node, neighbour.node(), l);
+                addLink(neighbour.node(), node, l);
+            }
+
+            nearest = candidates.getFirst().node();
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+
+        return node;
+    }
+
+    /**
+     * @param accept nodes which may be returned, the graph is traversed through rejected nodes too. Null accepts all.
+     * @return up to k nodes, most similar first
+     */
+    List<Result> search(float[] vector, int k, int ef, IntPredicate accept) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but was " + vector.length);
+        }
+
+        if (entryPoint < 0 || k < 1) {
+            return List.of();
+        }
+
+        GraphVectors.Query query = vectors.query(normalize(vector));
+        int nearest = entryPoint;
+
+        for (int l = maxLevel; l > 0; l--) {
+            nearest = searchLayer(query, nearest, 1, l, null).getFirst().node();
+        }
+
+        List<Result> results = searchLayer(query, nearest, Math.max(ef, k), 0, accept);
+
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    /**
+     * @return the normalized vector, decoded from the quantized form if quantized
+     */
+    float[] vector(int node) {
+        return vectors.get(node);
+    }
+
+    /**
+     * Best first search of one layer.
+     *
+     * @return up to ef accepted nodes, most similar first
+     */
+    private List<Result> searchLayer(GraphVectors.Query query, int entry, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Result> candidates = new PriorityQueue<>(Comparator.comparing(Result::similarity).reversed());
+        PriorityQueue<Result> results = new PriorityQueue<>(Comparator.comparing(Result::similarity));
+
+        Result start = new Result(entry, query.similarity(entry));
+        visited.set(entry);
+        candidates.add(start);
+        if (accept == null || accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Result candidate = candidates.poll();
+
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+
+            int[] nodeLinks = links[candidate.node()][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbour = nodeLinks[i];
+
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float similarity = query.similarity(neighbour);
+
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Result result = new Result(neighbour, similarity);
+                    candidates.add(result);
+
+                    if (accept == null || accept.test(neighbour)) {
+                        results.add(result);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(Result::similarity).reversed());
+        return sorted;
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the node than to any neighbour already selected.
+     *
+     * @param candidates most similar first
+     */
+    private List<Result> selectNeighbours(List<Result> candidates, int max) {
+        List<Result> selected = new ArrayList<>(max);
+
+        for (Result candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+
+            boolean diverse = true;
+            for (Result other : selected) {
+                if (vectors.similarity(candidate.node(), other.node()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+
+        return selected;
+    }
+
+    private void addLink(int node, int neighbour, int level) {
+        int[] nodeLinks = links[node][level];
+
+        if (nodeLinks[0] < nodeLinks.length - 1) {
+            link(node, neighbour, level);
+            return;
+        }
+
+        // full, select again from the existing links and the new one
+        List<Result> candidates = new ArrayList<>(nodeLinks[0] + 1);
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            candidates.add(new Result(nodeLinks[i], vectors.similarity(node, nodeLinks[i])));
+        }
+        candidates.add(new Result(neighbour, vectors.similarity(node, neighbour)));
+        candidates.sort(Comparator.comparing(Result::similarity).reversed());
+
+        List<Result> selected = selectNeighbours(candidates, maxLinks(level));
+
+        nodeLinks[0] = 0;
+        selected.forEach(result -> link(node, result.node(), level));
+    }
+
+    private void link(int node, int neighbour, int level) {
+        int[] nodeLinks = links[node][level];
+        nodeLinks[++nodeLinks[0]] = neighbour;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int store(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but was " + vector.length);
+        }
+
+        if (size == capacity) {
+            allocate(capacity * 2);
+        }
+
+        vectors.set(size, normalize(vector));
+        return size++;
+    }
+
+    private void allocate(int newCapacity) {
+        if ((long) newCapacity * vectors.bytesPerVector() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Local vector index is full, " + size + " vectors of dimension " + dimension);
+        }
+
+        vectors.allocate(newCapacity);
+        levels = levels == null ? new int[newCapacity] : Arrays.copyOf(levels, newCapacity);
+        links = links == null ? new int[newCapacity][][] : Arrays.copyOf(links, newCapacity);
+        capacity = newCapacity;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+
+        float[] normalized = vector.clone();
+
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+
+        return normalized;
+    }
+
+    /**
+     * Writes the vectors and the graph, so loading does not have to build the graph again.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeUTF(vectors.quantization().name());
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+
+        vectors.writeTo(out, size);
+
+        for (int node = 0; node < size; node++) {
+            out.writeInt(levels[node]);
+            for (int l = 0; l <= levels[node]; l++) {
+                int[] nodeLinks = links[node][l];
+                out.writeInt(nodeLinks[0]);
+                for (int i = 1; i <= nodeLinks[0]; i++) {
+                    out.writeInt(nodeLinks[i]);
+                }
+            }
+        }
+    }
+
+    static HnswIndex readFrom(DataInput in, int efConstruction) throws IOException {
+        int dimension = in.readInt();
+        int m = in.readInt();
+        QuantizationEnum quantization = QuantizationEnum.valueOf(in.readUTF());
+        int size = in.readInt();
+
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, quantization);
+        index.allocate(Math.max(INITIAL_CAPACITY, size));
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+
+        index.vectors.readFrom(in, size);
+
+        for (int node = 0; node < size; node++) {
+            int level = in.readInt();
+            index.levels[node] = level;
+            index.links[node] = new int[level + 1][];
+
+            for (int l = 0; l <= level; l++) {
+                int[] nodeLinks = new int[index.maxLinks(l) + 1];
+                nodeLinks[0] = in.readInt();
+                for (int i = 1; i <= nodeLinks[0]; i++) {
+                    nodeLinks[i] = in.readInt();
+                }
+                index.links[node][l] = nodeLinks;
+            }
+        }
+
+        index.size = size;
+        return index;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Scalar quantized vectors, each dimension as a signed byte scaled by the largest absolute value of the vector.
+ * Queries stay in full precision and are compared with the decoded bytes.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class Int8GraphVectors implements GraphVectors {
+
+    private final int dimension;
+    private ByteBuffer codes;
+    private float[] scales;
+    private int capacity = 0;
+
+    Int8GraphVectors(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public QuantizationEnum quantization() {
+        return QuantizationEnum.INT8;
+    }
+
+    @Override
+    public void allocate(int newCapacity) {
+        ByteBuffer allocated = ByteBuffer.allocateDirect(newCapacity * bytesPerVector());
+
+        if (codes != null) {
+            allocated.put(0, codes, 0, capacity * dimension);
+        }
+
+        codes = allocated;
+        scales = scales == null ? new float[newCapacity] : Arrays.copyOf(scales, newCapacity);
+        capacity = newCapacity;
+    }
+
+    @Override
+    public void set(int node, float[] normalized) {
+        float max = 0;
+        for (float value : normalized) {
+            max = Math.max(max, Math.abs(value));
+        }
+
+        float scale = max == 0 ? 1 : max / Byte.MAX_VALUE;
+        int offset = node * dimension;
+
+        for (int i = 0; i < dimension; i++) {
+            codes.put(offset + i, (byte) Math.round(normalized[i] / scale));
+        }
+
+        scales[node] = scale;
+    }
+
+    @Override
+    public Query query(float[] normalized) {
+        return node -> {
+            int offset = node * dimension;
+            float sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += normalized[i] * codes.get(offset + i);
+            }
+            return sum * scales[node];
+        };
+    }
+
+    @Override
+    public float similarity(int node, int other) {
+        int offset = node * dimension;
+        int otherOffset = other * dimension;
+        int sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += codes.get(offset + i) * codes.get(otherOffset + i);
+        }
+        return sum * scales[node] * scales[other];
+    }
+
+    @Override
+    public float[] get(int node) {
+        int offset = node * dimension;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = codes.get(offset + i) * scales[node];
+        }
+        return vector;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, int size) throws IOException {
+        for (int node = 0; node < size; node++) {
+            out.writeFloat(scales[node]);
+            for (int i = 0; i < dimension; i++) {
+                out.writeByte(codes.get(node * dimension + i));
+            }
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in, int size) throws IOException {
+        for (int node = 0; node < size; node++) {
+            scales[node] = in.readFloat();
+            for (int i = 0; i < dimension; i++) {
+                codes.put(node * dimension + i, in.readByte());
+            }
+        }
+    }
+
+    @Override
+    public int bytesPerVector() {
+        return dimension;
+    }
+}
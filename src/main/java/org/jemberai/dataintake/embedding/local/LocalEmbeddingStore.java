@@ -0,0 +1,401 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.QuantizationEnum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Embedding store backed by an in-process {@link HnswIndex}, for development, tests and small deployments without
+ * a Milvus cluster.
+ * <p>
+ * With a directory the store is persistent: additions are written to a write ahead log before they are indexed, and
+ * after a number of log records the whole index, including the graph, is written to a snapshot and the log is
+ * emptied. Opening the store loads the snapshot and replays the log. Without a directory it is held in memory only.
+ * <p>
+ * With quantization the graph holds quantized vectors and the full precision vectors are kept in a memory mapped
+ * file, or off-heap without a directory. A search takes rescore factor times the requested number of candidates from
+ * the graph and ranks them by their full precision similarity.
+ * <p>
+ * Searches run concurrently, additions are exclusive. Returned embeddings are normalized to unit length.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+public class LocalEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    static final String WAL_FILE = "wal.log";
+    static final String VECTORS_FILE = "vectors.f32";
+
+    private static final int SNAPSHOT_MAGIC = 0x4A454D48;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Path directory;
+    private final int efSearch;
+    private final int snapshotInterval;
+    private final int rescoreFactor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+
+    private final HnswIndex index;
+    private final FullPrecisionVectors fullPrecisionVectors;
+    private final WriteAheadLog writeAheadLog;
+    private int logRecords = 0;
+
+    public LocalEmbeddingStore(int dimension, JemberProperties.Vectorstore.Local properties, Path directory) {
+        this(dimension, properties, directory, properties.getQuantization());
+    }
+
+    /**
+     * @param directory    directory of the store files, null to keep the store in memory only
+     * @param quantization quantization of a new store, an existing store keeps the quantization it was created with
+     */
+    public LocalEmbeddingStore(int dimension, JemberProperties.Vectorstore.Local properties, Path directory,
+                               QuantizationEnum quantization) {
+        this.directory = directory;
+        this.efSearch = properties.getEfSearch();
+        this.snapshotInterval = properties.getSnapshotInterval();
+        this.rescoreFactor = Math.max(1, properties.getRescoreFactor());
+
+        try {
+            if (directory == null) {
+                this.index = new HnswIndex(dimension, properties.getM(), properties.getEfConstruction(), quantization);
+                this.fullPrecisionVectors = quantization == QuantizationEnum.NONE ? null
+                        : new FullPrecisionVectors(dimension, null);
+                this.writeAheadLog = null;
+                return;
+            }
+
+            Files.createDirectories(directory);
+
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            this.index = Files.exists(snapshot) ? readSnapshot(snapshot, properties.getEfConstruction())
+                    : new HnswIndex(dimension, properties.getM(), properties.getEfConstruction(), quantization);
+
+            if (index.dimension() != dimension) {
+                throw new IllegalStateException("Local vector store " + directory + " has dimension " + index.dimension()
+                        + ", not " + dimension);
+            }
+
+            if (index.quantization() != quantization) {
+                log.warn("Local vector store {} was created with quantization {}, not changed to {}", directory,
+                        index.quantization(), quantization);
+            }
+
+            this.fullPrecisionVectors = index.quantization() == QuantizationEnum.NONE ? null
+                    : new FullPrecisionVectors(dimension, directory.resolve(VECTORS_FILE));
+
+            // searches only read the vectors, map those of the snapshot before the store is used
+            if (fullPrecisionVectors != null) {
+                fullPrecisionVectors.ensureCapacity(index.size());
+            }
+
+            this.writeAheadLog = new WriteAheadLog(directory.resolve(WAL_FILE));
+
+            List<WriteAheadLog.Entry> entries = writeAheadLog.replay();
+            // entries already in the snapshot are skipped, if the log was not emptied after the last snapshot
+            for (WriteAheadLog.Entry entry : entries) {
+                insert(entry.id(), entry.vector(), entry.segment());
+            }
+            logRecords = entries.size();
+
+            log.debug("Opened local vector store {} with {} embeddings, {} from the log", directory, ids.size(), logRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening local vector store " + directory, e);
+        }
+    }
+
+    public int dimension() {
+        return index.dimension();
+    }
+
+    public QuantizationEnum quantization() {
+        return index.quantization();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        store(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return addAll(List.of(embedding), textSegment == null ? null : List.of(textSegment)).getFirst();
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> newIds = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+
+        store(newIds, embeddings, textSegments);
+
+        return newIds;
+    }
+
+    private void store(List<String> newIds, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (textSegments != null && textSegments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("The number of embeddings and text segments must match");
+        }
+
+        List<WriteAheadLog.Entry> entries = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            float[] vector = embeddings.get(i).vector();
+
+            if (vector.length != index.dimension()) {
+                throw new IllegalArgumentException("Expected dimension " + index.dimension() + " but was " + vector.length);
+            }
+
+            entries.add(new WriteAheadLog.Entry(newIds.get(i), vector, textSegments == null ? null : textSegments.get(i)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (writeAheadLog != null) {
+                writeAheadLog.append(entries);
+                logRecords += entries.size();
+            }
+
+            for (WriteAheadLog.Entry entry : entries) {
+                insert(entry.id(), entry.vector(), entry.segment());
+            }
+
+            if (writeAheadLog != null && logRecords >= snapshotInterval) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing to local vector store " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Filter filter = request.filter();
+        IntPredicate accept = filter == null ? null : node -> filter.test(metadata(node));
+
+        float[] query = request.queryEmbedding().vector();
+
+        lock.readLock().lock();
+        try {
+            List<HnswIndex.Result> results = fullPrecisionVectors == null
+                    ? index.search(query, request.maxResults(), Math.max(efSearch, request.maxResults()), accept)
+                    : rescore(query, request.maxResults(), accept);
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(results.size());
+            for (HnswIndex.Result result : results) {
+                double score = RelevanceScore.fromCosineSimilarity(result.similarity());
+
+                if (score >= request.minScore()) {
+                    matches.add(new EmbeddingMatch<>(score, ids.get(result.node()),
+                            new Embedding(vector(result.node())), segments.get(result.node())));
+                }
+            }
+
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Candidates from the quantized graph, ranked by full precision similarity.
+     */
+    private List<HnswIndex.Result> rescore(float[] query, int maxResults, IntPredicate accept) {
+        int candidates = maxResults * rescoreFactor;
+        float[] normalized = HnswIndex.normalize(query);
+
+        List<HnswIndex.Result> rescored = new ArrayList<>(candidates);
+        for (HnswIndex.Result candidate : index.search(query, candidates, Math.max(efSearch, candidates), accept)) {
+            rescored.add(new HnswIndex.Result(candidate.node(), fullPrecisionVectors.similarity(normalized, candidate.node())));
+        }
+
+        rescored.sort(Comparator.comparing(HnswIndex.Result::similarity).reversed());
+
+        return rescored.size() > maxResults ? rescored.subList(0, maxResults) : rescored;
+    }
+
+    private float[] vector(int node) {
+        return fullPrecisionVectors == null ? index.vector(node) : fullPrecisionVectors.get(node);
+    }
+
+    /**
+     * Writes a snapshot if the log has records, so the next start does not have to replay them.
+     */
+    @Override
+    public void close() {
+        if (writeAheadLog == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (logRecords > 0) {
+                snapshot();
+            }
+            writeAheadLog.close();
+
+            if (fullPrecisionVectors != null) {
+                fullPrecisionVectors.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing local vector store " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(String id, float[] vector, TextSegment segment) throws IOException {
+        if (nodesById.containsKey(id)) {
+            return;
+        }
+
+        int node = index.add(vector);
+
+        if (fullPrecisionVectors != null) {
+            fullPrecisionVectors.set(node, HnswIndex.normalize(vector));
+        }
+
+        ids.add(id);
+        segments.add(segment);
+        nodesById.put(id, node);
+    }
+
+    private Metadata metadata(int node) {
+        TextSegment segment = segments.get(node);
+        return segment == null ? new Metadata() : segment.metadata();
+    }
+
+    /**
+     * Written to a temporary file and moved into place, the previous snapshot stays valid until the move.
+     */
+    private void snapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+        // the snapshot refers to the full precision vectors of its nodes
+        if (fullPrecisionVectors != null) {
+            fullPrecisionVectors.force();
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(ids.size());
+
+            for (int node = 0; node < ids.size(); node++) {
+                SegmentCodec.writeString(out, ids.get(node));
+                SegmentCodec.write(out, segments.get(node));
+            }
+
+            index.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeAheadLog.truncate();
+
+        log.debug("Wrote snapshot of local vector store {} with {} embeddings", directory, ids.size());
+        logRecords = 0;
+    }
+
+    private HnswIndex readSnapshot(Path snapshot, int efConstruction) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot format " + snapshot);
+            }
+
+            int count = in.readInt();
+
+            for (int node = 0; node < count; node++) {
+                String id = SegmentCodec.readString(in);
+                ids.add(id);
+                segments.add(SegmentCodec.read(in));
+                nodesById.put(id, node);
+            }
+
+            HnswIndex snapshotIndex = HnswIndex.readFrom(in, efConstruction);
+
+            if (snapshotIndex.size() != count) {
+                throw new IOException("Snapshot " + snapshot + " is inconsistent");
+            }
+
+            return snapshotIndex;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.QuantizationEnum;
+import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * One {@link LocalEmbeddingStore} per collection, kept open until shutdown. Not wrapped in the store cache, evicting
+ * an in memory store would lose its embeddings.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+public class LocalEmbeddingStoreFactory implements EmbeddingStoreFactory, DisposableBean {
+
+    private final JemberProperties.Vectorstore.Local properties;
+    private final Function<String, QuantizationEnum> quantizationResolver;
+    private final Map<String, LocalEmbeddingStore> stores = new ConcurrentHashMap<>();
+
+    public LocalEmbeddingStoreFactory(JemberProperties.Vectorstore.Local properties) {
+        this(properties, collectionName -> properties.getQuantization());
+    }
+
+    /**
+     * @param quantizationResolver quantization of a new collection, by collection name
+     */
+    public LocalEmbeddingStoreFactory(JemberProperties.Vectorstore.Local properties,
+                                      Function<String, QuantizationEnum> quantizationResolver) {
+        this.properties = properties;
+        this.quantizationResolver = quantizationResolver;
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> createEmbeddingStore(String collectionName, int dimension) {
+
+        if (collectionName == null) {
+            throw new IllegalArgumentException("Collection name must not be null");
+        }
+
+        LocalEmbeddingStore store = stores.computeIfAbsent(collectionName,
+                name -> new LocalEmbeddingStore(dimension, properties, directory(name), quantizationResolver.apply(name)));
+
+        if (store.dimension() != dimension) {
+            throw new IllegalArgumentException("Collection " + collectionName + " has dimension " + store.dimension()
+                    + ", not " + dimension);
+        }
+
+        return store;
+    }
+
+    @Override
+    public void destroy() {
+        log.debug("Closing {} local vector stores", stores.size());
+
+        stores.values().forEach(store -> {
+            try {
+                store.close();
+            } catch (RuntimeException e) {
+                log.warn("Error closing local vector store", e);
+            }
+        });
+        stores.clear();
+    }
+
+    private Path directory(String collectionName) {
+        // collection names are client ids, which are not necessarily safe as directory names
+        return properties.getDirectory() == null ? null
+                : properties.getDirectory().resolve(DigestUtils.sha256Hex(collectionName));
+    }
+}
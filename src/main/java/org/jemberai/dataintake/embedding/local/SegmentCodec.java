@@ -0,0 +1,147 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary form of a text segment and its metadata for the local store files. Metadata values keep their type, which
+ * matters for filters comparing numbers.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+final class SegmentCodec {
+
+    private static final byte STRING = 'S';
+    private static final byte UUID_VALUE = 'U';
+    private static final byte INTEGER = 'I';
+    private static final byte LONG = 'L';
+    private static final byte FLOAT = 'F';
+    private static final byte DOUBLE = 'D';
+
+    private SegmentCodec() {
+    }
+
+    static void write(DataOutput out, TextSegment segment) throws IOException {
+        out.writeBoolean(segment != null);
+
+        if (segment == null) {
+            return;
+        }
+
+        writeString(out, segment.text());
+
+        Map<String, Object> metadata = segment.metadata().toMap();
+        out.writeInt(metadata.size());
+
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            writeString(out, entry.getKey());
+
+            switch (entry.getValue()) {
+                case String value -> {
+                    out.writeByte(STRING);
+                    writeString(out, value);
+                }
+                case UUID value -> {
+                    out.writeByte(UUID_VALUE);
+                    out.writeLong(value.getMostSignificantBits());
+                    out.writeLong(value.getLeastSignificantBits());
+                }
+                case Integer value -> {
+                    out.writeByte(INTEGER);
+                    out.writeInt(value);
+                }
+                case Long value -> {
+                    out.writeByte(LONG);
+                    out.writeLong(value);
+                }
+                case Float value -> {
+                    out.writeByte(FLOAT);
+                    out.writeFloat(value);
+                }
+                case Double value -> {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(value);
+                }
+                default -> throw new IllegalArgumentException("Unsupported metadata type for key " + entry.getKey()
+                        + ": " + entry.getValue().getClass().getName());
+            }
+        }
+    }
+
+    static TextSegment read(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        String text = readString(in);
+
+        int count = in.readInt();
+        Map<String, Object> metadata = new HashMap<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+
+            Object value = switch (type) {
+                case STRING -> readString(in);
+                case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+                case INTEGER -> in.readInt();
+                case LONG -> in.readLong();
+                case FLOAT -> in.readFloat();
+                case DOUBLE -> in.readDouble();
+                default -> throw new IOException("Unknown metadata type " + type);
+            };
+
+            metadata.put(key, value);
+        }
+
+        return TextSegment.from(text, Metadata.from(metadata));
+    }
+
+    /**
+     * Length prefixed rather than modified UTF-8, which is limited to 64KB.
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of the entries added since the last snapshot. Each record is length prefixed and check summed,
+ * a record torn by a crash is dropped on replay. Appends are forced to disk before the entries are added to the
+ * index.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+class WriteAheadLog implements Closeable {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    record Entry(String id, float[] vector, TextSegment segment) {
+    }
+
+    WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the valid records and positions the log after them, cutting off a torn record at the end.
+     */
+    List<Entry> replay() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long position = 0;
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+        try {
+            while (true) {
+                int length = in.readInt();
+                long checksum = in.readLong();
+
+                if (length < 0 || length > channel.size() - position - HEADER_BYTES) {
+                    break;
+                }
+
+                byte[] record = new byte[length];
+                in.readFully(record);
+
+                if (checksum(record) != checksum) {
+                    break;
+                }
+
+                entries.add(decode(record));
+                position += HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // end of the log
+        }
+
+        if (position < channel.size()) {
+            log.warn("Dropping {} bytes of incomplete records from {}", channel.size() - position, file);
+            channel.truncate(position);
+        }
+
+        channel.position(position);
+
+        return entries;
+    }
+
+    void append(List<Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for (Entry entry : entries) {
+            byte[] record = encode(entry);
+            out.writeInt(record.length);
+            out.writeLong(checksum(record));
+            out.write(record);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        channel.force(false);
+    }
+
+    /**
+     * Empties the log once its entries are in a snapshot.
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] encode(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        SegmentCodec.writeString(out, entry.id());
+        out.writeInt(entry.vector().length);
+        for (float value : entry.vector()) {
+            out.writeFloat(value);
+        }
+        SegmentCodec.write(out, entry.segment());
+
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+        String id = SegmentCodec.readString(in);
+        float[] vector = new float[in.readInt()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = in.readFloat();
+        }
+
+        return new Entry(id, vector, SegmentCodec.read(in));
+    }
+
+    private static long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+}
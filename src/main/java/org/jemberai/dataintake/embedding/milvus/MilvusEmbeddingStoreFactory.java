@@ -21,17 +21,38 @@ package org.jemberai.dataintake.embedding.milvus;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import io.milvus.client.MilvusServiceClient;
+import lombok.extern.slf4j.Slf4j;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.function.Supplier;
 
 /**
+ * All stores share one Milvus client, which is created on first use and closed on shutdown. The stores hold
+ * no connection of their own, so they can be dropped at any time, even while other threads still use them.
+ * <p>
  * Created by jt, Spring Framework Guru.
  */
-public class MilvusEmbeddingStoreFactory implements EmbeddingStoreFactory {
+@Slf4j
+public class MilvusEmbeddingStoreFactory implements EmbeddingStoreFactory, DisposableBean {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
 
-    private final MilvusEmbeddingStore.Builder builder;
+    private final Supplier<MilvusServiceClient> clientSupplier;
+    private final Supplier<MilvusEmbeddingStore.Builder> builderSupplier;
 
-    public MilvusEmbeddingStoreFactory(MilvusEmbeddingStore.Builder builder) {
-        this.builder = builder;
+    private volatile MilvusServiceClient client;
+
+    /**
+     * @param clientSupplier  connects the client shared by all stores, called once
+     * @param builderSupplier supplies a new, pre-configured builder for each store. Builders are mutable and
+     *                        must not be shared between threads.
+     */
+    public MilvusEmbeddingStoreFactory(Supplier<MilvusServiceClient> clientSupplier,
+                                       Supplier<MilvusEmbeddingStore.Builder> builderSupplier) {
+        this.clientSupplier = clientSupplier;
+        this.builderSupplier = builderSupplier;
     }
 
     @Override
@@ -45,9 +66,44 @@ public class MilvusEmbeddingStoreFactory implements EmbeddingStoreFactory {
             collectionName = collectionName.replace("-", "_");
         }
 
-        return builder
+        return builderSupplier.get()
+                .milvusClient(client())
                 .collectionName(collectionName)
                 .dimension(dimension)
                 .build();
     }
+
+    /**
+     * Waits for calls in flight before the channel is shut down.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (client == null) {
+            return;
+        }
+
+        try {
+            client.close(CLOSE_TIMEOUT_SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted closing the Milvus client");
+        } finally {
+            client = null;
+        }
+    }
+
+    private MilvusServiceClient client() {
+        MilvusServiceClient current = client;
+
+        if (current == null) {
+            synchronized (this) {
+                if (client == null) {
+                    client = clientSupplier.get();
+                }
+                current = client;
+            }
+        }
+
+        return current;
+    }
 }
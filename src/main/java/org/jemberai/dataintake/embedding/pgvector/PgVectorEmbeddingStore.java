@@ -0,0 +1,315 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.pgvector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import lombok.Value;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.IterativeScanEnum;
+import org.jemberai.dataintake.domain.VectorIndexTypeEnum;
+import org.jemberai.dataintake.embedding.ChunkContentSearch;
+import org.jemberai.dataintake.embedding.EmbeddingMetadata;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Embedding store for one client in the event_record_embedding table of the primary database. The chunk text is
+ * not stored, segments only contribute their metadata, as jsonb.
+ * <p>
+ * Distances are cosine distances, converted to the same relevance score as the other stores.
+ * <p>
+ * The vector index is shared by all clients and the client and metadata filters are applied to the candidates of
+ * the index scan. Searches run in a read only transaction which sets the search options of the index for that
+ * transaction, with iterative scans the index is scanned further until enough rows pass the filters.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class PgVectorEmbeddingStore implements EmbeddingStore<TextSegment>, ChunkContentSearch {
+
+    private static final String INSERT = "insert into event_record_embedding (id, client_id, embedding, metadata) " +
+            "values (?, ?, cast(? as vector), cast(? as jsonb))";
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    // the most ef_search candidates pgvector allows
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate searchTransactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final JemberProperties.Vectorstore.PgVector properties;
+    private final String clientId;
+
+    /**
+     * @param searchTransactionTemplate read only transactions on the data source of the JdbcTemplate
+     */
+    public PgVectorEmbeddingStore(JdbcTemplate jdbcTemplate, TransactionTemplate searchTransactionTemplate,
+                                  ObjectMapper objectMapper, JemberProperties.Vectorstore.PgVector properties,
+                                  String clientId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchTransactionTemplate = searchTransactionTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.clientId = clientId;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        insert(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return addAll(List.of(embedding), textSegment == null ? null : List.of(textSegment)).getFirst();
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+
+        insert(ids, embeddings, textSegments);
+
+        return ids;
+    }
+
+    private void insert(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (textSegments != null && textSegments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("The number of embeddings and text segments must match");
+        }
+
+        List<Object[]> rows = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            rows.add(new Object[]{ids.get(i), clientId, toLiteral(embeddings.get(i).vector()),
+                    textSegments == null ? null : toJson(textSegments.get(i).metadata())});
+        }
+
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        List<Object> args = new ArrayList<>();
+        String vector = toLiteral(request.queryEmbedding().vector());
+
+        args.add(vector);
+        args.add(clientId);
+        String filter = filter(request, args);
+        args.add(vector);
+        args.add(request.maxResults());
+
+        String sql = "select e.id, e.embedding::text as embedding, e.metadata::text as metadata, " +
+                "e.embedding <=> cast(? as vector) as distance " +
+                "from event_record_embedding e where e.client_id = ?" + filter +
+                " order by e.embedding <=> cast(? as vector) limit ?";
+
+        List<EmbeddingMatch<TextSegment>> matches = search(sql, (rs, rowNum) -> new EmbeddingMatch<>(
+                        score(rs.getDouble("distance")), rs.getString("id"),
+                        new Embedding(fromLiteral(rs.getString("embedding"))), segment(rs.getString("metadata"))),
+                args, request.maxResults());
+
+        // relaxed iterative scans may return rows slightly out of order
+        return new EmbeddingSearchResult<>(matches.stream()
+                .filter(match -> match.score() >= request.minScore())
+                .sorted(Comparator.comparing(EmbeddingMatch<TextSegment>::score, Comparator.reverseOrder()))
+                .toList());
+    }
+
+    /**
+     * One query: the nearest embeddings of the client, each joined to one of its chunks. Chunks with the same content
+     * share an embedding id, the lateral join keeps a single chunk per embedding.
+     */
+    @Override
+    public List<ChunkMatch> searchChunkContents(EmbeddingSearchRequest request) {
+        List<Object> args = new ArrayList<>();
+        String vector = toLiteral(request.queryEmbedding().vector());
+
+        args.add(vector);
+        args.add(clientId);
+        String filter = filter(request, args);
+        args.add(vector);
+        args.add(request.maxResults());
+        args.add(clientId);
+
+        String sql = "select n.id as embedding_id, n.distance, c.id, c.data_provider, c.data_key_id, c.data_hmac, " +
+                "c.data_encrypted_value, c.data_initialization_vector, c.block_id, c.block_offset, " +
+                "c.event_record_id, c.csv_header " +
+                "from (select e.id, e.embedding <=> cast(? as vector) as distance " +
+                "from event_record_embedding e where e.client_id = ?" + filter +
+                " order by e.embedding <=> cast(? as vector) limit ?) n " +
+                "join lateral (select ch.id, ch.data_provider, ch.data_key_id, ch.data_hmac, ch.data_encrypted_value, " +
+                "ch.data_initialization_vector, ch.block_id, ch.block_offset, ch.event_record_id, r.csv_header " +
+                "from event_record_chunk ch join event_record r on r.id = ch.event_record_id " +
+                "where ch.embedding_id = n.id and r.client_id = ? limit 1) c on true " +
+                "order by n.distance";
+
+        return search(sql, (rs, rowNum) -> new ChunkMatch(rs.getString("embedding_id"),
+                        score(rs.getDouble("distance")), chunkContent(rs)), args, request.maxResults()).stream()
+                .filter(match -> match.score() >= request.minScore())
+                .toList();
+    }
+
+    private <T> List<T> search(String sql, RowMapper<T> rowMapper, List<Object> args, int maxResults) {
+        return searchTransactionTemplate.execute(status -> {
+            searchSettings(maxResults).forEach((name, value) ->
+                    // is_local true, the setting ends with the transaction
+                    jdbcTemplate.queryForObject("select set_config(?, ?, true)", String.class, name, value));
+
+            return jdbcTemplate.query(sql, rowMapper, args.toArray());
+        });
+    }
+
+    /**
+     * Index search options for one query. ef_search is at least the number of requested results, fewer candidates
+     * can never fill the limit.
+     */
+    Map<String, String> searchSettings(int maxResults) {
+        IterativeScanEnum iterativeScan = properties.getIterativeScan();
+
+        if (properties.getIndexType() == VectorIndexTypeEnum.IVFFLAT) {
+            Map<String, String> settings = new LinkedHashMap<>();
+            settings.put("ivfflat.probes", String.valueOf(properties.getProbes()));
+            if (iterativeScan != IterativeScanEnum.OFF) {
+                // IVFFlat only supports relaxed ordering
+                settings.put("ivfflat.iterative_scan", "relaxed_order");
+            }
+            return settings;
+        }
+
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("hnsw.ef_search",
+                String.valueOf(Math.min(MAX_EF_SEARCH, Math.max(properties.getEfSearch(), maxResults))));
+        if (iterativeScan != IterativeScanEnum.OFF) {
+            settings.put("hnsw.iterative_scan", iterativeScan.name().toLowerCase());
+        }
+        return settings;
+    }
+
+    private static String filter(EmbeddingSearchRequest request, List<Object> args) {
+        return request.filter() == null ? "" : " and " + PgVectorFilterMapper.map(request.filter(), "e.metadata", args);
+    }
+
+    private static double score(double cosineDistance) {
+        return RelevanceScore.fromCosineSimilarity(1 - cosineDistance);
+    }
+
+    private static ChunkContentRow chunkContent(ResultSet rs) throws SQLException {
+        return new ChunkContentRow(uuid(rs.getString("id")), rs.getString("embedding_id"),
+                rs.getString("data_provider"), uuid(rs.getString("data_key_id")), rs.getBytes("data_hmac"),
+                rs.getBytes("data_encrypted_value"), rs.getBytes("data_initialization_vector"),
+                uuid(rs.getString("block_id")), rs.getObject("block_offset", Integer.class),
+                uuid(rs.getString("event_record_id")), rs.getString("csv_header"));
+    }
+
+    private static UUID uuid(String value) {
+        return value == null ? null : UUID.fromString(value.trim());
+    }
+
+    static String toLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    static float[] fromLiteral(String literal) {
+        String values = literal.substring(1, literal.length() - 1);
+
+        if (values.isBlank()) {
+            return new float[0];
+        }
+
+        String[] parts = values.split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+
+    private String toJson(Metadata metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata.toMap());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Error writing embedding metadata", e);
+        }
+    }
+
+    private TextSegment segment(String json) {
+        if (json == null) {
+            return null;
+        }
+
+        try {
+            return TextSegment.from(EmbeddingMetadata.PLACEHOLDER_TEXT, Metadata.from(objectMapper.readValue(json, METADATA_TYPE)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error reading embedding metadata", e);
+        }
+    }
+
+    @Value
+    static class ChunkContentRow implements EventRecordChunkRepository.ChunkContent {
+        UUID id;
+        String embeddingId;
+        String provider;
+        UUID keyId;
+        byte[] hmac;
+        byte[] encryptedValue;
+        byte[] initializationVector;
+        UUID blockId;
+        Integer blockOffset;
+        UUID eventRecordId;
+        String csvHeader;
+    }
+}
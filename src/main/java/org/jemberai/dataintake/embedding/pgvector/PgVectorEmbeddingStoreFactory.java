@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.pgvector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stores for the pgvector table in the primary database. The collection name is the client id, which the chunk
+ * rows are matched on. Stores hold no connection of their own, so they are not cached.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class PgVectorEmbeddingStoreFactory implements EmbeddingStoreFactory {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate searchTransactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final JemberProperties.Vectorstore.PgVector properties;
+
+    public PgVectorEmbeddingStoreFactory(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                         JemberProperties.Vectorstore.PgVector properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+
+        // joins a transaction already bound to the data source, the index search options are set per transaction
+        this.searchTransactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.searchTransactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> createEmbeddingStore(String collectionName, int dimension) {
+
+        if (collectionName == null) {
+            throw new IllegalArgumentException("Collection name must not be null");
+        }
+
+        if (dimension != properties.getDimension()) {
+            throw new IllegalArgumentException("The pgvector table has dimension " + properties.getDimension()
+                    + ", not " + dimension);
+        }
+
+        return new PgVectorEmbeddingStore(jdbcTemplate, searchTransactionTemplate, objectMapper, properties,
+                collectionName);
+    }
+}
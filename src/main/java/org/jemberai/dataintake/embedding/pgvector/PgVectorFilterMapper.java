@@ -0,0 +1,92 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.pgvector;
+
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Translates a metadata filter into a SQL condition on the jsonb metadata column. Keys and values are bound as
+ * parameters, numbers are compared as numeric.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+final class PgVectorFilterMapper {
+
+    private PgVectorFilterMapper() {
+    }
+
+    /**
+     * @param column jsonb column holding the metadata
+     * @param args   receives the parameters of the condition, in order
+     */
+    static String map(Filter filter, String column, List<Object> args) {
+        return switch (filter) {
+            case IsEqualTo f -> compare(column, f.key(), "=", f.comparisonValue(), args);
+            case IsNotEqualTo f -> compare(column, f.key(), "is distinct from", f.comparisonValue(), args);
+            case IsGreaterThan f -> compare(column, f.key(), ">", f.comparisonValue(), args);
+            case IsGreaterThanOrEqualTo f -> compare(column, f.key(), ">=", f.comparisonValue(), args);
+            case IsLessThan f -> compare(column, f.key(), "<", f.comparisonValue(), args);
+            case IsLessThanOrEqualTo f -> compare(column, f.key(), "<=", f.comparisonValue(), args);
+            case IsIn f -> in(column, f.key(), f.comparisonValues(), false, args);
+            case IsNotIn f -> in(column, f.key(), f.comparisonValues(), true, args);
+            case And f -> "(" + map(f.left(), column, args) + " and " + map(f.right(), column, args) + ")";
+            case Or f -> "(" + map(f.left(), column, args) + " or " + map(f.right(), column, args) + ")";
+            case Not f -> "(not " + map(f.expression(), column, args) + ")";
+            default -> throw new IllegalArgumentException("Unsupported filter " + filter.getClass().getSimpleName());
+        };
+    }
+
+    private static String compare(String column, String key, String operator, Object value, List<Object> args) {
+        args.add(key);
+        args.add(value instanceof Number ? value : value.toString());
+
+        return field(column, value) + " " + operator + " ?";
+    }
+
+    private static String in(String column, String key, Collection<?> values, boolean negate, List<Object> args) {
+        Object first = values.iterator().next();
+        args.add(key);
+        values.forEach(value -> args.add(value instanceof Number ? value : value.toString()));
+
+        String placeholders = values.stream().map(value -> "?").collect(Collectors.joining(", "));
+
+        // a missing key is not in any list
+        return negate ? "coalesce(" + field(column, first) + " not in (" + placeholders + "), true)"
+                : field(column, first) + " in (" + placeholders + ")";
+    }
+
+    private static String field(String column, Object value) {
+        return value instanceof Number ? "(" + column + " ->> ?)::numeric" : "(" + column + " ->> ?)";
+    }
+}
@@ -22,15 +22,28 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.ChunkStorageModeEnum;
 import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
 import org.jemberai.dataintake.domain.EventRecordChunk;
 import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
-import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
 import org.jemberai.dataintake.repositories.EventRecordRepository;
-import org.jemberai.dataintake.service.EmbeddingService;
+import org.jemberai.dataintake.service.ChunkBlockService;
+import org.jemberai.dataintake.service.ChunkEncryptionService;
+import org.jemberai.dataintake.service.KeywordIndexService;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -40,26 +53,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class EmbeddingMessageListener {
 
-    private final EmbeddingService embeddingService;
     private final EventRecordRepository eventRecordRepository;
+    private final EventRecordChunkRepository eventRecordChunkRepository;
+    private final ChunkEncryptionService chunkEncryptionService;
+    private final ChunkBlockService chunkBlockService;
+    private final KeywordIndexService keywordIndexService;
+    private final JemberProperties jemberProperties;
     private final ObjectMapper objectMapper;
 
-    @Async
-    @EventListener
-    public void listen(EmbeddingRequestMessage msg) {
-
-        log.debug("Received embedding request message: Event RecordId " + msg.getEventRecord().getId());
-        //using switch since this list will grow
-        switch (msg.getModel()) {
-            case OPENAI:
-                embeddingService.processOpenAPIEmbeddingRequest(msg);
-                break;
-            default:
-                throw new RuntimeException("Unknown embedding model: " + msg.getEmbeddingModel());
-        }
-    }
-
-    @Async
+    /**
+     * Runs synchronously on the work queue worker, so the work item is only completed once the results are saved.
+     * The event record and its chunks are saved in a single transaction.
+     */
+    @Transactional
     @EventListener
     public void listen(EmbeddingRequestCompleteMessage msg) {
         switch (msg.getStatus()) {
@@ -71,6 +77,10 @@ public class EmbeddingMessageListener {
                 log.debug("Received embedding request empty message. Event Record Id " + msg.getEventRecord().getId());
                 processEmptyMessage(msg);
                 break;
+            case DUPLICATE:
+                log.debug("Received embedding request duplicate message. Event Record Id " + msg.getEventRecord().getId());
+                processDuplicateMessage(msg);
+                break;
             case ERROR:
                 log.debug("Received embedding request error message. Event Record Id " + msg.getEventRecord().getId());
                 processErrorMessage(msg);
@@ -87,26 +97,66 @@ public class EmbeddingMessageListener {
 
                     eventRecord.setEmbeddingStatus(EmbeddingStatusEnum.COMPLETED);
 
-                    if (msg.getDocument().metadata() != null) {
+                    if (msg.getDocumentMetadata() != null) {
                         try {
-                            eventRecord.setTikaMetadata(objectMapper.writeValueAsString(msg.getDocument().metadata().toMap()));
+                            eventRecord.setTikaMetadata(objectMapper.writeValueAsString(msg.getDocumentMetadata().toMap()));
                         } catch (JsonProcessingException e) {
                             log.error("Error processing metadata for event record id: {}", msg.getEventRecord().getId());
                         }
                     }
 
-                    msg.getTextSegments().forEach((key, value) -> eventRecord.addChunk(EventRecordChunk.builder()
-                            .embeddingId(key)
-                            .data(value.text().getBytes())
+                    List<EventRecordChunk> chunks = new ArrayList<>(msg.getTextSegments().size());
+
+                    msg.getTextSegments().forEach(segment -> chunks.add(EventRecordChunk.builder()
+                            .embeddingId(segment.embeddingId())
+                            .embeddingModel(msg.getEmbeddingModel())
+                            .embeddingDimension(msg.getEmbeddingDimension())
+                            .data(segment.textSegment().text().getBytes(StandardCharsets.UTF_8))
                             .build()));
 
+                    if (jemberProperties.getChunkStorage().getMode() == ChunkStorageModeEnum.BLOCK) {
+                        chunkBlockService.packChunks(eventRecord, chunks);
+                    } else {
+                        // encrypt in parallel up front, the entity listener skips chunks which are already encrypted
+                        chunkEncryptionService.encryptAll(eventRecord.getClientId(), chunks);
+                    }
+
+                    chunks.forEach(eventRecord::addChunk);
+
+                    // persisted directly rather than cascaded by merge, so the inserts are batched
+                    eventRecordChunkRepository.saveAll(chunks);
                     eventRecordRepository.saveAndFlush(eventRecord);
+
+                    if (keywordIndexService.isEnabled()) {
+                        Map<String, String> texts = new HashMap<>();
+                        msg.getTextSegments().forEach(segment -> texts.put(segment.embeddingId(),
+                                segment.textSegment().text()));
+
+                        indexAfterCommit(eventRecord.getClientId(), eventRecord.getId(), texts);
+                    }
                 },() -> {
                     log.warn("Event record not found for id: " + msg.getEventRecord().getId());
                 }
         );
     }
 
+    /**
+     * The keyword index is not transactional, only chunks which were saved are indexed. Chunks missed on failure are
+     * indexed by the next catch up of the index.
+     */
+    private void indexAfterCommit(String clientId, UUID eventRecordId, Map<String, String> texts) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    keywordIndexService.index(clientId, eventRecordId, texts);
+                } catch (RuntimeException e) {
+                    log.warn("Error indexing keywords of event record id: {}", eventRecordId, e);
+                }
+            }
+        });
+    }
+
     private void processEmptyMessage(EmbeddingRequestCompleteMessage msg) {
         eventRecordRepository.findById(msg.getEventRecord().getId()).ifPresentOrElse(eventRecord -> {
 
@@ -121,6 +171,21 @@ public class EmbeddingMessageListener {
         );
     }
 
+    private void processDuplicateMessage(EmbeddingRequestCompleteMessage msg) {
+        eventRecordRepository.findById(msg.getEventRecord().getId()).ifPresentOrElse(eventRecord -> {
+
+                    log.debug("Updating event record with embedding status COMPLETED, duplicate of: " + msg.getDuplicateOfId());
+
+                    eventRecord.setEmbeddingStatus(EmbeddingStatusEnum.COMPLETED);
+                    eventRecord.setDuplicateOfId(msg.getDuplicateOfId());
+
+                    eventRecordRepository.saveAndFlush(eventRecord);
+                },() -> {
+                    log.warn("Event record not found for id: " + msg.getEventRecord().getId());
+                }
+        );
+    }
+
     private void processErrorMessage(EmbeddingRequestCompleteMessage msg) {
         eventRecordRepository.findById(msg.getEventRecord().getId()).ifPresentOrElse(eventRecord -> {
 
@@ -0,0 +1,204 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
+import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.service.EmbeddingService;
+import org.jemberai.dataintake.service.EmbeddingWorkQueueService;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the embedding work queue and processes claimed work items. The number of items in flight on this node
+ * is bounded by the configured concurrency, anything beyond that stays in the database until a worker is free.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Component
+public class EmbeddingWorkQueueWorker implements SmartLifecycle {
+
+    private final EmbeddingWorkQueueService embeddingWorkQueueService;
+    private final EmbeddingService embeddingService;
+    private final EventRecordRepository eventRecordRepository;
+    private final JemberProperties.WorkQueueProperties properties;
+    private final Semaphore permits;
+    private final Map<String, Semaphore> clientPermits = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService poller;
+    private ExecutorService workers;
+    private volatile boolean running = false;
+
+    public EmbeddingWorkQueueWorker(EmbeddingWorkQueueService embeddingWorkQueueService, EmbeddingService embeddingService,
+                                    EventRecordRepository eventRecordRepository, JemberProperties jemberProperties) {
+        this.embeddingWorkQueueService = embeddingWorkQueueService;
+        this.embeddingService = embeddingService;
+        this.eventRecordRepository = eventRecordRepository;
+        this.properties = jemberProperties.getWorkQueue();
+        this.permits = new Semaphore(properties.getConcurrency());
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("Embedding work queue workers disabled");
+            return;
+        }
+
+        log.info("Starting embedding work queue workers, concurrency: {}", properties.getConcurrency());
+
+        workers = Executors.newVirtualThreadPerTaskExecutor();
+        // set before the first poll, which runs right away
+        running = true;
+        poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("embedding-work-poller").daemon().factory());
+        poller.scheduleWithFixedDelay(this::poll, 0, properties.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                // unfinished items are picked up again once their lease expires
+                if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    workers.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void poll() {
+        try {
+            int available = permits.availablePermits();
+
+            if (!running || available == 0) {
+                return;
+            }
+
+            List<EmbeddingWorkItem> workItems = embeddingWorkQueueService.claim(available);
+
+            for (EmbeddingWorkItem workItem : workItems) {
+                Semaphore clientPermit = clientPermit(workItem.getClientId());
+
+                if (clientPermit != null && !clientPermit.tryAcquire()) {
+                    log.debug("Client: {} at concurrency limit, deferring work item: {}", workItem.getClientId(), workItem.getId());
+                    embeddingWorkQueueService.defer(workItem.getId(), properties.getPollInterval());
+                    continue;
+                }
+
+                permits.acquire();
+                workers.execute(() -> {
+                    try {
+                        process(workItem);
+                    } finally {
+                        permits.release();
+
+                        if (clientPermit != null) {
+                            clientPermit.release();
+                        }
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error polling embedding work queue", e);
+        }
+    }
+
+    private Semaphore clientPermit(String clientId) {
+        if (clientId == null || properties.getMaxConcurrencyPerClient() <= 0) {
+            return null;
+        }
+
+        return clientPermits.computeIfAbsent(clientId, key -> new Semaphore(properties.getMaxConcurrencyPerClient()));
+    }
+
+    void process(EmbeddingWorkItem workItem) {
+        log.debug("Processing embedding work item: {}, event record id: {}, attempt: {}", workItem.getId(),
+                workItem.getEventRecordId(), workItem.getAttempts());
+
+        try {
+            Optional<EventRecord> eventRecord = eventRecordRepository.findById(workItem.getEventRecordId());
+
+            if (eventRecord.isEmpty()) {
+                log.warn("Event record not found for work item: {}, event record id: {}", workItem.getId(), workItem.getEventRecordId());
+                embeddingWorkQueueService.complete(workItem.getId());
+                return;
+            }
+
+            EmbeddingRequestMessage msg = EmbeddingRequestMessage.builder()
+                    .eventRecord(eventRecord.get())
+                    .model(workItem.getModel())
+                    .embeddingModel(workItem.getEmbeddingModel())
+                    .build();
+
+            EmbeddingRequestCompleteMessage.EmbeddingRequestStatus status;
+
+            //using switch since this list will grow
+            switch (workItem.getModel()) {
+                case OPENAI:
+                    status = embeddingService.processOpenAPIEmbeddingRequest(msg);
+                    break;
+                default:
+                    throw new RuntimeException("Unknown embedding model: " + workItem.getModel());
+            }
+
+            if (status == EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.ERROR) {
+                embeddingWorkQueueService.fail(workItem.getId(), "Embedding request failed for event record id: "
+                        + workItem.getEventRecordId());
+            } else {
+                embeddingWorkQueueService.complete(workItem.getId());
+            }
+        } catch (Exception e) {
+            log.error("Error processing embedding work item: {}", workItem.getId(), e);
+            embeddingWorkQueueService.fail(workItem.getId(), e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -21,19 +21,20 @@ package org.jemberai.dataintake.listeners;
 import org.jemberai.dataintake.domain.EmbeddingConfiguration;
 import org.jemberai.dataintake.domain.EmbeddingModelEnum;
 import org.jemberai.dataintake.domain.ModelEnum;
-import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
 import org.jemberai.dataintake.messages.NewEventMessage;
 import org.jemberai.dataintake.repositories.EmbeddingConfigurationRepository;
+import org.jemberai.dataintake.service.EmbeddingWorkQueueService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 /**
+ * Enqueues embedding work for new events. Runs synchronously so the work items are saved in the same
+ * transaction as the event record.
+ * <p>
  * Created by jt, Spring Framework Guru.
  */
 @Slf4j
@@ -42,12 +43,11 @@ import java.util.List;
 public class NewEventListener {
 
     private final EmbeddingConfigurationRepository embeddingConfigurationRepository;
-    private final ApplicationEventPublisher applicationEventPublisher;
+    private final EmbeddingWorkQueueService embeddingWorkQueueService;
 
     private static final ModelEnum DEFAULT_MODEL = ModelEnum.OPENAI;
     private static final EmbeddingModelEnum DEFAULT_EMBEDDING_MODEL = EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL;
 
-    @Async
     @EventListener
     public void listen(NewEventMessage msg) {
 
@@ -60,21 +60,14 @@ public class NewEventListener {
         if (embeddingConfigurations.isEmpty()) {
             log.debug("No embedding configurations found for event: " + msg.getNewEventRecord().getId());
 
-            applicationEventPublisher.publishEvent(EmbeddingRequestMessage.builder()
-                    .eventRecord(msg.getNewEventRecord())
-                    .model(DEFAULT_MODEL)
-                    .embeddingModel(DEFAULT_EMBEDDING_MODEL)
-                    .build());
+            embeddingWorkQueueService.enqueue(msg.getNewEventRecord(), DEFAULT_MODEL, DEFAULT_EMBEDDING_MODEL);
         } else {
             embeddingConfigurations.forEach(embeddingConfiguration -> {
 
-                log.debug("Sending embedding request for event: " + msg.getNewEventRecord().getId());
+                log.debug("Enqueuing embedding request for event: " + msg.getNewEventRecord().getId());
 
-                applicationEventPublisher.publishEvent(EmbeddingRequestMessage.builder()
-                        .eventRecord(msg.getNewEventRecord())
-                        .model(embeddingConfiguration.getModelName())
-                        .embeddingModel(embeddingConfiguration.getEmbeddingModel())
-                        .build());
+                embeddingWorkQueueService.enqueue(msg.getNewEventRecord(), embeddingConfiguration.getModelName(),
+                        embeddingConfiguration.getEmbeddingModel());
             });
         }
     }
@@ -0,0 +1,30 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.messages;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+/**
+ * A text segment of a document and the id of its embedding in the vector store. Segments with the same text in one
+ * document share an embedding id.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public record EmbeddedTextSegment(String embeddingId, TextSegment textSegment) {
+}
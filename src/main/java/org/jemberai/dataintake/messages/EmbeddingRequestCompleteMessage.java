@@ -18,15 +18,16 @@
 
 package org.jemberai.dataintake.messages;
 
-import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.data.document.Metadata;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
 import org.jemberai.dataintake.domain.EventRecord;
 
-import java.util.Map;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -42,11 +43,21 @@ public class EmbeddingRequestCompleteMessage {
         SUCCESS,
         EMPTY,
         ERROR,
+        DUPLICATE,
     }
 
     private EventRecord eventRecord;
-    private Map<String, TextSegment> textSegments;
-    private Document document;
+    // one per chunk, in document order
+    private List<EmbeddedTextSegment> textSegments;
+    // metadata extracted by the parser, the text is only kept as segments
+    private Metadata documentMetadata;
+
+    // model and dimension of the embeddings of the text segments
+    private EmbeddingModelEnum embeddingModel;
+    private Integer embeddingDimension;
+
+    // set with status DUPLICATE, the event whose embeddings are reused
+    private UUID duplicateOfId;
 
     @Builder.Default
     private EmbeddingRequestStatus status = EmbeddingRequestStatus.NEW;
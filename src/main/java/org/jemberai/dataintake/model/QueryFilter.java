@@ -0,0 +1,60 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Restricts a vector search to chunks of matching events. Conditions which are set are combined with AND, a list
+ * matches any of its values. Evaluated by the vector store on the metadata written at ingest. A chunk which reuses
+ * the embedding of an earlier event with the same content carries the metadata of that earlier event, and embeddings
+ * written before metadata was stored match no filter.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryFilter {
+
+    private List<String> eventIds;
+
+    private List<String> eventTypes;
+
+    private List<String> sources;
+
+    private List<String> subjects;
+
+    /**
+     * Event time, inclusive.
+     */
+    private OffsetDateTime timeFrom;
+
+    /**
+     * Event time, exclusive.
+     */
+    private OffsetDateTime timeTo;
+}
@@ -22,6 +22,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.jemberai.dataintake.domain.SearchModeEnum;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -39,4 +40,24 @@ public class QueryRequest {
 
     @Builder.Default
     private Double similarityThreshold = 0.0d;
+
+    @Builder.Default
+    private SearchModeEnum searchMode = SearchModeEnum.VECTOR;
+
+    /**
+     * Number of ranked results to skip, for paging.
+     */
+    @Builder.Default
+    private Integer offset = 0;
+
+    /**
+     * Return the embedding vector of vector search matches.
+     */
+    @Builder.Default
+    private Boolean includeEmbedding = false;
+
+    /**
+     * Metadata filter, applied by the vector store. Only supported with the VECTOR search mode.
+     */
+    private QueryFilter filter;
 }
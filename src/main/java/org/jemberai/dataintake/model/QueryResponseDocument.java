@@ -35,6 +35,8 @@ public class QueryResponseDocument {
     String id;
     String embeddingId;
     String content;
+    // similarity for vector search, BM25 for keyword search, fused rank score for hybrid search
+    private Double score;
     @JsonProperty(index = 100)
     private float[] embedding = new float[0];
     private Map<String, Object> metadata;
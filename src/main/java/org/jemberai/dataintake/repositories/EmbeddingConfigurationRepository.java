@@ -34,4 +34,6 @@ public interface EmbeddingConfigurationRepository extends JpaRepository<Embeddin
     Optional<EmbeddingConfiguration> findByClientIdAndEventTypeAndModelName(String clientId, String eventType, ModelEnum modelName);
 
     List<EmbeddingConfiguration> findByClientIdAndEventType(String clientId, String eventType);
+
+    List<EmbeddingConfiguration> findByClientId(String clientId);
 }
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.repositories;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.WorkItemStatusEnum;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+public interface EmbeddingWorkItemRepository extends JpaRepository<EmbeddingWorkItem, UUID> {
+
+    /**
+     * Finds work items which are due, or which were claimed by a node whose lease has expired. Rows are locked
+     * with SKIP LOCKED (lock timeout -2) so concurrent nodes claim different items. Databases without
+     * SKIP LOCKED support, such as H2, fall back to a plain FOR UPDATE.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select w from EmbeddingWorkItem w " +
+            "where (w.status = :pending and w.nextAttemptAt <= :now) " +
+            "or (w.status = :inProgress and w.lockedAt < :leaseExpiry) " +
+            "order by w.nextAttemptAt")
+    List<EmbeddingWorkItem> findClaimable(@Param("pending") WorkItemStatusEnum pending,
+                                          @Param("inProgress") WorkItemStatusEnum inProgress,
+                                          @Param("now") LocalDateTime now,
+                                          @Param("leaseExpiry") LocalDateTime leaseExpiry,
+                                          Pageable pageable);
+
+    List<EmbeddingWorkItem> findAllByEventRecordId(UUID eventRecordId);
+
+    long countByStatus(WorkItemStatusEnum status);
+}
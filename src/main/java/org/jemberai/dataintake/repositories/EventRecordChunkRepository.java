@@ -19,8 +19,13 @@
 package org.jemberai.dataintake.repositories;
 
 import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,4 +37,59 @@ public interface EventRecordChunkRepository extends JpaRepository<EventRecordChu
     List<EventRecordChunk> findAllByEmbeddingIdIn(List<String> embeddingIds);
 
     List<EventRecordChunk> findAllByEventRecord_ClientIdAndEmbeddingIdIn(String clientId, List<String> embeddingIds);
+
+    /**
+     * Query path, the chunk content is decrypted by the caller so only the matched chunks are decrypted and the
+     * parent event record is not loaded.
+     */
+    @Query("select c.id as id, c.embeddingId as embeddingId, c.provider as provider, c.keyId as keyId, " +
+            "c.hmac as hmac, c.encryptedValue as encryptedValue, c.initializationVector as initializationVector, " +
+            "b.id as blockId, c.blockOffset as blockOffset, " +
+            "e.id as eventRecordId, e.csvHeader as csvHeader " +
+            "from EventRecordChunk c join c.eventRecord e left join c.block b " +
+            "where e.clientId = :clientId and c.embeddingId in :embeddingIds")
+    List<ChunkContent> findChunkContents(@Param("clientId") String clientId,
+                                         @Param("embeddingIds") Collection<String> embeddingIds);
+
+    /**
+     * Chunk contents of the client created after the given time, oldest first. Used to catch up the keyword index
+     * with chunks saved on other nodes or before a restart.
+     */
+    @Query("select c.id as id, c.embeddingId as embeddingId, c.provider as provider, c.keyId as keyId, " +
+            "c.hmac as hmac, c.encryptedValue as encryptedValue, c.initializationVector as initializationVector, " +
+            "b.id as blockId, c.blockOffset as blockOffset, " +
+            "e.id as eventRecordId, e.csvHeader as csvHeader, c.dateCreated as dateCreated " +
+            "from EventRecordChunk c join c.eventRecord e left join c.block b " +
+            "where e.clientId = :clientId and c.dateCreated > :createdAfter order by c.dateCreated, c.id")
+    List<CreatedChunkContent> findChunkContentsCreatedAfter(@Param("clientId") String clientId,
+                                                            @Param("createdAfter") LocalDateTime createdAfter,
+                                                            Pageable pageable);
+
+    interface ChunkContent {
+        UUID getId();
+
+        String getEmbeddingId();
+
+        String getProvider();
+
+        UUID getKeyId();
+
+        byte[] getHmac();
+
+        byte[] getEncryptedValue();
+
+        byte[] getInitializationVector();
+
+        UUID getBlockId();
+
+        Integer getBlockOffset();
+
+        UUID getEventRecordId();
+
+        String getCsvHeader();
+    }
+
+    interface CreatedChunkContent extends ChunkContent {
+        LocalDateTime getDateCreated();
+    }
 }
@@ -18,13 +18,40 @@
 
 package org.jemberai.dataintake.repositories;
 
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
+import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
 import org.jemberai.dataintake.domain.EventRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Created by jt, Spring Framework Guru.
  */
 public interface EventRecordRepository extends JpaRepository<EventRecord, UUID> {
+
+    /**
+     * Ids of other events for the client with the same type and data which have been embedded with the given model
+     * and dimension, oldest first. The other filterable attributes must match as well, the duplicate is found through
+     * the embeddings of the original event.
+     */
+    @Query("select e.id from EventRecord e where e.clientId = :clientId and e.eventType = :eventType " +
+            "and e.sha256 = :sha256 and e.embeddingStatus = :status and e.duplicateOfId is null and e.id <> :id " +
+            "and e.eventId is not distinct from :eventId and e.source is not distinct from :source " +
+            "and e.subject is not distinct from :subject and e.time is not distinct from :time " +
+            "and exists (select c.id from EventRecordChunk c where c.eventRecord = e " +
+            "and c.embeddingModel = :embeddingModel and c.embeddingDimension = :embeddingDimension) " +
+            "order by e.dateCreated")
+    List<UUID> findDuplicateIds(@Param("clientId") String clientId, @Param("eventType") String eventType,
+                                @Param("sha256") String sha256, @Param("status") EmbeddingStatusEnum status,
+                                @Param("id") UUID id, @Param("eventId") String eventId,
+                                @Param("source") String source, @Param("subject") String subject,
+                                @Param("time") OffsetDateTime time,
+                                @Param("embeddingModel") EmbeddingModelEnum embeddingModel,
+                                @Param("embeddingDimension") Integer embeddingDimension, Pageable pageable);
 }
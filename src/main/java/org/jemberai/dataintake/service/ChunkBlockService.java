@@ -0,0 +1,47 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.EventRecordChunkBlock;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Block storage of chunk texts, see {@link org.jemberai.dataintake.domain.ChunkStorageModeEnum#BLOCK}.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface ChunkBlockService {
+
+    /**
+     * Packs the chunk texts into encrypted blocks and saves the blocks. The chunks are linked to their block and
+     * offset and their data is cleared, the chunks still need to be saved by the caller.
+     */
+    List<EventRecordChunkBlock> packChunks(EventRecord eventRecord, List<EventRecordChunk> chunks);
+
+    /**
+     * @return decrypted blocks by block id
+     */
+    Map<UUID, byte[]> decryptBlocks(String clientId, Collection<UUID> blockIds);
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.cryptography.provider.EncryptionProvider;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.EventRecordChunkBlock;
+import org.jemberai.dataintake.repositories.EventRecordChunkBlockRepository;
+import org.jemberai.dataintake.utils.ChunkBlockCodec;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Service
+public class ChunkBlockServiceImpl implements ChunkBlockService {
+
+    private final EncryptionProvider encryptionProvider;
+    private final EventRecordChunkBlockRepository eventRecordChunkBlockRepository;
+    private final long blockSize;
+
+    public ChunkBlockServiceImpl(@Qualifier("encryptionProviderJPA") EncryptionProvider encryptionProvider,
+                                 EventRecordChunkBlockRepository eventRecordChunkBlockRepository,
+                                 JemberProperties jemberProperties) {
+        this.encryptionProvider = encryptionProvider;
+        this.eventRecordChunkBlockRepository = eventRecordChunkBlockRepository;
+        this.blockSize = jemberProperties.getChunkStorage().getBlockSize().toBytes();
+    }
+
+    @Override
+    public List<EventRecordChunkBlock> packChunks(EventRecord eventRecord, List<EventRecordChunk> chunks) {
+        List<EventRecordChunkBlock> blocks = new ArrayList<>();
+
+        List<EventRecordChunk> current = new ArrayList<>();
+        long currentSize = 0;
+
+        for (EventRecordChunk chunk : chunks) {
+            long size = ChunkBlockCodec.packedSize(chunk.getData());
+
+            // a chunk larger than the block size gets a block of its own
+            if (!current.isEmpty() && currentSize + size > blockSize) {
+                blocks.add(createBlock(eventRecord, current, blocks.size()));
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+
+            current.add(chunk);
+            currentSize += size;
+        }
+
+        if (!current.isEmpty()) {
+            blocks.add(createBlock(eventRecord, current, blocks.size()));
+        }
+
+        log.debug("Packed {} chunks into {} blocks for event record {}", chunks.size(), blocks.size(), eventRecord.getId());
+
+        return eventRecordChunkBlockRepository.saveAll(blocks);
+    }
+
+    @Override
+    public Map<UUID, byte[]> decryptBlocks(String clientId, Collection<UUID> blockIds) {
+        Map<UUID, byte[]> blocks = new HashMap<>();
+
+        eventRecordChunkBlockRepository.findAllById(blockIds).forEach(block ->
+                blocks.put(block.getId(), encryptionProvider.decrypt(clientId, new EncryptedValueDTO(block.getProvider(),
+                        block.getKeyId(), block.getHmac(), block.getEncryptedValue(), block.getInitializationVector()))));
+
+        return blocks;
+    }
+
+    private EventRecordChunkBlock createBlock(EventRecord eventRecord, List<EventRecordChunk> chunks, int blockNumber) {
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(chunks.stream().map(EventRecordChunk::getData).toList());
+
+        EncryptedValueDTO dto = encryptionProvider.encrypt(eventRecord.getClientId(), packed.block());
+
+        EventRecordChunkBlock block = EventRecordChunkBlock.builder()
+                .eventRecord(eventRecord)
+                .blockNumber(blockNumber)
+                .chunkCount(chunks.size())
+                .provider(dto.provider())
+                .keyId(dto.keyId())
+                .hmac(dto.hmac())
+                .encryptedValue(dto.encryptedValue())
+                .initializationVector(dto.initializationVector())
+                .build();
+
+        for (int i = 0; i < chunks.size(); i++) {
+            EventRecordChunk chunk = chunks.get(i);
+
+            if (chunk.getSha256() == null) {
+                chunk.setSha256(DigestUtils.sha256Hex(chunk.getData()));
+            }
+
+            chunk.setBlock(block);
+            chunk.setBlockOffset(packed.offsets()[i]);
+            chunk.setData(null);
+        }
+
+        return block;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.dataintake.domain.EventRecordChunk;
+
+import java.util.List;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+public interface ChunkEncryptionService {
+
+    /**
+     * Encrypts the chunks ahead of persisting them, so the entity listener does not encrypt them one at a
+     * time during flush. The chunk data is replaced by the encrypted marker.
+     */
+    void encryptAll(String clientId, List<EventRecordChunk> chunks);
+
+    /**
+     * Decrypts chunk data read without loading the chunk entity.
+     */
+    byte[] decrypt(String clientId, EncryptedValueDTO encryptedValue);
+}
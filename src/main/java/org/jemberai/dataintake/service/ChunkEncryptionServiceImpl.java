@@ -0,0 +1,116 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.cryptography.provider.EncryptionProvider;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.EventRecordChunkListener;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Encrypts chunks on a fixed size pool, encryption and hashing are CPU bound.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Service
+public class ChunkEncryptionServiceImpl implements ChunkEncryptionService, DisposableBean {
+
+    // below this it is not worth handing the work to other threads
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    private final EncryptionProvider encryptionProvider;
+    private final int parallelism;
+    private final ExecutorService executorService;
+
+    public ChunkEncryptionServiceImpl(@Qualifier("encryptionProviderJPA") EncryptionProvider encryptionProvider,
+                                      JemberProperties jemberProperties) {
+        this.encryptionProvider = encryptionProvider;
+        this.parallelism = Math.max(1, jemberProperties.getCryptography().getChunkEncryptionParallelism());
+        this.executorService = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform()
+                .name("chunk-encryption-", 0)
+                .daemon(true)
+                .factory());
+    }
+
+    @Override
+    public void encryptAll(String clientId, List<EventRecordChunk> chunks) {
+        if (chunks.size() < PARALLEL_THRESHOLD || parallelism == 1) {
+            chunks.forEach(chunk -> encrypt(clientId, chunk));
+            return;
+        }
+
+        // one task per slice rather than per chunk, chunks are small
+        int sliceSize = (chunks.size() + parallelism - 1) / parallelism;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(parallelism);
+
+        for (int from = 0; from < chunks.size(); from += sliceSize) {
+            List<EventRecordChunk> slice = chunks.subList(from, Math.min(from + sliceSize, chunks.size()));
+            futures.add(CompletableFuture.runAsync(() -> slice.forEach(chunk -> encrypt(clientId, chunk)), executorService));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+
+        log.debug("Encrypted {} chunks for client {}", chunks.size(), clientId);
+    }
+
+    @Override
+    public byte[] decrypt(String clientId, EncryptedValueDTO encryptedValue) {
+        return encryptionProvider.decrypt(clientId, encryptedValue);
+    }
+
+    private void encrypt(String clientId, EventRecordChunk chunk) {
+        if (chunk.getData() == null || EventRecordChunkListener.isEncrypted(chunk)) {
+            return;
+        }
+
+        if (chunk.getSha256() == null) {
+            chunk.setSha256(DigestUtils.sha256Hex(chunk.getData()));
+        }
+
+        EncryptedValueDTO dto = encryptionProvider.encrypt(clientId, chunk.getData());
+
+        EventRecordChunkListener.setEncryptedValue(chunk, dto);
+    }
+
+    @Override
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.jemberai.dataintake.service;
 
+import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
 import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
 
 /**
@@ -25,7 +26,13 @@ import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
  */
 public interface EmbeddingService {
 
-    void processOpenAPIEmbeddingRequest(EmbeddingRequestMessage message);
+    /**
+     * Process an embedding request, publishing an EmbeddingRequestCompleteMessage with the result. Failures are
+     * not published, the request is retried by the work queue, which sets the final ERROR status.
+     *
+     * @return the status of the published message, or ERROR
+     */
+    EmbeddingRequestCompleteMessage.EmbeddingRequestStatus processOpenAPIEmbeddingRequest(EmbeddingRequestMessage message);
 
    // VectorStore getVectorStore(EmbeddingModelEnum embeddingModel, String clientId);
 
@@ -20,9 +20,7 @@ package org.jemberai.dataintake.service;
 
 import dev.langchain4j.data.document.BlankDocumentException;
 import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.document.DocumentParser;
-import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -31,18 +29,37 @@ import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.embedding.EmbeddingBatcher;
+import org.jemberai.dataintake.embedding.EmbeddingMetadata;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.jemberai.dataintake.messages.EmbeddedTextSegment;
 import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
 import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.utils.parser.PayloadParser;
+import org.jemberai.dataintake.utils.parser.PayloadParsers;
+import org.jemberai.dataintake.utils.parser.TextSegmentReader;
 import org.jemberai.dataintake.utils.tika.ApacheTikaDocumentMetaParser;
+import org.jemberai.dataintake.utils.tika.TextSegmentStream;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -52,17 +69,37 @@ import java.util.Map;
 @Service
 public class EmbeddingServiceImpl implements EmbeddingService {
 
+    private static final int MAX_SEGMENT_SIZE = 300;
+
     private final ApplicationEventPublisher applicationEventPublisher;
     private final EmbeddingStoreFactory embeddingStoreFactory;
     private final EmbeddingModel embeddingModel;
+    private final JemberProperties jemberProperties;
+    private final EventRecordRepository eventRecordRepository;
+    private final ApacheTikaDocumentMetaParser documentParser;
 
     @SneakyThrows
     @Override
-    public void processOpenAPIEmbeddingRequest(EmbeddingRequestMessage message) {
+    public EmbeddingRequestCompleteMessage.EmbeddingRequestStatus processOpenAPIEmbeddingRequest(EmbeddingRequestMessage message) {
 
         try {
-           Document payloadDocument = parse(new ByteArrayInputStream(message.getEventRecord().getData()));
-            processDocument(payloadDocument, message);
+            Optional<UUID> duplicateOfId = findDuplicate(message);
+
+            if (duplicateOfId.isPresent()) {
+                log.debug("Event Id: {} is a duplicate of Event Id: {}, reusing embeddings", message.getEventRecord().getId(),
+                        duplicateOfId.get());
+
+                applicationEventPublisher.publishEvent(EmbeddingRequestCompleteMessage.builder()
+                        .eventRecord(message.getEventRecord())
+                        .duplicateOfId(duplicateOfId.get())
+                        .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.DUPLICATE)
+                        .build());
+
+                return EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.DUPLICATE;
+            }
+
+            processDocument(message);
+            return EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS;
         } catch (BlankDocumentException e) {
             //todo handle better
             log.warn("Blank document received Event Id: {}", message.getEventRecord().getId());
@@ -71,51 +108,191 @@ public class EmbeddingServiceImpl implements EmbeddingService {
                     .eventRecord(message.getEventRecord())
                     .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.EMPTY)
                     .build());
+
+            return EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.EMPTY;
         } catch (Exception e) {
             //todo handle better
             log.error("Error parsing document Event Id: {}", message.getEventRecord().getId(), e);
 
-            applicationEventPublisher.publishEvent(EmbeddingRequestCompleteMessage.builder()
-                    .eventRecord(message.getEventRecord())
-                    .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.ERROR)
-                    .build());
+            // not published, the attempt is retried and only the last failure marks the event record
+            return EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.ERROR;
         }
     }
 
-    private void processDocument(Document payloadDocument, EmbeddingRequestMessage message){
-        // split the document into segments
-        DocumentSplitter documentSplitter = DocumentSplitters.recursive(300, 0);
-        List<TextSegment> textSegments = documentSplitter.split(payloadDocument);
+    private void processDocument(EmbeddingRequestMessage message) {
+        EventRecord eventRecord = message.getEventRecord();
+        int dimension = embeddingModel.dimension();
 
         // get the embedding for each segment
-        EmbeddingStore<TextSegment> embeddingStore = embeddingStoreFactory.createEmbeddingStore(message.getEventRecord().getClientId(), embeddingModel.dimension());
+        EmbeddingStore<TextSegment> embeddingStore = embeddingStoreFactory.createEmbeddingStore(eventRecord.getClientId(), dimension);
         // add the embedding to the vector store, get id
-        Map<String, TextSegment> segmentMap = new HashMap<>(textSegments.size());
+        DocumentSegments documentSegments = new DocumentSegments();
+
+        // embed and store the segments in batches, store chunk id and id in the database
+        // event attributes stored with each new embedding, for filtering in the vector store
+        Metadata metadata = EmbeddingMetadata.forEventRecord(eventRecord);
+
+        EmbeddingBatcher batcher = EmbeddingBatcher.forModel(embeddingModel,
+                jemberProperties.getEmbedding().getBatchSize(),
+                jemberProperties.getEmbedding().getMaxTokensPerBatch());
+
+        // segments are embedded while the document is still being parsed, looked up a batch at a time
+        int lookupSize = jemberProperties.getEmbedding().getBatchSize();
+        int segmentCount = 0;
+
+        try (TextSegmentReader segments = openSegments(eventRecord)) {
+            List<TextSegment> received = new ArrayList<>(lookupSize);
+
+            for (TextSegment segment = segments.next(); segment != null; segment = segments.next()) {
+                received.add(segment);
+                segmentCount++;
+
+                if (received.size() >= lookupSize) {
+                    embedSegments(received, documentSegments, batcher, metadata, embeddingStore);
+                    received.clear();
+                }
+            }
+
+            if (segmentCount == 0) {
+                throw new BlankDocumentException();
+            }
+
+            embedSegments(received, documentSegments, batcher, metadata, embeddingStore);
+            batcher.flush().ifPresent(batch -> embedBatch(batch, metadata, embeddingStore, documentSegments));
+
+            applicationEventPublisher.publishEvent(EmbeddingRequestCompleteMessage.builder()
+                    .eventRecord(eventRecord)
+                    .textSegments(documentSegments.complete())
+                    .documentMetadata(segments.metadata())
+                    .embeddingModel(message.getEmbeddingModel())
+                    .embeddingDimension(dimension)
+                    .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS)
+                    .build());
+        }
+    }
+
+    /**
+     * Payloads with a fast path parser for their content type skip Tika, unless they are not valid for the content
+     * type.
+     */
+    private TextSegmentReader openSegments(EventRecord eventRecord) {
+        Optional<PayloadParser> fastPath = jemberProperties.getParser().isFastPathEnabled()
+                ? PayloadParsers.forContentType(eventRecord.getDataContentType(),
+                        jemberProperties.getParser().getCsvMaxTokensPerSegment(),
+                        EmbeddingBatcher.tokenEstimator(embeddingModel))
+                : Optional.empty();
+
+        if (fastPath.isPresent()) {
+            try {
+                return fastPath.get().parse(eventRecord, MAX_SEGMENT_SIZE);
+            } catch (RuntimeException e) {
+                log.debug("Event Id: {} is not valid {}, parsing with Tika", eventRecord.getId(),
+                        eventRecord.getDataContentType(), e);
+            }
+        }
 
-        // store chunk id and id in the database
+        return TextSegmentStream.start(documentParser, new ByteArrayInputStream(eventRecord.getData()),
+                MAX_SEGMENT_SIZE, jemberProperties.getParser().getSegmentQueueCapacity());
+    }
+
+    /**
+     * Every event writes its own entries to the vector store, they carry the event's attributes for filtering. Text
+     * embedded before for any event is served by the embedding cache, if enabled, instead of the model.
+     */
+    private void embedSegments(List<TextSegment> textSegments, DocumentSegments documentSegments,
+                               EmbeddingBatcher batcher, Metadata metadata, EmbeddingStore<TextSegment> embeddingStore) {
         textSegments.forEach(textSegment -> {
-            // get the embedding
-            log.debug("Adding embedding to vector store");
-            Response<Embedding> embedding = embeddingModel.embed(textSegment);
-            // add to the vector store
-            // get the id
-            log.debug("Embedding added to vector store");
-            log.debug(embedding.toString());
-            String id = embeddingStore.add(embedding.content());
-            // store the id and chunk id in the database
-            segmentMap.put(id, textSegment);
+            if (documentSegments.addFirst(textSegment)) {
+                batcher.add(textSegment)
+                        .ifPresent(batch -> embedBatch(batch, metadata, embeddingStore, documentSegments));
+            }
         });
+    }
+
+    private void embedBatch(List<TextSegment> batch, Metadata metadata, EmbeddingStore<TextSegment> embeddingStore,
+                            DocumentSegments documentSegments) {
+        log.debug("Getting embeddings for batch of {} segments", batch.size());
+        Response<List<Embedding>> embeddings = embeddingModel.embedAll(batch);
+
+        // the vector store gets the metadata, not the chunk text
+        TextSegment metadataSegment = EmbeddingMetadata.segment(metadata);
+        List<TextSegment> metadataSegments = batch.stream().map(segment -> metadataSegment).toList();
+
+        // add to the vector store, ids are returned in the same order as the embeddings
+        List<String> ids = embeddingStore.addAll(embeddings.content(), metadataSegments);
+        log.debug("Added {} embeddings to vector store", ids.size());
+
+        for (int i = 0; i < ids.size(); i++) {
+            documentSegments.embedded(ids.get(i), batch.get(i));
+        }
+    }
+
+    /**
+     * Embeddings are only reused if they were made with the requested model and dimension, others are not in the
+     * vector store collection being written. The original event must have the same filterable attributes, they are
+     * stored with its embeddings and a filter on this event's attributes would not find them otherwise.
+     */
+    private Optional<UUID> findDuplicate(EmbeddingRequestMessage message) {
+        EventRecord eventRecord = message.getEventRecord();
+
+        if (eventRecord.getSha256() == null || eventRecord.getEventType() == null || eventRecord.getId() == null
+                || message.getEmbeddingModel() == null) {
+            return Optional.empty();
+        }
 
-        applicationEventPublisher.publishEvent(EmbeddingRequestCompleteMessage.builder()
-                .eventRecord(message.getEventRecord())
-                .textSegments(segmentMap)
-                .document(payloadDocument)
-                .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS)
-                .build());
+        return eventRecordRepository.findDuplicateIds(eventRecord.getClientId(), eventRecord.getEventType(),
+                eventRecord.getSha256(), EmbeddingStatusEnum.COMPLETED, eventRecord.getId(), eventRecord.getEventId(),
+                eventRecord.getSource(), eventRecord.getSubject(), eventRecord.getTime(),
+                message.getEmbeddingModel(), embeddingModel.dimension(), PageRequest.of(0, 1))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Same hash as computed for the chunk data by EventRecordChunkListener.
+     */
+    private static String sha256(TextSegment textSegment) {
+        return DigestUtils.sha256Hex(textSegment.text().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The segments of one document and their embedding ids. Segments repeated within the document are embedded once
+     * and share the embedding id of the first, each still becomes a chunk so the chunks hold the whole document.
+     */
+    private static final class DocumentSegments {
+        private final List<EmbeddedTextSegment> segments = new ArrayList<>();
+        private final Map<String, String> embeddingIdsByHash = new HashMap<>();
+        private final Set<String> seenHashes = new HashSet<>();
+        private final List<TextSegment> repeated = new ArrayList<>();
+
+        /**
+         * @return true for the first segment with its text, which is to be embedded
+         */
+        boolean addFirst(TextSegment textSegment) {
+            if (seenHashes.add(sha256(textSegment))) {
+                return true;
+            }
+
+            // the first may still be waiting in the batcher, the id is looked up once all are embedded
+            repeated.add(textSegment);
+            return false;
+        }
+
+        void embedded(String embeddingId, TextSegment textSegment) {
+            embeddingIdsByHash.put(sha256(textSegment), embeddingId);
+            segments.add(new EmbeddedTextSegment(embeddingId, textSegment));
+        }
+
+        List<EmbeddedTextSegment> complete() {
+            repeated.forEach(textSegment ->
+                    segments.add(new EmbeddedTextSegment(embeddingIdsByHash.get(sha256(textSegment)), textSegment)));
+            repeated.clear();
+
+            return segments;
+        }
     }
 
     public Document parse(InputStream inputStream) {
-        DocumentParser parser = new ApacheTikaDocumentMetaParser();
-        return parser.parse(inputStream);
+        return documentParser.parse(inputStream);
     }
 }
@@ -0,0 +1,56 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.ModelEnum;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persistent queue of embedding work. Work items survive restarts and can be claimed by any node.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface EmbeddingWorkQueueService {
+
+    EmbeddingWorkItem enqueue(EventRecord eventRecord, ModelEnum model, EmbeddingModelEnum embeddingModel);
+
+    /**
+     * Claim up to max due work items for this node.
+     */
+    List<EmbeddingWorkItem> claim(int max);
+
+    void complete(UUID workItemId);
+
+    /**
+     * Return a claimed work item to the queue without counting the attempt.
+     */
+    void defer(UUID workItemId, Duration delay);
+
+    /**
+     * Record a failed attempt. The work item is rescheduled with backoff, or moved to DEAD_LETTER once the
+     * maximum number of attempts is reached, which sets the embedding status of the event record to ERROR.
+     */
+    void fail(UUID workItemId, String error);
+}
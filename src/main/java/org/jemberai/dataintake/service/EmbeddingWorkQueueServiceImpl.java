@@ -0,0 +1,187 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
+import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.ModelEnum;
+import org.jemberai.dataintake.domain.WorkItemStatusEnum;
+import org.jemberai.dataintake.repositories.EmbeddingWorkItemRepository;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Service
+public class EmbeddingWorkQueueServiceImpl implements EmbeddingWorkQueueService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final EmbeddingWorkItemRepository embeddingWorkItemRepository;
+    private final EventRecordRepository eventRecordRepository;
+    private final JemberProperties.WorkQueueProperties properties;
+    private final String nodeId;
+
+    public EmbeddingWorkQueueServiceImpl(EmbeddingWorkItemRepository embeddingWorkItemRepository,
+                                         EventRecordRepository eventRecordRepository,
+                                         JemberProperties jemberProperties) {
+        this.embeddingWorkItemRepository = embeddingWorkItemRepository;
+        this.eventRecordRepository = eventRecordRepository;
+        this.properties = jemberProperties.getWorkQueue();
+        this.nodeId = properties.getNodeId() != null ? properties.getNodeId()
+                : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    @Transactional
+    @Override
+    public EmbeddingWorkItem enqueue(EventRecord eventRecord, ModelEnum model, EmbeddingModelEnum embeddingModel) {
+        log.debug("Enqueuing embedding work for event: {}, model: {}", eventRecord.getId(), embeddingModel);
+
+        return embeddingWorkItemRepository.save(EmbeddingWorkItem.builder()
+                .eventRecordId(eventRecord.getId())
+                .clientId(eventRecord.getClientId())
+                .model(model)
+                .embeddingModel(embeddingModel)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Transactional
+    @Override
+    public List<EmbeddingWorkItem> claim(int max) {
+        if (max < 1) {
+            return List.of();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+
+        List<EmbeddingWorkItem> candidates = embeddingWorkItemRepository.findClaimable(WorkItemStatusEnum.PENDING,
+                WorkItemStatusEnum.IN_PROGRESS, now, now.minus(properties.getLeaseTimeout()), PageRequest.of(0, max));
+
+        List<EmbeddingWorkItem> claimed = new ArrayList<>(candidates.size());
+
+        candidates.forEach(workItem -> {
+            if (workItem.getStatus() == WorkItemStatusEnum.IN_PROGRESS) {
+                log.warn("Lease expired for work item: {}, held by: {}", workItem.getId(), workItem.getLockedBy());
+
+                // the previous holder never finished, most likely the node was stopped
+                if (workItem.getAttempts() >= properties.getMaxAttempts()) {
+                    deadLetter(workItem, "Lease expired after " + workItem.getAttempts() + " attempts");
+                    return;
+                }
+            }
+
+            workItem.setStatus(WorkItemStatusEnum.IN_PROGRESS);
+            workItem.setAttempts(workItem.getAttempts() + 1);
+            workItem.setLockedBy(nodeId);
+            workItem.setLockedAt(now);
+            claimed.add(workItem);
+        });
+
+        return claimed;
+    }
+
+    @Transactional
+    @Override
+    public void complete(UUID workItemId) {
+        embeddingWorkItemRepository.findById(workItemId).ifPresent(workItem -> {
+            workItem.setStatus(WorkItemStatusEnum.COMPLETED);
+            workItem.setLockedBy(null);
+            workItem.setLockedAt(null);
+        });
+    }
+
+    @Transactional
+    @Override
+    public void defer(UUID workItemId, Duration delay) {
+        embeddingWorkItemRepository.findById(workItemId).ifPresent(workItem -> {
+            workItem.setStatus(WorkItemStatusEnum.PENDING);
+            workItem.setAttempts(Math.max(workItem.getAttempts() - 1, 0));
+            workItem.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            workItem.setLockedBy(null);
+            workItem.setLockedAt(null);
+        });
+    }
+
+    @Transactional
+    @Override
+    public void fail(UUID workItemId, String error) {
+        embeddingWorkItemRepository.findById(workItemId).ifPresent(workItem -> {
+            if (workItem.getAttempts() >= properties.getMaxAttempts()) {
+                deadLetter(workItem, error);
+                return;
+            }
+
+            Duration backoff = backoff(workItem.getAttempts());
+
+            log.warn("Embedding work item: {} failed attempt {}, retrying in {}", workItemId, workItem.getAttempts(), backoff);
+
+            workItem.setStatus(WorkItemStatusEnum.PENDING);
+            workItem.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+            workItem.setLastError(truncate(error));
+            workItem.setLockedBy(null);
+            workItem.setLockedAt(null);
+        });
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = properties.getInitialBackoff().multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 20));
+
+        return backoff.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : backoff;
+    }
+
+    /**
+     * No further attempts are made, the event record gets its final status ERROR.
+     */
+    private void deadLetter(EmbeddingWorkItem workItem, String error) {
+        log.error("Moving embedding work item: {} for event: {} to dead letter after {} attempts",
+                workItem.getId(), workItem.getEventRecordId(), workItem.getAttempts());
+
+        workItem.setStatus(WorkItemStatusEnum.DEAD_LETTER);
+        workItem.setLastError(truncate(error));
+        workItem.setLockedBy(null);
+        workItem.setLockedAt(null);
+
+        eventRecordRepository.findById(workItem.getEventRecordId())
+                .ifPresent(eventRecord -> eventRecord.setEmbeddingStatus(EmbeddingStatusEnum.ERROR));
+    }
+
+    private String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -19,7 +19,11 @@
 package org.jemberai.dataintake.service;
 
 import io.cloudevents.CloudEvent;
+import org.jemberai.dataintake.model.BatchEventResult;
+import org.jemberai.dataintake.utils.SpooledPayload;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,5 +34,9 @@ public interface EventRecordService {
 
     CloudEvent save(CloudEvent event, String clientId);
 
+    CloudEvent save(CloudEvent event, SpooledPayload payload, String clientId) throws IOException;
+
+    List<BatchEventResult> saveAll(List<CloudEvent> events, String clientId);
+
     Optional<CloudEvent> findById(UUID id);
 }
@@ -19,22 +19,31 @@
 package org.jemberai.dataintake.service;
 
 import io.cloudevents.CloudEvent;
-import io.cloudevents.CloudEventData;
 import io.cloudevents.core.v1.CloudEventBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.jemberai.dataintake.domain.EventExtensionRecord;
 import org.jemberai.dataintake.domain.EventRecord;
 import org.jemberai.dataintake.messages.NewEventMessage;
+import org.jemberai.dataintake.model.BatchEventResult;
 import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.utils.SpooledPayload;
+import org.jemberai.dataintake.utils.parser.CsvRows;
+import org.jemberai.dataintake.utils.parser.PayloadParsers;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collections;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -51,6 +60,7 @@ public class EventRecordServiceImpl implements EventRecordService {
     private final EventRecordRepository eventRecordRepository;
     private final ApplicationEventPublisher applicationEventPublisher;
 
+    @Transactional(readOnly = true)
     @Override
     public Optional<CloudEvent> findById(UUID id) {
         EventRecord er = eventRecordRepository.findById(id).orElse(null);
@@ -74,13 +84,91 @@ public class EventRecordServiceImpl implements EventRecordService {
      * @param event CloudEvent to save
      * @return updated CloudEvent
      */
+    @Transactional
     @Override
     public CloudEvent save(CloudEvent event, String clientId) {
-        var eventRecord = cloudEventToEventRecord(event, clientId);
+        return saveEventRecord(event, toEventRecord(event, clientId));
+    }
+
+    /**
+     * Save a batch of CloudEvents in a single transaction. Inserts are sent to the database in JDBC batches
+     * (see hibernate.jdbc.batch_size). Events which cannot be converted are rejected individually, the results
+     * are in the same order as the events.
+     */
+    @Transactional
+    @Override
+    public List<BatchEventResult> saveAll(List<CloudEvent> events, String clientId) {
+        BatchEventResult[] results = new BatchEventResult[events.size()];
+        List<EventRecord> eventRecords = new ArrayList<>(events.size());
+        List<Integer> positions = new ArrayList<>(events.size());
+
+        for (int i = 0; i < events.size(); i++) {
+            CloudEvent event = events.get(i);
+            try {
+                eventRecords.add(toEventRecord(event, clientId));
+                positions.add(i);
+            } catch (RuntimeException e) {
+                log.debug("Rejecting CloudEvent {} of batch", event.getId(), e);
+                results[i] = BatchEventResult.builder()
+                        .id(event.getId())
+                        .status(BatchEventResult.Status.REJECTED)
+                        .error(e.getMessage())
+                        .build();
+            }
+        }
+
+        List<EventRecord> savedEventRecords = eventRecordRepository.saveAll(eventRecords);
+
+        log.debug("Saved batch of {} EventRecords", savedEventRecords.size());
+
+        for (int i = 0; i < savedEventRecords.size(); i++) {
+            EventRecord savedEventRecord = savedEventRecords.get(i);
+            int position = positions.get(i);
+
+            addEventIdExtension(savedEventRecord);
+
+            applicationEventPublisher.publishEvent(NewEventMessage.builder().newEventRecord(savedEventRecord).build());
+
+            results[position] = BatchEventResult.builder()
+                    .id(events.get(position).getId())
+                    .jemberaiEventId(savedEventRecord.getId())
+                    .status(BatchEventResult.Status.CREATED)
+                    .build();
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Save a CloudEvent whose data was streamed to a temporary file. The SHA-256 and CSV header are taken from the
+     * spooled payload, the data is read into memory once for encryption. The returned CloudEvent does not include
+     * the data.
+     */
+    @Transactional
+    @Override
+    public CloudEvent save(CloudEvent event, SpooledPayload payload, String clientId) throws IOException {
+        var builder = eventRecordBuilder(event, clientId);
+
+        if (!payload.isEmpty()) {
+            builder.data(payload.readAllBytes());
+            builder.sha256(payload.getSha256());
+
+            if (hasCsvHeader(event)) {
+                try (InputStream in = payload.newInputStream()) {
+                    builder.csvHeader(CsvRows.header(in, PayloadParsers.charset(event.getDataContentType())));
+                }
+            }
+        }
+
+        return saveEventRecord(event, builder.build());
+    }
 
+    private CloudEvent saveEventRecord(CloudEvent event, EventRecord eventRecord) {
         var savedEventRecord = eventRecordRepository.save(eventRecord);
+        addEventIdExtension(savedEventRecord);
 
         log.debug("Saved EventRecord Id: {}", savedEventRecord.getId());
+        // listeners enqueue the embedding work within this transaction
         log.debug("Publishing NewEventMessage");
         applicationEventPublisher.publishEvent(NewEventMessage.builder().newEventRecord(savedEventRecord).build());
 
@@ -88,24 +176,48 @@ public class EventRecordServiceImpl implements EventRecordService {
 
         ceBuilder.withExtension(JEMBERAIEVENTID, savedEventRecord.getId().toString());
 
+        return ceBuilder.build();
+    }
+
+    /**
+     * Stores the id of the saved event record as an extension, so the event read back carries it. Persisted when the
+     * transaction commits.
+     */
+    private void addEventIdExtension(EventRecord savedEventRecord) {
+        EventExtensionRecord extension = EventExtensionRecord.builder()
+                .fieldName(JEMBERAIEVENTID)
+                .fieldValue(savedEventRecord.getId().toString())
+                .eventRecord(savedEventRecord)
+                .build();
+
         if (savedEventRecord.getExtensions() != null) {
-            savedEventRecord.getExtensions().add(EventExtensionRecord.builder()
-                    .fieldName(JEMBERAIEVENTID)
-                    .fieldValue(savedEventRecord.getId().toString())
-                    .build());
+            savedEventRecord.getExtensions().add(extension);
         } else {
-            savedEventRecord.setExtensions(Collections.singletonList(EventExtensionRecord.builder()
-                    .fieldName(JEMBERAIEVENTID)
-                    .fieldValue(savedEventRecord.getId().toString())
-                    .build()));
+            savedEventRecord.setExtensions(new ArrayList<>(List.of(extension)));
         }
+    }
 
-        return ceBuilder.build();
+    private EventRecord toEventRecord(CloudEvent event, String clientId) {
+        var builder = eventRecordBuilder(event, clientId);
+
+        if (event.getData() != null) {
+            byte[] data = event.getData().toBytes();
+
+            builder.data(data);
+            builder.sha256(DigestUtils.sha256Hex(data));
+
+            if (hasCsvHeader(event)) {
+                builder.csvHeader(csvHeader(data, event.getDataContentType()));
+            }
+        }
+
+        return builder.build();
     }
 
-    private EventRecord cloudEventToEventRecord(CloudEvent event, String clientId) {
+    private EventRecord.EventRecordBuilder eventRecordBuilder(CloudEvent event, String clientId) {
         var builder = EventRecord.builder()
                 .clientId(clientId)
+                .eventId(event.getId())
                 .specVersion(event.getSpecVersion().toString())
                 .eventType(event.getType())
                 .subject(event.getSubject())
@@ -113,16 +225,6 @@ public class EventRecordServiceImpl implements EventRecordService {
 
         if (event.getSource() != null) {
             builder.source(event.getSource().toString());
-
-            if (Objects.equals(event.getDataContentType(), MediaType.APPLICATION_JSON_VALUE) && event.getData() != null) {
-                builder.csvHeader(extractCSVHeader(event.getData()));
-            }
-        }
-
-        if (event.getData() != null) {
-            builder.data(event.getData().toBytes());
-            String sha256hex = org.apache.commons.codec.digest.DigestUtils.sha256Hex(event.getData().toBytes());
-            builder.sha256(sha256hex);
         }
 
         if (event.getTime() != null) {
@@ -140,18 +242,22 @@ public class EventRecordServiceImpl implements EventRecordService {
             builder.extensions(extensionRecords);
         }
 
-        return builder.build();
+        return builder;
     }
 
-    private String extractCSVHeader(CloudEventData data) {
-        String csvData = new String(data.toBytes());
-        String[] rows = csvData.split("\n");
-        for (String row : rows) { // Skip empty rows
-            if (!row.trim().isEmpty()) {
-                return row;
-            }
+    private boolean hasCsvHeader(CloudEvent event) {
+        return event.getSource() != null && PayloadParsers.isCsv(event.getDataContentType());
+    }
+
+    /**
+     * Reads only as far as the first row with content.
+     */
+    private String csvHeader(byte[] data, String contentType) {
+        try {
+            return CsvRows.header(new ByteArrayInputStream(data), PayloadParsers.charset(contentType));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return null;
     }
 
     private CloudEvent eventRecordToCloudEvent(EventRecord eventRecord) throws URISyntaxException {
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Full text index of chunk texts, per client, for keyword and hybrid search.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface KeywordIndexService {
+
+    record KeywordMatch(String embeddingId, double score) {
+    }
+
+    boolean isEnabled();
+
+    /**
+     * Indexes chunk texts by embedding id. Chunks with the same content share an embedding id and are indexed once.
+     */
+    void index(String clientId, UUID eventRecordId, Map<String, String> textsByEmbeddingId);
+
+    /**
+     * @return BM25 matches, best first
+     */
+    List<KeywordMatch> search(String clientId, String query, int maxResults);
+}
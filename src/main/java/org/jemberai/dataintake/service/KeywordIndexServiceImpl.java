@@ -0,0 +1,345 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.jemberai.dataintake.utils.ChunkBlockCodec;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Embedded Lucene index, one per client. Only the terms and the embedding and event record ids are kept, the chunk
+ * text is not stored in the index. Without an index directory the indexes are held in memory.
+ * <p>
+ * The index is local to the node and the event_record_chunk table is the source of truth. Before searching, an
+ * index is caught up with the chunks saved since its last catch up, at most once per sync interval. An empty index,
+ * after a restart without an index directory or on a new node, is rebuilt this way on its first search. The creation
+ * time of the newest indexed chunk is kept in the index commit data.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Service
+public class KeywordIndexServiceImpl implements KeywordIndexService, DisposableBean {
+
+    static final String EMBEDDING_ID = "embeddingId";
+    static final String EVENT_RECORD_ID = "eventRecordId";
+    static final String TEXT = "text";
+
+    static final String SYNCED_TO = "syncedTo";
+    static final int SYNC_BATCH_SIZE = 500;
+
+    private static final LocalDateTime NOT_SYNCED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final JemberProperties.KeywordSearchProperties properties;
+    private final EventRecordChunkRepository eventRecordChunkRepository;
+    private final ChunkEncryptionService chunkEncryptionService;
+    private final ChunkBlockService chunkBlockService;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Map<String, ClientIndex> indexes = new ConcurrentHashMap<>();
+
+    public KeywordIndexServiceImpl(JemberProperties jemberProperties,
+                                   EventRecordChunkRepository eventRecordChunkRepository,
+                                   ChunkEncryptionService chunkEncryptionService, ChunkBlockService chunkBlockService) {
+        this.properties = jemberProperties.getKeywordSearch();
+        this.eventRecordChunkRepository = eventRecordChunkRepository;
+        this.chunkEncryptionService = chunkEncryptionService;
+        this.chunkBlockService = chunkBlockService;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void index(String clientId, UUID eventRecordId, Map<String, String> textsByEmbeddingId) {
+        if (!isEnabled() || textsByEmbeddingId.isEmpty()) {
+            return;
+        }
+
+        ClientIndex clientIndex = clientIndex(clientId);
+
+        try {
+            for (Map.Entry<String, String> entry : textsByEmbeddingId.entrySet()) {
+                addDocument(clientIndex, entry.getKey(), eventRecordId, entry.getValue());
+            }
+
+            clientIndex.writer().commit();
+            clientIndex.searcherManager().maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error indexing event record " + eventRecordId, e);
+        }
+
+        log.debug("Indexed {} chunks of event record {}", textsByEmbeddingId.size(), eventRecordId);
+    }
+
+    @Override
+    public List<KeywordMatch> search(String clientId, String query, int maxResults) {
+        if (!isEnabled() || query == null || query.isBlank() || maxResults < 1) {
+            return List.of();
+        }
+
+        ClientIndex clientIndex = clientIndex(clientId);
+        catchUp(clientId, clientIndex);
+
+        try {
+            // user input is matched as terms, not as Lucene query syntax
+            Query luceneQuery = new QueryParser(TEXT, analyzer).parse(QueryParser.escape(query));
+
+            IndexSearcher searcher = clientIndex.searcherManager().acquire();
+            try {
+                TopDocs topDocs = searcher.search(luceneQuery, maxResults);
+                StoredFields storedFields = searcher.storedFields();
+
+                List<KeywordMatch> matches = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    matches.add(new KeywordMatch(storedFields.document(scoreDoc.doc).get(EMBEDDING_ID), scoreDoc.score));
+                }
+
+                return matches;
+            } finally {
+                clientIndex.searcherManager().release(searcher);
+            }
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid keyword query", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error searching keyword index", e);
+        }
+    }
+
+    /**
+     * Indexes the client's chunks created since the index was last caught up. Chunks already in the index are
+     * skipped without being decrypted, the text of an embedding id does not change.
+     */
+    private void catchUp(String clientId, ClientIndex clientIndex) {
+        clientIndex.syncLock().lock();
+        try {
+            long now = System.nanoTime();
+            if (clientIndex.syncedTo != null && now - clientIndex.nextSyncNanos < 0) {
+                return;
+            }
+
+            LocalDateTime syncedTo = clientIndex.syncedTo != null ? clientIndex.syncedTo : committedSyncedTo(clientIndex);
+            LocalDateTime createdAfter = syncedTo.equals(NOT_SYNCED) ? NOT_SYNCED
+                    : syncedTo.minus(properties.getSyncLookBack());
+
+            int indexed = 0;
+            List<EventRecordChunkRepository.CreatedChunkContent> chunks;
+            int page = 0;
+            do {
+                chunks = eventRecordChunkRepository.findChunkContentsCreatedAfter(clientId, createdAfter,
+                        PageRequest.of(page++, SYNC_BATCH_SIZE));
+
+                indexed += indexMissing(clientId, clientIndex, chunks);
+
+                for (EventRecordChunkRepository.CreatedChunkContent chunk : chunks) {
+                    if (chunk.getDateCreated() != null && chunk.getDateCreated().isAfter(syncedTo)) {
+                        syncedTo = chunk.getDateCreated();
+                    }
+                }
+            } while (chunks.size() == SYNC_BATCH_SIZE);
+
+            if (indexed > 0) {
+                clientIndex.writer().setLiveCommitData(Map.of(SYNCED_TO, syncedTo.toString()).entrySet());
+                clientIndex.writer().commit();
+                clientIndex.searcherManager().maybeRefresh();
+
+                log.debug("Caught up keyword index of client {} with {} chunks", clientId, indexed);
+            }
+
+            clientIndex.syncedTo = syncedTo;
+            clientIndex.nextSyncNanos = now + properties.getSyncInterval().toNanos();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error catching up keyword index", e);
+        } finally {
+            clientIndex.syncLock().unlock();
+        }
+    }
+
+    private int indexMissing(String clientId, ClientIndex clientIndex,
+                             List<EventRecordChunkRepository.CreatedChunkContent> chunks) throws IOException {
+        Map<String, EventRecordChunkRepository.CreatedChunkContent> missing = new HashMap<>();
+
+        IndexSearcher searcher = clientIndex.searcherManager().acquire();
+        try {
+            for (EventRecordChunkRepository.CreatedChunkContent chunk : chunks) {
+                if (!missing.containsKey(chunk.getEmbeddingId())
+                        && searcher.count(new TermQuery(new Term(EMBEDDING_ID, chunk.getEmbeddingId()))) == 0) {
+                    missing.put(chunk.getEmbeddingId(), chunk);
+                }
+            }
+        } finally {
+            clientIndex.searcherManager().release(searcher);
+        }
+
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        // block stored chunks, each block is decrypted once
+        Set<UUID> blockIds = missing.values().stream()
+                .map(EventRecordChunkRepository.ChunkContent::getBlockId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<UUID, byte[]> blocks = blockIds.isEmpty() ? Map.of() : chunkBlockService.decryptBlocks(clientId, blockIds);
+
+        for (EventRecordChunkRepository.CreatedChunkContent chunk : missing.values()) {
+            addDocument(clientIndex, chunk.getEmbeddingId(), chunk.getEventRecordId(), text(clientId, chunk, blocks));
+        }
+
+        return missing.size();
+    }
+
+    private String text(String clientId, EventRecordChunkRepository.ChunkContent chunk, Map<UUID, byte[]> blocks) {
+        byte[] data = chunk.getBlockId() != null
+                ? ChunkBlockCodec.slice(blocks.get(chunk.getBlockId()), chunk.getBlockOffset())
+                : chunkEncryptionService.decrypt(clientId, new EncryptedValueDTO(chunk.getProvider(),
+                chunk.getKeyId(), chunk.getHmac(), chunk.getEncryptedValue(), chunk.getInitializationVector()));
+
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private void addDocument(ClientIndex clientIndex, String embeddingId, UUID eventRecordId, String text)
+            throws IOException {
+        Document document = new Document();
+        document.add(new StringField(EMBEDDING_ID, embeddingId, Field.Store.YES));
+        document.add(new StringField(EVENT_RECORD_ID, eventRecordId.toString(), Field.Store.YES));
+        document.add(new TextField(TEXT, text, Field.Store.NO));
+
+        clientIndex.writer().updateDocument(new Term(EMBEDDING_ID, embeddingId), document);
+    }
+
+    private static LocalDateTime committedSyncedTo(ClientIndex clientIndex) {
+        Iterable<Map.Entry<String, String>> commitData = clientIndex.writer().getLiveCommitData();
+
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (SYNCED_TO.equals(entry.getKey())) {
+                    return LocalDateTime.parse(entry.getValue());
+                }
+            }
+        }
+
+        return NOT_SYNCED;
+    }
+
+    private ClientIndex clientIndex(String clientId) {
+        return indexes.computeIfAbsent(clientId, id -> {
+            try {
+                Directory directory = properties.getIndexDirectory() == null ? new ByteBuffersDirectory()
+                        // client ids are not necessarily safe as directory names
+                        : FSDirectory.open(properties.getIndexDirectory().resolve(DigestUtils.sha256Hex(id)));
+
+                IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+
+                return new ClientIndex(directory, writer, new SearcherManager(writer, null));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error opening keyword index", e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        indexes.values().forEach(ClientIndex::close);
+        indexes.clear();
+    }
+
+    private static final class ClientIndex {
+        private final Directory directory;
+        private final IndexWriter writer;
+        private final SearcherManager searcherManager;
+        private final ReentrantLock syncLock = new ReentrantLock();
+
+        // guarded by syncLock
+        private LocalDateTime syncedTo;
+        private long nextSyncNanos;
+
+        ClientIndex(Directory directory, IndexWriter writer, SearcherManager searcherManager) {
+            this.directory = directory;
+            this.writer = writer;
+            this.searcherManager = searcherManager;
+        }
+
+        IndexWriter writer() {
+            return writer;
+        }
+
+        SearcherManager searcherManager() {
+            return searcherManager;
+        }
+
+        ReentrantLock syncLock() {
+            return syncLock;
+        }
+
+        void close() {
+            try {
+                searcherManager.close();
+                writer.close();
+                directory.close();
+            } catch (IOException e) {
+                log.warn("Error closing keyword index", e);
+            }
+        }
+    }
+}
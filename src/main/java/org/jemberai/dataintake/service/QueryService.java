@@ -29,4 +29,11 @@ import java.util.List;
 public interface QueryService {
 
     List<QueryResponseDocument> getDocuments(String clientId, QueryRequest queryRequest);
+
+    /**
+     * Runs several queries for the same client.
+     *
+     * @return the documents of each query, in the order of the queries
+     */
+    List<List<QueryResponseDocument>> getDocuments(String clientId, List<QueryRequest> queryRequests);
 }
@@ -21,24 +21,42 @@ package org.jemberai.dataintake.service;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.dataintake.config.JemberProperties;
 import org.jemberai.dataintake.domain.DocumentMetadataKeys;
-import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.SearchModeEnum;
+import org.jemberai.dataintake.embedding.ChunkContentSearch;
+import org.jemberai.dataintake.embedding.EmbeddingMetadata;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
 import org.jemberai.dataintake.model.QueryRequest;
 import org.jemberai.dataintake.model.QueryResponseDocument;
 import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.jemberai.dataintake.utils.ChunkBlockCodec;
+import org.jemberai.dataintake.utils.InvalidQueryFilterException;
+import org.jemberai.dataintake.utils.ReciprocalRankFusion;
+import org.jemberai.dataintake.utils.SearchModeNotAvailableException;
 import org.jemberai.dataintake.utils.StringUtil;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * Created by jt, Spring Framework Guru.
@@ -51,43 +69,290 @@ public class QueryServiceImpl implements QueryService {
     private final EmbeddingStoreFactory embeddingStoreFactory;
     private final EmbeddingModel embeddingModel;
     private final EventRecordChunkRepository eventRecordChunkRepository;
+    private final ChunkEncryptionService chunkEncryptionService;
+    private final ChunkBlockService chunkBlockService;
+    private final KeywordIndexService keywordIndexService;
+    private final JemberProperties jemberProperties;
+
+    /**
+     * A ranked search result. The score depends on the search mode: similarity for VECTOR, BM25 for KEYWORD and
+     * the fused reciprocal rank score for HYBRID. The chunk is set if the store returned it with the match.
+     */
+    private record RankedMatch(String embeddingId, double score, Embedding embedding,
+                               EventRecordChunkRepository.ChunkContent chunk) {
+
+        RankedMatch(String embeddingId, double score, Embedding embedding) {
+            this(embeddingId, score, embedding, null);
+        }
+    }
 
     @Override
     public List<QueryResponseDocument> getDocuments(String clientId, QueryRequest queryRequest) {
         log.debug("Querying for documents");
 
+        checkSearchMode(queryRequest);
+
+        return resolveDocuments(clientId, List.of(queryRequest), List.of(page(clientId, queryRequest, null))).getFirst();
+    }
+
+    /**
+     * The queries are embedded with a single call to the embedding model, searched concurrently, and the chunks
+     * of all results are read with one query. Chunks matched by several queries are decrypted once.
+     */
+    @Override
+    public List<List<QueryResponseDocument>> getDocuments(String clientId, List<QueryRequest> queryRequests) {
+        log.debug("Querying for documents, batch of {}", queryRequests.size());
+
+        if (queryRequests.isEmpty()) {
+            return List.of();
+        }
+
+        queryRequests.forEach(this::checkSearchMode);
+
+        Map<Integer, Embedding> queryEmbeddings = embedQueries(queryRequests);
+
+        List<List<RankedMatch>> pages = new ArrayList<>(queryRequests.size());
+
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<RankedMatch>>> futures = new ArrayList<>(queryRequests.size());
+
+            for (int i = 0; i < queryRequests.size(); i++) {
+                QueryRequest queryRequest = queryRequests.get(i);
+                Embedding queryEmbedding = queryEmbeddings.get(i);
+
+                futures.add(executorService.submit(() -> page(clientId, queryRequest, queryEmbedding)));
+            }
+
+            for (Future<List<RankedMatch>> future : futures) {
+                pages.add(getResult(future));
+            }
+        }
+
+        return resolveDocuments(clientId, queryRequests, pages);
+    }
+
+    private void checkSearchMode(QueryRequest queryRequest) {
+        SearchModeEnum searchMode = searchMode(queryRequest);
+
+        if (searchMode != SearchModeEnum.VECTOR && !keywordIndexService.isEnabled()) {
+            throw new SearchModeNotAvailableException(searchMode.name());
+        }
+
+        // the keyword index does not hold the event metadata, a filter would only apply to part of the results
+        if (searchMode != SearchModeEnum.VECTOR && EmbeddingMetadata.toFilter(queryRequest.getFilter()) != null) {
+            throw new InvalidQueryFilterException("Filters are only supported with the VECTOR search mode");
+        }
+    }
+
+    private static SearchModeEnum searchMode(QueryRequest queryRequest) {
+        return queryRequest.getSearchMode() != null ? queryRequest.getSearchMode() : SearchModeEnum.VECTOR;
+    }
+
+    /**
+     * @return query embeddings by index of the query, keyword only queries are not embedded
+     */
+    private Map<Integer, Embedding> embedQueries(List<QueryRequest> queryRequests) {
+        List<Integer> indexes = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+
+        for (int i = 0; i < queryRequests.size(); i++) {
+            if (searchMode(queryRequests.get(i)) != SearchModeEnum.KEYWORD) {
+                indexes.add(i);
+                segments.add(TextSegment.from(queryRequests.get(i).getQuery()));
+            }
+        }
+
+        Map<Integer, Embedding> queryEmbeddings = new HashMap<>();
+
+        if (!segments.isEmpty()) {
+            List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+
+            for (int i = 0; i < indexes.size(); i++) {
+                queryEmbeddings.put(indexes.get(i), embeddings.get(i));
+            }
+        }
+
+        return queryEmbeddings;
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error searching", e.getCause());
+        }
+    }
+
+    /**
+     * @param queryEmbedding embedding of the query, embedded here if null and needed
+     * @return the requested page of ranked matches
+     */
+    private List<RankedMatch> page(String clientId, QueryRequest queryRequest, Embedding queryEmbedding) {
+        int topK = queryRequest.getTopK() != null ? queryRequest.getTopK() : 10;
+        int offset = queryRequest.getOffset() != null ? Math.max(0, queryRequest.getOffset()) : 0;
+
+        // the search has to rank the skipped results too, only the requested page is read and decrypted
+        int maxResults = offset + topK;
+
+        List<RankedMatch> matches = switch (searchMode(queryRequest)) {
+            case VECTOR -> vectorSearch(clientId, queryRequest, queryEmbedding, maxResults);
+            // keyword only queries skip the embedding model
+            case KEYWORD -> keywordSearch(clientId, queryRequest, maxResults);
+            case HYBRID -> hybridSearch(clientId, queryRequest, queryEmbedding, maxResults);
+        };
+
+        return matches.size() <= offset ? List.of() : matches.subList(offset, matches.size());
+    }
+
+    private List<List<QueryResponseDocument>> resolveDocuments(String clientId, List<QueryRequest> queryRequests,
+                                                               List<List<RankedMatch>> pages) {
+        Map<String, EventRecordChunkRepository.ChunkContent> chunksByEmbeddingId = new HashMap<>();
+        Set<String> matchIds = new LinkedHashSet<>();
+
+        pages.forEach(page -> page.forEach(match -> {
+            if (match.chunk() != null) {
+                chunksByEmbeddingId.putIfAbsent(match.embeddingId(), match.chunk());
+            } else {
+                matchIds.add(match.embeddingId());
+            }
+        }));
+
+        matchIds.removeAll(chunksByEmbeddingId.keySet());
+
+        if (!matchIds.isEmpty()) {
+            // chunks with the same content share an embedding id, return each match once
+            eventRecordChunkRepository.findChunkContents(clientId, List.copyOf(matchIds))
+                    .forEach(chunk -> chunksByEmbeddingId.putIfAbsent(chunk.getEmbeddingId(), chunk));
+        }
+
+        if (chunksByEmbeddingId.isEmpty()) {
+            return pages.stream().map(page -> List.<QueryResponseDocument>of()).toList();
+        }
+
+        // block stored chunks, each block is decrypted once
+        Set<UUID> blockIds = chunksByEmbeddingId.values().stream().map(EventRecordChunkRepository.ChunkContent::getBlockId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<UUID, byte[]> blocks = blockIds.isEmpty() ? Map.of() : chunkBlockService.decryptBlocks(clientId, blockIds);
+
+        Map<String, String> contents = new HashMap<>();
+
+        List<List<QueryResponseDocument>> results = new ArrayList<>(pages.size());
+
+        for (int i = 0; i < pages.size(); i++) {
+            boolean includeEmbedding = Boolean.TRUE.equals(queryRequests.get(i).getIncludeEmbedding());
+
+            // in ranked order
+            results.add(pages.get(i).stream()
+                    .filter(match -> chunksByEmbeddingId.containsKey(match.embeddingId()))
+                    .map(match -> {
+                        EventRecordChunkRepository.ChunkContent chunk = chunksByEmbeddingId.get(match.embeddingId());
+                        String content = contents.computeIfAbsent(match.embeddingId(), id -> decrypt(clientId, chunk, blocks));
+
+                        return toDocument(match, chunk, content, includeEmbedding);
+                    })
+                    .toList());
+        }
+
+        return results;
+    }
+
+    private String decrypt(String clientId, EventRecordChunkRepository.ChunkContent chunk, Map<UUID, byte[]> blocks) {
+        byte[] data = chunk.getBlockId() != null
+                ? ChunkBlockCodec.slice(blocks.get(chunk.getBlockId()), chunk.getBlockOffset())
+                : chunkEncryptionService.decrypt(clientId, new EncryptedValueDTO(chunk.getProvider(),
+                chunk.getKeyId(), chunk.getHmac(), chunk.getEncryptedValue(), chunk.getInitializationVector()));
+
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private QueryResponseDocument toDocument(RankedMatch match, EventRecordChunkRepository.ChunkContent chunk,
+                                             String content, boolean includeEmbedding) {
+        Map<String, Object> metadata = new HashMap<>();
+        String parentDocumentId = chunk.getEventRecordId() != null ? chunk.getEventRecordId().toString() : null;
+        metadata.put(DocumentMetadataKeys.PARENT_DOCUMENT_ID, parentDocumentId);
+
+        if (StringUtil.isNotEmpty(chunk.getCsvHeader())) {
+            metadata.put(DocumentMetadataKeys.CSV_HEADER, chunk.getCsvHeader());
+        }
+
+        var builder = QueryResponseDocument.builder()
+                .id(chunk.getId().toString())
+                .embeddingId(chunk.getEmbeddingId())
+                .content(content)
+                .score(match.score())
+                .metadata(metadata);
+
+        // only vector matches carry the embedding, and only if the store returns it on search
+        if (includeEmbedding && match.embedding() != null) {
+            builder.embedding(match.embedding().vector());
+        }
+
+        return builder.build();
+    }
+
+    private List<RankedMatch> vectorSearch(String clientId, QueryRequest queryRequest, Embedding queryEmbedding, int maxResults) {
         EmbeddingStore<TextSegment> embeddingStore = embeddingStoreFactory.createEmbeddingStore(clientId, embeddingModel.dimension());
 
-        Embedding queryEmbedding = embeddingModel.embed(queryRequest.getQuery()).content();
+        if (queryEmbedding == null) {
+            queryEmbedding = embeddingModel.embed(queryRequest.getQuery()).content();
+        }
 
         EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
                 .queryEmbedding(queryEmbedding)
-                .maxResults(queryRequest.getTopK() != null ? queryRequest.getTopK() : 10)
+                .maxResults(maxResults)
                 .minScore(queryRequest.getSimilarityThreshold())
+                .filter(EmbeddingMetadata.toFilter(queryRequest.getFilter()))
                 .build();
 
+        if (embeddingStore instanceof ChunkContentSearch chunkContentSearch) {
+            // the chunks are read with the search
+            return chunkContentSearch.searchChunkContents(searchRequest).stream()
+                    .map(match -> new RankedMatch(match.embeddingId(), match.score(), null, match.chunk()))
+                    .toList();
+        }
+
         EmbeddingSearchResult<TextSegment> result = embeddingStore.search(searchRequest);
 
-        List<String> matchIds = result.matches().stream().map(EmbeddingMatch::embeddingId)
+        return result.matches().stream()
+                .map(match -> new RankedMatch(match.embeddingId(), match.score(), match.embedding()))
                 .toList();
+    }
 
-        List<EventRecordChunk> chunks = eventRecordChunkRepository.findAllByEventRecord_ClientIdAndEmbeddingIdIn(clientId, matchIds);
+    private List<RankedMatch> keywordSearch(String clientId, QueryRequest queryRequest, int maxResults) {
+        return keywordIndexService.search(clientId, queryRequest.getQuery(), maxResults).stream()
+                .map(match -> new RankedMatch(match.embeddingId(), match.score(), null))
+                .toList();
+    }
 
-        return chunks.stream().map(chunk -> {
-            Map<String, Object> metadata = new HashMap<>();
-            String parentDocumentId = chunk.getEventRecord() != null ? chunk.getEventRecord().getId().toString() : null;
-            metadata.put(DocumentMetadataKeys.PARENT_DOCUMENT_ID, parentDocumentId);
+    private List<RankedMatch> hybridSearch(String clientId, QueryRequest queryRequest, Embedding queryEmbedding, int maxResults) {
+        JemberProperties.KeywordSearchProperties keywordSearch = jemberProperties.getKeywordSearch();
+        int candidates = maxResults * Math.max(1, keywordSearch.getHybridCandidateFactor());
 
-            if (chunk.getEventRecord() != null && StringUtil.isNotEmpty(chunk.getEventRecord().getCsvHeader())) {
-                metadata.put(DocumentMetadataKeys.CSV_HEADER, chunk.getEventRecord().getCsvHeader());
-            }
+        List<RankedMatch> vectorMatches = vectorSearch(clientId, queryRequest, queryEmbedding, candidates);
+        List<RankedMatch> keywordMatches = keywordSearch(clientId, queryRequest, candidates);
+
+        Map<String, RankedMatch> vectorMatchesById = new HashMap<>();
+        vectorMatches.forEach(match -> vectorMatchesById.putIfAbsent(match.embeddingId(), match));
 
-            return QueryResponseDocument.builder()
-                    .id(chunk.getId().toString())
-                    .embeddingId(chunk.getEmbeddingId())
-                    .content(new String(chunk.getData()))
-                    .metadata(metadata)
-                    .build();
-        }).toList();
+        Map<String, Double> fused = ReciprocalRankFusion.fuse(List.of(
+                vectorMatches.stream().map(RankedMatch::embeddingId).toList(),
+                keywordMatches.stream().map(RankedMatch::embeddingId).toList()), keywordSearch.getRrfK(), maxResults);
+
+        return fused.entrySet().stream()
+                .map(entry -> {
+                    // keep the embedding and chunk returned by the vector search
+                    RankedMatch vectorMatch = vectorMatchesById.get(entry.getKey());
+                    return vectorMatch == null ? new RankedMatch(entry.getKey(), entry.getValue(), null)
+                            : new RankedMatch(entry.getKey(), entry.getValue(), vectorMatch.embedding(), vectorMatch.chunk());
+                })
+                .toList();
     }
 }
@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs entries into a single block, each entry prefixed by its length as a four byte big endian int. The
+ * offset of each entry is returned so an entry can be sliced out of the block without reading the others.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public final class ChunkBlockCodec {
+
+    public static final int LENGTH_PREFIX_BYTES = Integer.BYTES;
+
+    private ChunkBlockCodec() {
+    }
+
+    public record Packed(byte[] block, int[] offsets) {
+    }
+
+    public static int packedSize(byte[] entry) {
+        return LENGTH_PREFIX_BYTES + entry.length;
+    }
+
+    public static Packed pack(List<byte[]> entries) {
+        int size = entries.stream().mapToInt(ChunkBlockCodec::packedSize).sum();
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        int[] offsets = new int[entries.size()];
+
+        for (int i = 0; i < entries.size(); i++) {
+            offsets[i] = buffer.position();
+            buffer.putInt(entries.get(i).length);
+            buffer.put(entries.get(i));
+        }
+
+        return new Packed(buffer.array(), offsets);
+    }
+
+    public static byte[] slice(byte[] block, int offset) {
+        if (offset < 0 || offset + LENGTH_PREFIX_BYTES > block.length) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside of block of " + block.length + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(block, offset, block.length - offset);
+        int length = buffer.getInt();
+
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid entry length " + length + " at offset " + offset);
+        }
+
+        byte[] entry = new byte[length];
+        buffer.get(entry);
+
+        return entry;
+    }
+
+    public static List<byte[]> unpack(byte[] block) {
+        List<byte[]> entries = new ArrayList<>();
+
+        int offset = 0;
+        while (offset < block.length) {
+            byte[] entry = slice(block, offset);
+            entries.add(entry);
+            offset += packedSize(entry);
+        }
+
+        return entries;
+    }
+}
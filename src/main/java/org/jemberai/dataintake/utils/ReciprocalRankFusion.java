@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion, each result scores 1 / (k + rank) in every ranking it appears in. Rankings are merged
+ * without needing comparable scores, e.g. BM25 and cosine similarity.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public final class ReciprocalRankFusion {
+
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param rankings ids ordered best first
+     * @return fused scores by id, best first
+     */
+    public static Map<String, Double> fuse(List<List<String>> rankings, int k, int limit) {
+        // insertion ordered, ties keep the order of first appearance
+        Map<String, Double> scores = new LinkedHashMap<>();
+
+        for (List<String> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank), 1.0d / (k + rank + 1), Double::sum);
+            }
+        }
+
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(scores.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        Map<String, Double> fused = new LinkedHashMap<>();
+        entries.stream().limit(limit).forEach(entry -> fused.put(entry.getKey(), entry.getValue()));
+
+        return fused;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A request payload copied to a temporary file, so it is read from the network once without holding it in memory.
+ * The SHA-256 and size are computed while copying. The file is deleted on close, it is not kept for parsing.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+@Slf4j
+@Getter
+public class SpooledPayload implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final long size;
+    private final String sha256;
+
+    private SpooledPayload(Path path, long size, String sha256) {
+        this.path = path;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * @param directory directory for the temporary file, or null for the default temporary directory
+     * @param maxBytes  maximum payload size
+     * @throws PayloadTooLargeException if the payload is larger than maxBytes
+     */
+    public static SpooledPayload spool(InputStream inputStream, Path directory, long maxBytes) throws IOException {
+        Path path = directory != null ? Files.createTempFile(directory, "jember-ingest", ".tmp")
+                : Files.createTempFile("jember-ingest", ".tmp");
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+
+            try (DigestInputStream in = new DigestInputStream(inputStream, digest);
+                 OutputStream out = Files.newOutputStream(path)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+
+                    if (size > maxBytes) {
+                        throw new PayloadTooLargeException(maxBytes);
+                    }
+
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            return new SpooledPayload(path, size, Hex.encodeHexString(digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            Files.deleteIfExists(path);
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public InputStream newInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    public byte[] readAllBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Unable to delete spooled payload: {}", path, e);
+        }
+    }
+}
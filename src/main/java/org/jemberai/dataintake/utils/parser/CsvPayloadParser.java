@@ -0,0 +1,185 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.domain.DocumentMetadataKeys;
+import org.jemberai.dataintake.domain.EventRecord;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.ToIntFunction;
+
+/**
+ * Packs whole CSV rows into segments of up to a token budget, rows are read as segments are asked for. Each segment
+ * starts with the header row, so the column names are embedded and stored with every chunk. The header stored with
+ * the event is used, the first row is taken as the header when there is none.
+ * <p>
+ * The header counts against the budget, but takes at most half of it. A single row over the rest of the budget is
+ * split on its own with the recursive splitter, each piece again starting with the header.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class CsvPayloadParser implements PayloadParser {
+
+    private final Charset charset;
+    private final int maxTokensPerSegment;
+    private final ToIntFunction<String> tokenEstimator;
+
+    CsvPayloadParser(Charset charset, int maxTokensPerSegment, ToIntFunction<String> tokenEstimator) {
+        if (maxTokensPerSegment < 1) {
+            throw new IllegalArgumentException("Max tokens per segment must be greater than zero");
+        }
+
+        this.charset = charset;
+        this.maxTokensPerSegment = maxTokensPerSegment;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    @Override
+    public TextSegmentReader parse(EventRecord eventRecord, int maxSegmentSize) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(eventRecord.getData()), charset));
+
+        try {
+            String header = eventRecord.getCsvHeader();
+            String first = CsvRows.nextRow(reader);
+
+            if (first != null && (header == null || first.strip().equals(header.strip()))) {
+                header = first;
+                first = null;
+            }
+
+            Metadata metadata = PayloadParsers.metadata(eventRecord.getDataContentType());
+            if (header != null) {
+                metadata.put(DocumentMetadataKeys.CSV_HEADER, header);
+            }
+
+            // room left for the rows once the header is added
+            int headerLength = header == null ? 0 : header.length() + 1;
+            int headerTokens = header == null ? 0 : tokenEstimator.applyAsInt(header);
+            int rowTokens = Math.max(1, Math.max(maxTokensPerSegment / 2, maxTokensPerSegment - headerTokens));
+            int rowSize = Math.max(1, Math.max(maxSegmentSize / 2, maxSegmentSize - headerLength));
+
+            return new RowReader(reader, first, header, metadata, rowTokens, DocumentSplitters.recursive(rowSize, 0));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class RowReader implements TextSegmentReader {
+        private final BufferedReader reader;
+        private final String header;
+        private final Metadata metadata;
+        private final int maxRowTokens;
+        private final DocumentSplitter splitter;
+
+        // pieces of a row over the budget, not yet returned
+        private final Deque<String> pieces = new ArrayDeque<>();
+
+        // read ahead, did not fit into the previous segment
+        private String pending;
+        private int index = 0;
+
+        private RowReader(BufferedReader reader, String pending, String header, Metadata metadata,
+                          int maxRowTokens, DocumentSplitter splitter) {
+            this.reader = reader;
+            this.pending = pending;
+            this.header = header;
+            this.metadata = metadata;
+            this.maxRowTokens = maxRowTokens;
+            this.splitter = splitter;
+        }
+
+        @Override
+        public TextSegment next() {
+            if (!pieces.isEmpty()) {
+                return segment(pieces.poll());
+            }
+
+            StringBuilder text = new StringBuilder();
+            int tokens = 0;
+
+            for (String row = nextRow(); row != null; row = nextRow()) {
+                int rowTokens = tokenEstimator.applyAsInt(row);
+
+                if (!text.isEmpty() && (rowTokens > maxRowTokens || tokens + rowTokens > maxRowTokens)) {
+                    pending = row;
+                    break;
+                }
+
+                if (rowTokens > maxRowTokens) {
+                    splitter.split(Document.from(row)).forEach(piece -> pieces.add(piece.text()));
+                    return segment(pieces.poll());
+                }
+
+                if (!text.isEmpty()) {
+                    text.append('\n');
+                }
+                text.append(row);
+                tokens += rowTokens;
+            }
+
+            return text.isEmpty() ? null : segment(text.toString());
+        }
+
+        @Override
+        public Metadata metadata() {
+            return metadata;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String nextRow() {
+            if (pending != null) {
+                String row = pending;
+                pending = null;
+                return row;
+            }
+
+            try {
+                return CsvRows.nextRow(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private TextSegment segment(String rows) {
+            String text = header == null ? rows : header + '\n' + rows;
+
+            return TextSegment.from(text, new Metadata().put("index", String.valueOf(index++)));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads CSV a row at a time, a quoted field may span lines.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public final class CsvRows {
+
+    private CsvRows() {
+    }
+
+    /**
+     * Reads only as far as the first row with content, the header of the CSV.
+     *
+     * @return the header, null if there is no row with content
+     */
+    public static String header(InputStream in, Charset charset) throws IOException {
+        return nextRow(new BufferedReader(new InputStreamReader(in, charset)));
+    }
+
+    /**
+     * @return the next row with content, null at the end
+     */
+    static String nextRow(BufferedReader reader) throws IOException {
+        String row;
+        while ((row = readRow(reader)) != null) {
+            if (!row.isBlank()) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next row without its line break, null at the end
+     */
+    static String readRow(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+
+        if (line == null) {
+            return null;
+        }
+
+        // an odd number of quotes leaves a quoted field open
+        int quotes = quotes(line);
+
+        if (quotes % 2 == 0) {
+            return line;
+        }
+
+        StringBuilder row = new StringBuilder(line);
+        String next;
+
+        while (quotes % 2 != 0 && (next = reader.readLine()) != null) {
+            row.append('\n').append(next);
+            quotes += quotes(next);
+        }
+
+        return row.toString();
+    }
+
+    private static int quotes(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jemberai.dataintake.domain.EventRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reads JSON with the streaming parser and writes one line per value, prefixed with its path, e.g.
+ * {@code order.items[0].name: Widget}. Keeps the names next to the values in every segment and leaves out the
+ * punctuation. Null values are skipped.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class JsonPayloadParser implements PayloadParser {
+
+    // thread safe, shares symbol tables between parsers
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public TextSegmentReader parse(EventRecord eventRecord, int maxSegmentSize) {
+        SegmentCollector collector = new SegmentCollector(maxSegmentSize);
+
+        // a path element per open object or array, the index of arrays counted in the element
+        Deque<PathElement> path = new ArrayDeque<>();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(eventRecord.getData())) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        String name = name(parser, path);
+                        path.push(new PathElement(name, token == JsonToken.START_ARRAY));
+                    }
+                    case END_OBJECT, END_ARRAY -> path.pop();
+                    case FIELD_NAME -> {
+                    }
+                    // advances the index of an enclosing array
+                    case VALUE_NULL -> name(parser, path);
+                    default -> {
+                        String name = name(parser, path);
+                        collector.write(name.isEmpty() ? parser.getText() + "\n" : name + ": " + parser.getText() + "\n");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return collector.finish(PayloadParsers.metadata(eventRecord.getDataContentType()));
+    }
+
+    /**
+     * Path of the current value, advances the index of an enclosing array.
+     */
+    private static String name(JsonParser parser, Deque<PathElement> path) throws IOException {
+        PathElement parent = path.peek();
+
+        if (parent == null) {
+            return "";
+        }
+
+        if (parent.array) {
+            return parent.name + "[" + parent.index++ + "]";
+        }
+
+        String field = parser.currentName();
+        return parent.name.isEmpty() ? field : parent.name + "." + field;
+    }
+
+    private static final class PathElement {
+        private final String name;
+        private final boolean array;
+        private int index = 0;
+
+        private PathElement(String name, boolean array) {
+            this.name = name;
+            this.array = array;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.document.Metadata;
+import org.jemberai.dataintake.embedding.EmbeddingBatcher;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fast path parsers by content type of the event data. Payloads of other content types are parsed by Tika.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public final class PayloadParsers {
+
+    static final String CONTENT_TYPE = "Content-Type";
+
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
+    /**
+     * Default token budget of a CSV segment.
+     */
+    public static final int CSV_MAX_TOKENS_PER_SEGMENT = 256;
+
+    private PayloadParsers() {
+    }
+
+    public static Optional<PayloadParser> forContentType(String contentType) {
+        return forContentType(contentType, CSV_MAX_TOKENS_PER_SEGMENT, EmbeddingBatcher::estimateTokenCount);
+    }
+
+    /**
+     * @param csvMaxTokensPerSegment token budget of a CSV segment, whole rows are packed into it
+     * @param tokenEstimator         estimates the tokens of a CSV row
+     */
+    public static Optional<PayloadParser> forContentType(String contentType, int csvMaxTokensPerSegment,
+                                                         ToIntFunction<String> tokenEstimator) {
+        Optional<MediaType> parsed = mediaType(contentType);
+
+        if (parsed.isEmpty()) {
+            return Optional.empty();
+        }
+
+        MediaType mediaType = parsed.get();
+
+        if (MediaType.TEXT_PLAIN.equalsTypeAndSubtype(mediaType)) {
+            return Optional.of(new PlainTextPayloadParser(charset(mediaType)));
+        }
+
+        if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(mediaType) || "json".equals(mediaType.getSubtypeSuffix())) {
+            return Optional.of(new JsonPayloadParser());
+        }
+
+        if (TEXT_CSV.equalsTypeAndSubtype(mediaType)) {
+            return Optional.of(new CsvPayloadParser(charset(mediaType), csvMaxTokensPerSegment, tokenEstimator));
+        }
+
+        return Optional.empty();
+    }
+
+    public static boolean isCsv(String contentType) {
+        return mediaType(contentType).map(TEXT_CSV::equalsTypeAndSubtype).orElse(false);
+    }
+
+    /**
+     * @return the charset parameter of the content type, UTF-8 if there is none
+     */
+    public static Charset charset(String contentType) {
+        return mediaType(contentType).map(PayloadParsers::charset).orElse(StandardCharsets.UTF_8);
+    }
+
+    static Metadata metadata(String contentType) {
+        return new Metadata().put(CONTENT_TYPE, contentType);
+    }
+
+    private static Optional<MediaType> mediaType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Charset charset(MediaType mediaType) {
+        return mediaType.getCharset() == null ? StandardCharsets.UTF_8 : mediaType.getCharset();
+    }
+}
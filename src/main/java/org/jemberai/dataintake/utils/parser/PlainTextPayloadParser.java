@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import org.jemberai.dataintake.domain.EventRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes text in the charset of the content type, UTF-8 by default. Malformed input fails, so it is left to Tika's
+ * charset detection.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class PlainTextPayloadParser implements PayloadParser {
+
+    private final Charset charset;
+
+    PlainTextPayloadParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    public TextSegmentReader parse(EventRecord eventRecord, int maxSegmentSize) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        SegmentCollector collector = new SegmentCollector(maxSegmentSize);
+
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(eventRecord.getData()), decoder)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                collector.write(buffer, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return collector.finish(PayloadParsers.metadata(eventRecord.getDataContentType()));
+    }
+}
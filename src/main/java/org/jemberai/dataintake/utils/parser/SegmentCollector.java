@@ -0,0 +1,63 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.utils.tika.StreamingSplitContentHandler;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text written to it the same way as text extracted by Tika.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+class SegmentCollector {
+
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final StreamingSplitContentHandler handler;
+
+    SegmentCollector(int maxSegmentSize) {
+        this.handler = new StreamingSplitContentHandler(maxSegmentSize, segments::add);
+    }
+
+    void write(char[] chars, int length) {
+        try {
+            handler.characters(chars, 0, length);
+        } catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void write(String text) {
+        write(text.toCharArray(), text.length());
+    }
+
+    TextSegmentReader finish(Metadata metadata) {
+        try {
+            handler.endDocument();
+        } catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return TextSegmentReader.of(segments, metadata);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Text segments of a parsed payload, in document order.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public interface TextSegmentReader extends AutoCloseable {
+
+    /**
+     * @return the next segment, null after the last one
+     */
+    TextSegment next();
+
+    /**
+     * @return metadata of the document, once {@link #next()} returned null
+     */
+    Metadata metadata();
+
+    @Override
+    void close();
+
+    static TextSegmentReader of(List<TextSegment> segments, Metadata metadata) {
+        Iterator<TextSegment> iterator = segments.iterator();
+
+        return new TextSegmentReader() {
+            @Override
+            public TextSegment next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public Metadata metadata() {
+                return metadata;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
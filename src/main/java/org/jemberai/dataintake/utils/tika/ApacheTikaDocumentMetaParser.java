@@ -22,14 +22,29 @@ import dev.langchain4j.data.document.BlankDocumentException;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentParser;
 import org.apache.tika.exception.ZeroByteFileException;
+import org.apache.tika.fork.ForkParser;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.xml.sax.ContentHandler;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 import static dev.langchain4j.internal.Utils.getOrDefault;
@@ -38,9 +53,15 @@ import static dev.langchain4j.internal.Utils.isNullOrBlank;
 /**
  * An implementation of {@link DocumentParser} that uses Apache Tika to parse documents.
  * Largely a copy from LangChain's ApacheTikaDocumentParser, but preserves the metadata in the Document object.
+ * <p>
+ * Created with a shared parser, the instance is thread safe: Tika parsers keep no state between documents, so one
+ * {@link AutoDetectParser} with its configuration, detectors and parser registry is loaded once and used by all
+ * callers. Parse contexts are taken from a fixed pool, which also limits the number of concurrent parses. A parse
+ * abandoned after the timeout keeps its context until it actually ends, so it still counts against the limit.
+ * <p>
  * Created by jt, Spring Framework Guru.
  */
-public class ApacheTikaDocumentMetaParser implements DocumentParser {
+public class ApacheTikaDocumentMetaParser implements DocumentParser, AutoCloseable {
 
     private static final int NO_WRITE_LIMIT = -1;
     public static final Supplier<Parser> DEFAULT_PARSER_SUPPLIER = AutoDetectParser::new;
@@ -52,6 +73,10 @@ public class ApacheTikaDocumentMetaParser implements DocumentParser {
     private final Supplier<ContentHandler> contentHandlerSupplier;
     private final Supplier<Metadata> metadataSupplier;
     private final Supplier<ParseContext> parseContextSupplier;
+    private final Parser sharedParser;
+    private final BlockingQueue<ParseContext> parseContextPool;
+    private final Duration timeout;
+    private final int maxTextLength;
 
     /**
      * Creates an instance of an {@code ApacheTikaDocumentParser} with the default Tika components.
@@ -79,30 +104,201 @@ public class ApacheTikaDocumentMetaParser implements DocumentParser {
         this.contentHandlerSupplier = getOrDefault(contentHandlerSupplier, () -> DEFAULT_CONTENT_HANDLER_SUPPLIER);
         this.metadataSupplier = getOrDefault(metadataSupplier, () -> DEFAULT_METADATA_SUPPLIER);
         this.parseContextSupplier = getOrDefault(parseContextSupplier, () -> DEFAULT_PARSE_CONTEXT_SUPPLIER);
+        this.sharedParser = null;
+        this.parseContextPool = null;
+        this.timeout = null;
+        this.maxTextLength = NO_WRITE_LIMIT;
+    }
+
+    /**
+     * Creates a thread safe instance sharing the given parser, with a pool of reusable parse contexts. Callers wait
+     * for a parse context when all are in use.
+     *
+     * @param parser               Thread safe parser shared by all parses, e.g. an {@link AutoDetectParser}
+     * @param parseContextPoolSize Number of parse contexts, the maximum number of concurrent parses
+     * @param timeout              Maximum time to parse a document, null for no limit
+     */
+    public ApacheTikaDocumentMetaParser(Parser parser, int parseContextPoolSize, Duration timeout) {
+        this(parser, parseContextPoolSize, timeout, NO_WRITE_LIMIT);
+    }
+
+    /**
+     * Creates a thread safe instance sharing the given parser, with a pool of reusable parse contexts and a limit
+     * on the extracted text.
+     *
+     * @param maxTextLength Maximum number of characters extracted, the parse fails when it is exceeded. Zero or less
+     *                      for no limit
+     */
+    public ApacheTikaDocumentMetaParser(Parser parser, int parseContextPoolSize, Duration timeout, int maxTextLength) {
+        if (parseContextPoolSize < 1) {
+            throw new IllegalArgumentException("Parse context pool size must be greater than zero");
+        }
+
+        this.parserSupplier = () -> parser;
+        this.contentHandlerSupplier = maxTextLength > 0 ? () -> new BodyContentHandler(maxTextLength)
+                : DEFAULT_CONTENT_HANDLER_SUPPLIER;
+        this.metadataSupplier = DEFAULT_METADATA_SUPPLIER;
+        this.parseContextSupplier = DEFAULT_PARSE_CONTEXT_SUPPLIER;
+        this.sharedParser = parser;
+        this.parseContextPool = new ArrayBlockingQueue<>(parseContextPoolSize);
+        this.timeout = timeout;
+        this.maxTextLength = maxTextLength;
+
+        for (int i = 0; i < parseContextPoolSize; i++) {
+            parseContextPool.add(parseContextSupplier.get());
+        }
     }
 
     @Override
     public Document parse(InputStream inputStream) {
+        ContentHandler contentHandler = contentHandlerSupplier.get();
+        Metadata metadata = parse(inputStream, contentHandler, () -> 0);
+
+        String text = contentHandler.toString();
+
+        if (isNullOrBlank(text)) {
+            throw new BlankDocumentException();
+        }
+
+        return Document.from(text, convertMetadata(metadata));
+    }
+
+    /**
+     * Parses into a handler which splits the text as it is extracted, instead of collecting it. Time the handler
+     * waits to pass on segments does not count against the timeout.
+     *
+     * @return the metadata of the document
+     */
+    public dev.langchain4j.data.document.Metadata parse(InputStream inputStream, StreamingSplitContentHandler handler) {
+        ContentHandler contentHandler = maxTextLength > 0
+                ? new BodyContentHandler(new WriteOutContentHandler(handler, maxTextLength))
+                : new BodyContentHandler(handler);
+
+        return convertMetadata(parse(inputStream, contentHandler, handler::waitedNanos));
+    }
+
+    /**
+     * @return true if documents are parsed in forked worker processes
+     */
+    public boolean isForked() {
+        return sharedParser instanceof ForkParser;
+    }
+
+    private Metadata parse(InputStream inputStream, ContentHandler contentHandler, LongSupplier waitedNanos) {
+        ParseContextLease lease = new ParseContextLease(borrowParseContext());
+
         try {
             Parser parser = parserSupplier.get();
-            ContentHandler contentHandler = contentHandlerSupplier.get();
             Metadata metadata = metadataSupplier.get();
-            ParseContext parseContext = parseContextSupplier.get();
 
-            parser.parse(inputStream, contentHandler, metadata, parseContext);
-            String text = contentHandler.toString();
-
-            if (isNullOrBlank(text)) {
-                throw new BlankDocumentException();
+            if (timeout == null) {
+                parser.parse(inputStream, contentHandler, metadata, lease.parseContext);
+            } else {
+                parseWithTimeout(parser, inputStream, contentHandler, metadata, lease, waitedNanos);
             }
 
-            return Document.from(text, convertMetadata(metadata));
-        } catch (BlankDocumentException e) {
-            throw e;
+            return metadata;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
         } catch (ZeroByteFileException e) {
             throw new BlankDocumentException();
+        } catch (DocumentParseTimeoutException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            // an abandoned parse still holds the lease, the context goes back to the pool when it ends
+            lease.release();
+        }
+    }
+
+    /**
+     * Parses on a virtual thread and abandons it after the timeout. A thread cannot be stopped, but reads from the
+     * input stream fail once the parse is abandoned, which ends most parsers. The parse thread holds the lease
+     * until it ends.
+     */
+    private void parseWithTimeout(Parser parser, InputStream inputStream, ContentHandler contentHandler,
+                                  Metadata metadata, ParseContextLease lease, LongSupplier waitedNanos) throws Exception {
+        CancellableInputStream stream = new CancellableInputStream(inputStream);
+        CompletableFuture<Void> task = new CompletableFuture<>();
+
+        lease.acquire();
+
+        Thread thread = Thread.ofVirtual().name("tika-parse").unstarted(() -> {
+            try {
+                parser.parse(stream, contentHandler, metadata, lease.parseContext);
+                task.complete(null);
+            } catch (Throwable e) {
+                task.completeExceptionally(e);
+            } finally {
+                lease.release();
+            }
+        });
+
+        try {
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            lease.release();
+            throw e;
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        try {
+            while (true) {
+                try {
+                    task.get(deadline + waitedNanos.getAsLong() - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    // extended by the time the handler waited meanwhile
+                    if (deadline + waitedNanos.getAsLong() - System.nanoTime() <= 0) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (TimeoutException e) {
+            stream.cancel();
+            thread.interrupt();
+            throw new DocumentParseTimeoutException(timeout);
+        } catch (InterruptedException e) {
+            stream.cancel();
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the shared parser if it holds resources, e.g. the worker processes of a {@link ForkParser}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (sharedParser instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private ParseContext borrowParseContext() {
+        if (parseContextPool == null) {
+            return parseContextSupplier.get();
+        }
+
+        try {
+            return parseContextPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a parse context", e);
+        }
+    }
+
+    private void returnParseContext(ParseContext parseContext) {
+        if (parseContextPool != null) {
+            parseContextPool.add(parseContext);
         }
     }
 
@@ -115,4 +311,67 @@ public class ApacheTikaDocumentMetaParser implements DocumentParser {
 
         return l4JMetadata;
     }
+
+    /**
+     * A borrowed parse context, returned to the pool once the caller and the parse thread have both released it.
+     */
+    private final class ParseContextLease {
+
+        private final ParseContext parseContext;
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        ParseContextLease(ParseContext parseContext) {
+            this.parseContext = parseContext;
+        }
+
+        void acquire() {
+            holders.incrementAndGet();
+        }
+
+        void release() {
+            if (holders.decrementAndGet() == 0) {
+                returnParseContext(parseContext);
+            }
+        }
+    }
+
+    /**
+     * Fails reads once cancelled.
+     */
+    private static class CancellableInputStream extends FilterInputStream {
+
+        private volatile boolean cancelled = false;
+
+        CancellableInputStream(InputStream in) {
+            super(in);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkCancelled();
+            return super.skip(n);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (cancelled) {
+                throw new InterruptedIOException("Parse abandoned after timeout");
+            }
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils.tika;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static dev.langchain4j.internal.Utils.isNullOrBlank;
+
+/**
+ * Content handler which splits the text into segments while the document is parsed, instead of collecting the
+ * whole text. Text is buffered up to a window of several segments, and the window is cut at its last paragraph or
+ * line break and split with the recursive splitter, so segments match splitting the whole text except for short
+ * paragraphs at a cut which are not merged.
+ * <p>
+ * Receives the text of the body, wrap it in a {@link org.apache.tika.sax.BodyContentHandler}.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class StreamingSplitContentHandler extends DefaultHandler {
+
+    /**
+     * Receives the segments in document order, may block to hold back the parser.
+     */
+    @FunctionalInterface
+    public interface SegmentSink {
+        void accept(TextSegment segment) throws InterruptedException;
+    }
+
+    private static final int WINDOW_SEGMENTS = 16;
+
+    private final int windowSize;
+    private final DocumentSplitter splitter;
+    private final SegmentSink sink;
+    private final StringBuilder buffer = new StringBuilder();
+
+    private int index = 0;
+    private volatile long waitedNanos = 0;
+    private volatile long waitingSince = 0;
+
+    public StreamingSplitContentHandler(int maxSegmentSize, SegmentSink sink) {
+        this.windowSize = maxSegmentSize * WINDOW_SEGMENTS;
+        this.splitter = DocumentSplitters.recursive(maxSegmentSize, 0);
+        this.sink = sink;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        buffer.append(ch, start, length);
+
+        if (buffer.length() >= windowSize) {
+            int cut = lastBreak();
+            String text = buffer.substring(0, cut);
+            buffer.delete(0, cut);
+            emit(text);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        String text = buffer.toString();
+        buffer.setLength(0);
+        emit(text);
+    }
+
+    /**
+     * @return time spent waiting for the sink, including a wait in progress
+     */
+    public long waitedNanos() {
+        long since = waitingSince;
+        return waitedNanos + (since == 0 ? 0 : System.nanoTime() - since);
+    }
+
+    private int lastBreak() {
+        int cut = buffer.lastIndexOf("\n\n");
+
+        if (cut <= 0) {
+            cut = buffer.lastIndexOf("\n");
+        }
+
+        if (cut <= 0) {
+            cut = buffer.lastIndexOf(" ");
+        }
+
+        return cut <= 0 ? buffer.length() : cut;
+    }
+
+    private void emit(String text) throws SAXException {
+        if (isNullOrBlank(text)) {
+            return;
+        }
+
+        for (TextSegment segment : splitter.split(Document.from(text))) {
+            send(TextSegment.from(segment.text(), new Metadata().put("index", String.valueOf(index++))));
+        }
+    }
+
+    private void send(TextSegment segment) throws SAXException {
+        long start = System.nanoTime();
+        waitingSince = start;
+
+        try {
+            sink.accept(segment);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted passing on a text segment", e);
+        } finally {
+            waitingSince = 0;
+            waitedNanos += System.nanoTime() - start;
+        }
+    }
+}
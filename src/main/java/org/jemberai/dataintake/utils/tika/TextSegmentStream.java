@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils.tika;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.utils.parser.TextSegmentReader;
+
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Text segments of a document, read while the document is parsed on a virtual thread. The parser is held back when
+ * the queue of segments is full, so only a window of the text is in memory at a time.
+ * <p>
+ * Not thread safe, read by a single consumer.
+ * <p>
+ * Created by jt, Spring Framework Guru.
+ */
+public class TextSegmentStream implements TextSegmentReader {
+
+    // compared by identity
+    private static final TextSegment END = TextSegment.from("-");
+
+    private final BlockingQueue<TextSegment> queue;
+    private final Thread producer;
+    private volatile Metadata metadata;
+    private volatile Throwable failure;
+    private boolean ended = false;
+
+    private TextSegmentStream(ApacheTikaDocumentMetaParser parser, InputStream inputStream, int maxSegmentSize,
+                              int capacity) {
+        // a forked worker waiting for a full queue would run into its parse timeout, it is not held back
+        this.queue = new LinkedBlockingQueue<>(parser.isForked() ? Integer.MAX_VALUE : capacity);
+
+        StreamingSplitContentHandler handler = new StreamingSplitContentHandler(maxSegmentSize, queue::put);
+
+        this.producer = Thread.ofVirtual().name("tika-stream").start(() -> {
+            try {
+                metadata = parser.parse(inputStream, handler);
+            } catch (Throwable e) {
+                failure = e;
+            }
+
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // closed, nobody is reading
+            }
+        });
+    }
+
+    /**
+     * Starts parsing the document.
+     *
+     * @param capacity number of segments parsed ahead of the consumer
+     */
+    public static TextSegmentStream start(ApacheTikaDocumentMetaParser parser, InputStream inputStream,
+                                          int maxSegmentSize, int capacity) {
+        return new TextSegmentStream(parser, inputStream, maxSegmentSize, capacity);
+    }
+
+    /**
+     * @throws RuntimeException if parsing failed, e.g. a {@link DocumentParseTimeoutException}
+     */
+    @Override
+    public TextSegment next() {
+        if (ended) {
+            return null;
+        }
+
+        TextSegment segment;
+        try {
+            segment = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a text segment", e);
+        }
+
+        if (segment != END) {
+            return segment;
+        }
+
+        ended = true;
+
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Metadata metadata() {
+        return metadata;
+    }
+
+    /**
+     * Stops the parser if the segments were not all read, e.g. after an embedding failed.
+     */
+    @Override
+    public void close() {
+        if (!ended) {
+            producer.interrupt();
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+create table embedding_work_item
+(
+    id              char(36)     not null,
+    version integer,
+    event_record_id char(36)     not null,
+    client_id       varchar(255),
+    model           varchar(255) not null,
+    embedding_model varchar(255) not null,
+    status          varchar(255) not null,
+    attempts        integer      not null,
+    next_attempt_at TIMESTAMP,
+    locked_by       varchar(255),
+    locked_at       TIMESTAMP,
+    last_error      varchar(2000),
+    date_created    TIMESTAMP,
+    date_updated    TIMESTAMP,
+    primary key (id)
+);
+
+create index embedding_work_item_status_idx on embedding_work_item (status, next_attempt_at);
+create index embedding_work_item_event_record_idx on embedding_work_item (event_record_id);
@@ -0,0 +1,29 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+-- chunks with the same content share an embedding id, so it is no longer unique
+alter table event_record_chunk
+    drop constraint embedding_id_uk;
+
+create index event_record_chunk_embedding_id_idx on event_record_chunk (embedding_id);
+create index event_record_chunk_sha_256_idx on event_record_chunk (sha_256);
+
+alter table event_record
+    ADD COLUMN duplicate_of_id char(36);
+
+create index event_record_dedup_idx on event_record (client_id, event_type, sha_256);
@@ -0,0 +1,38 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+-- embeddings stored next to the chunks, only applied with org.jemberai.vectorstore.type PGVECTOR
+create extension if not exists vector;
+
+create table if not exists event_record_embedding
+(
+    id           varchar(255) not null,
+    client_id    varchar(255) not null,
+    embedding    vector(${embeddingDimension}) not null,
+    metadata     jsonb,
+    date_created TIMESTAMP default current_timestamp,
+    primary key (id)
+);
+
+create index if not exists event_record_embedding_client_id_idx on event_record_embedding (client_id);
+
+-- the index options are placeholders, this script is applied again when they change. The index is dropped and built
+-- again so the new options take effect, which blocks writes to the table until the build is done
+drop index if exists event_record_embedding_vector_idx;
+
+create index event_record_embedding_vector_idx on event_record_embedding using ${embeddingIndex};
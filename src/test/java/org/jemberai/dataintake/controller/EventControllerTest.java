@@ -18,8 +18,10 @@
 
 package org.jemberai.dataintake.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.jemberai.dataintake.BaseTest;
 import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
 import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
@@ -163,6 +165,110 @@ class EventControllerTest extends BaseTest {
         Files.write(toFile, response.getContentAsByteArray());
     }
 
+    @Test
+    void testPostStream() throws Exception {
+        byte[] bytes = pdfFile.getContentAsByteArray();
+
+        var mvcResponse = mockMvc.perform(post("/v1/event/stream")
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_PDF_VALUE)
+                        .header("ce-specversion", "1.0")
+                        .header("ce-id", "12345")
+                        .header("ce-type", "io.spring.event")
+                        .header("ce-source", "https://spring.io/events")
+                        .header("ce-comexampleextension1", "value")
+                        .content(bytes))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("ce-jemberaieventid"));
+
+        val response = mvcResponse.andReturn().getResponse();
+
+        assertThat(response.getContentLength()).isZero();
+
+        val savedId = UUID.fromString(Objects.requireNonNull(response.getHeader("ce-jemberaieventid")));
+        val saved = eventRecordRepository.findById(savedId).orElseThrow();
+
+        assertThat(saved.getSha256()).isEqualTo(DigestUtils.sha256Hex(bytes));
+        assertThat(saved.getData()).isEqualTo(bytes);
+        assertThat(saved.getDataContentType()).isEqualTo(MediaType.APPLICATION_PDF_VALUE);
+    }
+
+    @Test
+    void testPostStreamMissingAttributes() throws Exception {
+        mockMvc.perform(post("/v1/event/stream")
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_PDF_VALUE)
+                        .header("ce-specversion", "1.0")
+                        .content(pdfFile.getContentAsByteArray()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testPostBatch() throws Exception {
+        var json = """
+                [
+                    {
+                        "specversion" : "1.0",
+                        "type" : "io.spring.event",
+                        "source" : "https://spring.io/events",
+                        "id" : "batch-1",
+                        "datacontenttype" : "application/json",
+                        "data" : { "appinfoA" : "abc" }
+                    },
+                    {
+                        "specversion" : "1.0",
+                        "type" : "io.spring.event",
+                        "source" : "https://spring.io/events",
+                        "id" : "batch-2",
+                        "datacontenttype" : "text/plain",
+                        "data_base64" : "aGVsbG8gd29ybGQ="
+                    }
+                ]
+                """;
+
+        var mvcResponse = mockMvc.perform(post("/v1/event/batch")
+                        .with(jwtRequestPostProcessor)
+                        .contentType("application/cloudevents-batch+json")
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(2))
+                .andExpect(jsonPath("$.results[0].id").value("batch-1"))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[1].id").value("batch-2"))
+                .andExpect(jsonPath("$.results[1].status").value("CREATED"));
+
+        val savedId = UUID.fromString(JsonPath.read(mvcResponse.andReturn().getResponse().getContentAsString(),
+                "$.results[1].jemberaiEventId"));
+
+        assertThat(eventRecordRepository.findById(savedId).orElseThrow().getData())
+                .isEqualTo("hello world".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testPostBatchNdjson() throws Exception {
+        var ndjson = """
+                {"specversion":"1.0","type":"io.spring.event","source":"https://spring.io/events","id":"nd-1","data_base64":"YQ=="}
+                {"specversion":"1.0","type":"io.spring.event","source":"https://spring.io/events","id":"nd-2","data_base64":"Yg=="}
+                """;
+
+        mockMvc.perform(post("/v1/event/batch")
+                        .with(jwtRequestPostProcessor)
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(2))
+                .andExpect(jsonPath("$.results[1].id").value("nd-2"));
+    }
+
+    @Test
+    void testPostBatchInvalid() throws Exception {
+        mockMvc.perform(post("/v1/event/batch")
+                        .with(jwtRequestPostProcessor)
+                        .contentType("application/cloudevents-batch+json")
+                        .content("[{\"type\" : \"io.spring.event\"}]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testEventPost() throws Exception {
         var json = """
@@ -0,0 +1,104 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.domain;
+
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.cryptography.provider.EncryptionProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EventRecordChunkListenerTest {
+
+    @Mock
+    EncryptionProvider encryptionProvider;
+
+    EventRecordChunkListener eventRecordChunkListener;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(encryptionProvider.encrypt(anyString(), any(byte[].class))).thenReturn(
+                new EncryptedValueDTO("test", UUID.randomUUID(), new byte[]{1}, new byte[]{2}, new byte[]{3}));
+        when(encryptionProvider.decrypt(anyString(), any(EncryptedValueDTO.class))).thenReturn("chunk".getBytes());
+
+        eventRecordChunkListener = new EventRecordChunkListener();
+        eventRecordChunkListener.setEncryptionProvider(encryptionProvider);
+    }
+
+    @Test
+    void testPostLoadDoesNotUseEventRecord() {
+        EventRecord eventRecord = mock(EventRecord.class);
+
+        EventRecordChunk chunk = EventRecordChunk.builder()
+                .clientId("client-1")
+                .eventRecord(eventRecord)
+                .provider("test")
+                .keyId(UUID.randomUUID())
+                .hmac(new byte[]{1})
+                .encryptedValue(new byte[]{2})
+                .initializationVector(new byte[]{3})
+                .data(EventRecordChunkListener.ENCRYPTED_MARKER.clone())
+                .build();
+
+        eventRecordChunkListener.postLoad(chunk);
+
+        assertThat(chunk.getData()).isEqualTo("chunk".getBytes());
+        verify(encryptionProvider).decrypt(eq("client-1"), any(EncryptedValueDTO.class));
+        verifyNoInteractions(eventRecord);
+    }
+
+    @Test
+    void testPrePersistTakesClientIdOfEventRecord() {
+        EventRecord eventRecord = EventRecord.builder().clientId("client-1").build();
+
+        EventRecordChunk chunk = EventRecordChunk.builder()
+                .eventRecord(eventRecord)
+                .data("chunk".getBytes())
+                .build();
+
+        eventRecordChunkListener.prePersist(chunk);
+
+        assertThat(chunk.getClientId()).isEqualTo("client-1");
+        verify(encryptionProvider).encrypt(eq("client-1"), any(byte[].class));
+    }
+
+    @Test
+    void testAddChunkSetsClientId() {
+        EventRecord eventRecord = EventRecord.builder().clientId("client-1").chunks(new ArrayList<>()).build();
+        EventRecordChunk chunk = EventRecordChunk.builder().build();
+
+        eventRecord.addChunk(chunk);
+
+        assertThat(chunk.getClientId()).isEqualTo("client-1");
+    }
+}
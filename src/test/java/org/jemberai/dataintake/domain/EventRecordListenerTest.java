@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.domain;
+
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.cryptography.provider.EncryptionProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EventRecordListenerTest {
+
+    @Mock
+    EncryptionProvider encryptionProvider;
+
+    EventRecordListener eventRecordListener;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(encryptionProvider.encrypt(anyString(), any(byte[].class))).thenReturn(
+                new EncryptedValueDTO("test", UUID.randomUUID(), new byte[]{1}, new byte[]{2}, new byte[]{3}));
+        when(encryptionProvider.decrypt(anyString(), any(EncryptedValueDTO.class))).thenReturn("payload".getBytes());
+
+        eventRecordListener = new EventRecordListener();
+        eventRecordListener.setEncryptionProvider(encryptionProvider);
+    }
+
+    @Test
+    void testDataDecryptedOnFirstAccess() {
+        EventRecord eventRecord = loadedEventRecord();
+
+        verify(encryptionProvider, never()).decrypt(anyString(), any(EncryptedValueDTO.class));
+
+        assertThat(eventRecord.getData()).isEqualTo("payload".getBytes());
+        assertThat(eventRecord.getData()).isEqualTo("payload".getBytes());
+
+        verify(encryptionProvider, times(1)).decrypt(eq("client"), any(EncryptedValueDTO.class));
+    }
+
+    @Test
+    void testStatusUpdateSkipsEncryption() {
+        EventRecord eventRecord = loadedEventRecord();
+        eventRecord.setEmbeddingStatus(EmbeddingStatusEnum.COMPLETED);
+
+        eventRecordListener.preUpdate(eventRecord);
+
+        verifyNoMoreInteractions(encryptionProvider);
+    }
+
+    @Test
+    void testModifiedDataEncryptedOnUpdate() {
+        EventRecord eventRecord = loadedEventRecord();
+        eventRecord.setData("changed".getBytes());
+
+        eventRecordListener.preUpdate(eventRecord);
+        eventRecordListener.postWrite(eventRecord);
+
+        verify(encryptionProvider).encrypt("client", "changed".getBytes());
+        verify(encryptionProvider, never()).decrypt(anyString(), any(EncryptedValueDTO.class));
+        assertThat(eventRecord.isDataModified()).isFalse();
+    }
+
+    private EventRecord loadedEventRecord() {
+        EventRecord eventRecord = EventRecord.builder()
+                .clientId("client")
+                .specVersion("1.0")
+                .build();
+        eventRecord.setEncryptedValue(new byte[]{2});
+
+        eventRecordListener.postLoad(eventRecord);
+
+        return eventRecord;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class CachingEmbeddingModelTest {
+
+    EmbeddingModel delegate;
+    SimpleMeterRegistry meterRegistry;
+    InMemoryCacheStore persistentStore;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(EmbeddingModel.class);
+        meterRegistry = new SimpleMeterRegistry();
+        persistentStore = new InMemoryCacheStore();
+
+        when(delegate.dimension()).thenReturn(2);
+        when(delegate.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            return Response.from(segments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length(), 1.0f}))
+                    .toList());
+        });
+    }
+
+    @Test
+    void testRepeatedTextNotEmbeddedAgain() {
+        CachingEmbeddingModel model = cachingModel(null);
+
+        Embedding first = model.embed("hello world").content();
+        Embedding second = model.embed("hello world").content();
+
+        assertThat(second.vector()).containsExactly(first.vector());
+        then(delegate).should(times(1)).embedAll(anyList());
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testOnlyMissesSentToModel() {
+        CachingEmbeddingModel model = cachingModel(null);
+
+        model.embed("one");
+
+        List<Embedding> embeddings = model.embedAll(List.of(TextSegment.from("one"), TextSegment.from("three"),
+                TextSegment.from("three"))).content();
+
+        assertThat(embeddings).hasSize(3);
+        assertThat(embeddings.get(1).vector()[0]).isEqualTo(5.0f);
+        then(delegate).should(times(1)).embedAll(List.of(TextSegment.from("three")));
+    }
+
+    @Test
+    void testPersistentTier() {
+        cachingModel(persistentStore).embed("persisted");
+
+        // a new node with an empty in memory cache
+        CachingEmbeddingModel model = cachingModel(persistentStore);
+        model.embed("persisted");
+
+        then(delegate).should(times(1)).embedAll(anyList());
+        assertThat(persistentStore.entries).hasSize(1);
+        assertThat(meterRegistry.get("embedding.cache.persistent").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testKeyIncludesModelAndDimension() {
+        assertThat(cachingModel(null).cacheKey("text")).startsWith("test-model:2:");
+    }
+
+    private CachingEmbeddingModel cachingModel(EmbeddingCacheStore store) {
+        return new CachingEmbeddingModel(delegate, "test-model", new JemberProperties.EmbeddingProperties.EmbeddingCache(),
+                store, meterRegistry);
+    }
+
+    static class InMemoryCacheStore implements EmbeddingCacheStore {
+        final Map<String, float[]> entries = new HashMap<>();
+
+        @Override
+        public Map<String, float[]> findAll(Collection<String> cacheKeys) {
+            return cacheKeys.stream()
+                    .filter(entries::containsKey)
+                    .collect(Collectors.toMap(key -> key, entries::get));
+        }
+
+        @Override
+        public void saveAll(Map<String, float[]> embeddings) {
+            entries.putAll(embeddings);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class CachingEmbeddingStoreFactoryTest {
+
+    AtomicInteger created;
+    CachingEmbeddingStoreFactory factory;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        created = new AtomicInteger();
+
+        EmbeddingStoreFactory delegate = (collectionName, dimension) -> {
+            created.incrementAndGet();
+            return mock(EmbeddingStore.class, withSettings().extraInterfaces(AutoCloseable.class));
+        };
+
+        factory = new CachingEmbeddingStoreFactory(delegate, new JemberProperties.Vectorstore.StoreCache());
+    }
+
+    @Test
+    void testStoreIsReused() {
+        EmbeddingStore<TextSegment> first = factory.createEmbeddingStore("client", 1536);
+        EmbeddingStore<TextSegment> second = factory.createEmbeddingStore("client", 1536);
+
+        assertThat(second).isSameAs(first);
+        assertThat(created.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testStoreKeyedByDimension() {
+        EmbeddingStore<TextSegment> small = factory.createEmbeddingStore("client", 1536);
+        EmbeddingStore<TextSegment> large = factory.createEmbeddingStore("client", 3072);
+
+        assertThat(large).isNotSameAs(small);
+        assertThat(factory.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testEvictedStoreNotClosed() throws Exception {
+        EmbeddingStore<TextSegment> store = factory.createEmbeddingStore("client", 1536);
+
+        factory.destroy();
+
+        // another thread may still hold the store
+        verify((AutoCloseable) store, never()).close();
+        assertThat(factory.size()).isZero();
+    }
+
+    @Test
+    void testDelegateDestroyed() throws Exception {
+        EmbeddingStoreFactory delegate = mock(EmbeddingStoreFactory.class,
+                withSettings().extraInterfaces(DisposableBean.class));
+
+        new CachingEmbeddingStoreFactory(delegate, new JemberProperties.Vectorstore.StoreCache()).destroy();
+
+        verify((DisposableBean) delegate).destroy();
+    }
+
+    @Test
+    void testNullCollectionName() {
+        assertThatThrownBy(() -> factory.createEmbeddingStore(null, 1536))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
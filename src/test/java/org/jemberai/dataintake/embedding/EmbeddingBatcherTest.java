@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EmbeddingBatcherTest {
+
+    @Test
+    void testPartitionBySize() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(4, Integer.MAX_VALUE, String::length);
+
+        List<List<TextSegment>> batches = batcher.partition(segments(10, "abc"));
+
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(0)).hasSize(4);
+        assertThat(batches.get(1)).hasSize(4);
+        assertThat(batches.get(2)).hasSize(2);
+    }
+
+    @Test
+    void testPartitionByTokens() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(100, 10, String::length);
+
+        List<List<TextSegment>> batches = batcher.partition(segments(7, "abcd"));
+
+        // two segments of 4 tokens fit within a budget of 10
+        assertThat(batches).hasSize(4);
+        assertThat(batches.getLast()).hasSize(1);
+    }
+
+    @Test
+    void testOversizedSegmentIsSentAlone() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(100, 10, String::length);
+
+        List<List<TextSegment>> batches = batcher.partition(List.of(
+                TextSegment.from("ab"),
+                TextSegment.from("this segment is over budget"),
+                TextSegment.from("cd")));
+
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(1)).extracting(TextSegment::text).containsExactly("this segment is over budget");
+    }
+
+    @Test
+    void testFlushEmpty() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(4, 100, String::length);
+
+        assertThat(batcher.flush()).isEmpty();
+        assertThat(batcher.partition(List.of())).isEmpty();
+    }
+
+    @Test
+    void testEstimateTokenCount() {
+        assertThat(EmbeddingBatcher.estimateTokenCount(null)).isZero();
+        assertThat(EmbeddingBatcher.estimateTokenCount("abcd")).isEqualTo(1);
+        assertThat(EmbeddingBatcher.estimateTokenCount("abcde")).isEqualTo(2);
+    }
+
+    private List<TextSegment> segments(int count, String text) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> TextSegment.from(text))
+                .toList();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.model.QueryFilter;
+import org.jemberai.dataintake.utils.InvalidQueryFilterException;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EmbeddingMetadataTest {
+
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2024, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final Metadata metadata = EmbeddingMetadata.forEventRecord(EventRecord.builder()
+            .id(UUID.randomUUID())
+            .eventId("event-1")
+            .eventType("io.spring.event")
+            .source("/orders")
+            .time(TIME)
+            .build());
+
+    @Test
+    void testNoConditions() {
+        assertThat(EmbeddingMetadata.toFilter(null)).isNull();
+        assertThat(EmbeddingMetadata.toFilter(new QueryFilter())).isNull();
+    }
+
+    @Test
+    void testMatchesAllConditions() {
+        Filter filter = EmbeddingMetadata.toFilter(QueryFilter.builder()
+                .eventTypes(List.of("io.spring.event", "io.spring.other"))
+                .sources(List.of("/orders"))
+                .timeFrom(TIME.minusHours(1))
+                .timeTo(TIME.plusHours(1))
+                .build());
+
+        assertThat(filter.test(metadata)).isTrue();
+    }
+
+    @Test
+    void testNoMatch() {
+        assertThat(EmbeddingMetadata.toFilter(QueryFilter.builder().eventIds(List.of("event-2")).build())
+                .test(metadata)).isFalse();
+
+        // time to is exclusive
+        assertThat(EmbeddingMetadata.toFilter(QueryFilter.builder().timeTo(TIME).build()).test(metadata)).isFalse();
+
+        // not stored for the event
+        assertThat(EmbeddingMetadata.toFilter(QueryFilter.builder().subjects(List.of("order-1")).build())
+                .test(metadata)).isFalse();
+    }
+
+    @Test
+    void testInvalidTimeRange() {
+        assertThrows(InvalidQueryFilterException.class, () -> EmbeddingMetadata.toFilter(QueryFilter.builder()
+                .timeFrom(TIME)
+                .timeTo(TIME)
+                .build()));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class TokenBucketTest {
+
+    AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testReserveWithinCapacity() {
+        TokenBucket bucket = new TokenBucket(60, clock::get);
+
+        assertThat(bucket.reserve(30)).isZero();
+        assertThat(bucket.reserve(30)).isZero();
+    }
+
+    @Test
+    void testReserveOverCapacityWaitsForRefill() {
+        TokenBucket bucket = new TokenBucket(60, clock::get);
+
+        bucket.reserve(60);
+
+        // one permit per second
+        assertThat(bucket.reserve(1)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.reserve(1)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testRefill() {
+        TokenBucket bucket = new TokenBucket(60, clock::get);
+
+        bucket.reserve(60);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(bucket.available()).isEqualTo(10.0);
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(5));
+
+        assertThat(bucket.available()).isEqualTo(60.0);
+    }
+
+    @Test
+    void testRequestLargerThanCapacity() {
+        TokenBucket bucket = new TokenBucket(60, clock::get);
+
+        assertThat(bucket.reserve(1000)).isZero();
+        assertThat(bucket.available()).isZero();
+    }
+
+    @Test
+    void testInvalidRate() {
+        assertThatThrownBy(() -> new TokenBucket(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void testRecallAgainstExactSearch() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200);
+        List<float[]> vectors = randomVectors(2000);
+        vectors.forEach(index::add);
+
+        int found = 0;
+        int queries = 50;
+
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector();
+            List<Integer> exact = exactTop(vectors, query, 10);
+
+            found += (int) index.search(query, 10, 64, null).stream()
+                    .filter(result -> exact.contains(result.node()))
+                    .count();
+        }
+
+        assertThat(found / (double) (queries * 10)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void testFindsExactVector() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100);
+        List<float[]> vectors = randomVectors(500);
+        vectors.forEach(index::add);
+
+        List<HnswIndex.Result> results = index.search(vectors.get(123), 1, 32, null);
+
+        assertThat(results).hasSize(1);
+        assertThat(results.getFirst().node()).isEqualTo(123);
+        assertThat(results.getFirst().similarity()).isCloseTo(1.0f, offset(1e-5f));
+    }
+
+    @Test
+    void testAcceptOnlyReturnsAcceptedNodes() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100);
+        randomVectors(500).forEach(index::add);
+
+        List<HnswIndex.Result> results = index.search(randomVector(), 10, 32, node -> node % 50 == 0);
+
+        assertThat(results).hasSize(10);
+        assertThat(results).allSatisfy(result -> assertThat(result.node() % 50).isZero());
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100);
+        randomVectors(300).forEach(index::add);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        HnswIndex read = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 100);
+
+        float[] query = randomVector();
+        assertThat(read.size()).isEqualTo(300);
+        assertThat(read.search(query, 5, 32, null)).isEqualTo(index.search(query, 5, 32, null));
+    }
+
+    private List<Integer> exactTop(List<float[]> vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.size()).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> cosine(vectors.get(i), query)).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private List<float[]> randomVectors(int count) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vectors.add(randomVector());
+        }
+        return vectors;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.local;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.QuantizationEnum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class LocalEmbeddingStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSearchWithFilter() {
+        LocalEmbeddingStore store = new LocalEmbeddingStore(3, new JemberProperties.Vectorstore.Local(), null);
+
+        String first = store.add(new Embedding(new float[]{1f, 0f, 0f}), segment("io.spring.event", 100L));
+        String second = store.add(new Embedding(new float[]{0.9f, 0.1f, 0f}), segment("io.spring.other", 200L));
+        store.add(new Embedding(new float[]{0f, 1f, 0f}), segment("io.spring.event", 300L));
+
+        List<EmbeddingMatch<TextSegment>> matches = search(store, EmbeddingSearchRequest.builder()
+                .queryEmbedding(new Embedding(new float[]{1f, 0f, 0f}))
+                .maxResults(2)
+                .build());
+
+        assertThat(matches).extracting(EmbeddingMatch::embeddingId).containsExactly(first, second);
+        assertThat(matches.getFirst().score()).isCloseTo(1.0, offset(1e-6));
+
+        matches = search(store, EmbeddingSearchRequest.builder()
+                .queryEmbedding(new Embedding(new float[]{1f, 0f, 0f}))
+                .maxResults(5)
+                .filter(metadataKey("eventType").isEqualTo("io.spring.other"))
+                .build());
+
+        assertThat(matches).extracting(EmbeddingMatch::embeddingId).containsExactly(second);
+
+        matches = search(store, EmbeddingSearchRequest.builder()
+                .queryEmbedding(new Embedding(new float[]{1f, 0f, 0f}))
+                .maxResults(5)
+                .filter(metadataKey("time").isGreaterThanOrEqualTo(200L))
+                .build());
+
+        assertThat(matches).hasSize(2).extracting(EmbeddingMatch::embeddingId).first().isEqualTo(second);
+    }
+
+    @Test
+    void testReopenReplaysLog() {
+        LocalEmbeddingStore store = new LocalEmbeddingStore(3, properties(100), directory);
+        String id = store.add(new Embedding(new float[]{1f, 2f, 3f}), segment("io.spring.event", 100L));
+
+        // not closed, as after a crash
+        LocalEmbeddingStore reopened = new LocalEmbeddingStore(3, properties(100), directory);
+
+        assertThat(reopened.size()).isEqualTo(1);
+        EmbeddingMatch<TextSegment> match = search(reopened, request()).getFirst();
+        assertThat(match.embeddingId()).isEqualTo(id);
+        assertThat(match.embedded().metadata().getLong("time")).isEqualTo(100L);
+        reopened.close();
+    }
+
+    @Test
+    void testSnapshotEmptiesLog() throws IOException {
+        LocalEmbeddingStore store = new LocalEmbeddingStore(3, properties(2), directory);
+        store.add(new Embedding(new float[]{1f, 2f, 3f}));
+        store.add(new Embedding(new float[]{3f, 2f, 1f}));
+        store.add(new Embedding(new float[]{2f, 2f, 2f}));
+
+        assertThat(Files.exists(directory.resolve(LocalEmbeddingStore.SNAPSHOT_FILE))).isTrue();
+        store.close();
+
+        assertThat(Files.size(directory.resolve(LocalEmbeddingStore.WAL_FILE))).isZero();
+
+        LocalEmbeddingStore reopened = new LocalEmbeddingStore(3, properties(2), directory);
+        assertThat(reopened.size()).isEqualTo(3);
+        reopened.close();
+    }
+
+    @Test
+    void testTornLogRecordIsDropped() throws IOException {
+        LocalEmbeddingStore store = new LocalEmbeddingStore(3, properties(100), directory);
+        store.add(new Embedding(new float[]{1f, 2f, 3f}));
+
+        Files.write(directory.resolve(LocalEmbeddingStore.WAL_FILE), new byte[]{0, 0, 1, 0, 1, 2},
+                StandardOpenOption.APPEND);
+
+        LocalEmbeddingStore reopened = new LocalEmbeddingStore(3, properties(100), directory);
+        assertThat(reopened.size()).isEqualTo(1);
+
+        reopened.add(new Embedding(new float[]{3f, 2f, 1f}));
+        reopened.close();
+
+        assertThat(new LocalEmbeddingStore(3, properties(100), directory).size()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = QuantizationEnum.class, names = {"INT8", "BINARY"})
+    void testQuantizedSearchRescoresWithFullPrecision(QuantizationEnum quantization) {
+        JemberProperties.Vectorstore.Local properties = new JemberProperties.Vectorstore.Local();
+        properties.setRescoreFactor(10);
+        LocalEmbeddingStore store = new LocalEmbeddingStore(64, properties, null, quantization);
+
+        Random random = new Random(7);
+        List<float[]> vectors = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            float[] vector = randomVector(random, 64);
+            vectors.add(vector);
+            ids.add(store.add(new Embedding(vector)));
+        }
+
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, 64);
+
+            List<EmbeddingMatch<TextSegment>> matches = search(store, EmbeddingSearchRequest.builder()
+                    .queryEmbedding(new Embedding(query))
+                    .maxResults(10)
+                    .build());
+
+            List<String> exact = IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> cosine(vectors.get(i), query)).reversed())
+                    .limit(10)
+                    .map(ids::get)
+                    .toList();
+
+            found += (int) matches.stream().map(EmbeddingMatch::embeddingId).filter(exact::contains).count();
+
+            // scores and embeddings come from the full precision vectors
+            EmbeddingMatch<TextSegment> first = matches.getFirst();
+            float[] original = vectors.get(ids.indexOf(first.embeddingId()));
+            assertThat(cosine(first.embedding().vector(), original)).isCloseTo(1.0, offset(1e-5));
+            assertThat(first.score()).isCloseTo((cosine(original, query) + 1) / 2, offset(1e-5));
+        }
+
+        assertThat(found / 200.0).isGreaterThan(0.7);
+    }
+
+    @Test
+    void testReopenKeepsQuantization() {
+        LocalEmbeddingStore store = new LocalEmbeddingStore(3, properties(100), directory, QuantizationEnum.INT8);
+        String id = store.add(new Embedding(new float[]{1f, 2f, 3f}));
+        store.add(new Embedding(new float[]{3f, 2f, 1f}));
+        store.close();
+
+        LocalEmbeddingStore reopened = new LocalEmbeddingStore(3, properties(100), directory, QuantizationEnum.NONE);
+
+        assertThat(reopened.quantization()).isEqualTo(QuantizationEnum.INT8);
+        EmbeddingMatch<TextSegment> match = search(reopened, request()).getFirst();
+        assertThat(match.embeddingId()).isEqualTo(id);
+        assertThat(match.score()).isCloseTo(1.0, offset(1e-6));
+        reopened.close();
+    }
+
+    @Test
+    void testConcurrentSearchAfterReopen() throws Exception {
+        Random random = new Random(7);
+        List<float[]> vectors = IntStream.range(0, 200).mapToObj(i -> randomVector(random, 16)).toList();
+
+        LocalEmbeddingStore store = new LocalEmbeddingStore(16, properties(1), directory, QuantizationEnum.INT8);
+        List<String> ids = vectors.stream().map(vector -> store.add(new Embedding(vector))).toList();
+        store.close();
+
+        // the full precision vectors are mapped on open, concurrent searches only read them
+        LocalEmbeddingStore reopened = new LocalEmbeddingStore(16, properties(1), directory, QuantizationEnum.INT8);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                float[] query = vectors.get(i);
+                results.add(executor.submit(() -> search(reopened, EmbeddingSearchRequest.builder()
+                        .queryEmbedding(new Embedding(query))
+                        .maxResults(1)
+                        .build()).getFirst().embeddingId()));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get()).isEqualTo(ids.get(i));
+            }
+        }
+
+        reopened.close();
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static JemberProperties.Vectorstore.Local properties(int snapshotInterval) {
+        JemberProperties.Vectorstore.Local properties = new JemberProperties.Vectorstore.Local();
+        properties.setSnapshotInterval(snapshotInterval);
+        return properties;
+    }
+
+    private static EmbeddingSearchRequest request() {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(new Embedding(new float[]{1f, 2f, 3f}))
+                .maxResults(1)
+                .build();
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(LocalEmbeddingStore store, EmbeddingSearchRequest request) {
+        return store.search(request).matches();
+    }
+
+    private static TextSegment segment(String eventType, long time) {
+        return TextSegment.from("-", new Metadata().put("eventType", eventType).put("time", time));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.milvus;
+
+import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import io.milvus.client.MilvusServiceClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class MilvusEmbeddingStoreFactoryTest {
+
+    MilvusServiceClient client;
+    AtomicInteger connected;
+    MilvusEmbeddingStoreFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(MilvusServiceClient.class);
+        connected = new AtomicInteger();
+
+        factory = new MilvusEmbeddingStoreFactory(() -> {
+            connected.incrementAndGet();
+            return client;
+        }, MilvusEmbeddingStore::builder);
+    }
+
+    @Test
+    void testNotConnectedUntilUsed() throws Exception {
+        factory.destroy();
+
+        assertThat(connected.get()).isZero();
+        verify(client, never()).close(anyLong());
+    }
+
+    @Test
+    void testNullCollectionName() {
+        assertThatThrownBy(() -> factory.createEmbeddingStore(null, 1536))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(connected.get()).isZero();
+    }
+}
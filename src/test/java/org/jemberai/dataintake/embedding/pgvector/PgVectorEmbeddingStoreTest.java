@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.pgvector;
+
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.IterativeScanEnum;
+import org.jemberai.dataintake.domain.VectorIndexTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class PgVectorEmbeddingStoreTest {
+
+    @Test
+    void testHnswSearchSettings() {
+        JemberProperties.Vectorstore.PgVector properties = new JemberProperties.Vectorstore.PgVector();
+
+        PgVectorEmbeddingStore store = store(properties);
+
+        assertThat(store.searchSettings(10)).containsExactly(entry("hnsw.ef_search", "40"),
+                entry("hnsw.iterative_scan", "strict_order"));
+
+        // enough candidates for the requested results, up to the pgvector limit
+        assertThat(store.searchSettings(200)).containsEntry("hnsw.ef_search", "200");
+        assertThat(store.searchSettings(5000)).containsEntry("hnsw.ef_search", "1000");
+    }
+
+    @Test
+    void testIterativeScanOff() {
+        JemberProperties.Vectorstore.PgVector properties = new JemberProperties.Vectorstore.PgVector();
+        properties.setIterativeScan(IterativeScanEnum.OFF);
+
+        assertThat(store(properties).searchSettings(10)).containsOnlyKeys("hnsw.ef_search");
+    }
+
+    @Test
+    void testIvfFlatSearchSettings() {
+        JemberProperties.Vectorstore.PgVector properties = new JemberProperties.Vectorstore.PgVector();
+        properties.setIndexType(VectorIndexTypeEnum.IVFFLAT);
+        properties.setProbes(10);
+
+        // strict ordering is not supported by IVFFlat
+        assertThat(store(properties).searchSettings(10)).containsExactly(entry("ivfflat.probes", "10"),
+                entry("ivfflat.iterative_scan", "relaxed_order"));
+    }
+
+    private static PgVectorEmbeddingStore store(JemberProperties.Vectorstore.PgVector properties) {
+        return new PgVectorEmbeddingStore(null, null, null, properties, "jember-client");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.embedding.pgvector;
+
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class PgVectorFilterMapperTest {
+
+    @Test
+    void testMapsConditionsToParameters() {
+        Filter filter = metadataKey("eventType").isIn("a", "b")
+                .and(metadataKey("time").isGreaterThanOrEqualTo(100L))
+                .and(Filter.not(metadataKey("source").isEqualTo("/orders")));
+
+        List<Object> args = new ArrayList<>();
+        String sql = PgVectorFilterMapper.map(filter, "e.metadata", args);
+
+        assertThat(sql).isEqualTo("(((e.metadata ->> ?) in (?, ?) and (e.metadata ->> ?)::numeric >= ?) "
+                + "and (not (e.metadata ->> ?) = ?))");
+        assertThat(args).containsExactly("eventType", "a", "b", "time", 100L, "source", "/orders");
+    }
+
+    @Test
+    void testVectorLiteral() {
+        float[] vector = {0.5f, -1.25f, 3f};
+
+        String literal = PgVectorEmbeddingStore.toLiteral(vector);
+
+        assertThat(literal).isEqualTo("[0.5,-1.25,3.0]");
+        assertThat(PgVectorEmbeddingStore.fromLiteral(literal)).containsExactly(vector);
+    }
+}
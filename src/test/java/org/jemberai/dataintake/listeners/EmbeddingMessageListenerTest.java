@@ -0,0 +1,132 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.listeners;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.messages.EmbeddedTextSegment;
+import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.service.ChunkBlockService;
+import org.jemberai.dataintake.service.ChunkEncryptionService;
+import org.jemberai.dataintake.service.KeywordIndexService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EmbeddingMessageListenerTest {
+
+    @Mock
+    EventRecordRepository eventRecordRepository;
+
+    @Mock
+    EventRecordChunkRepository eventRecordChunkRepository;
+
+    @Mock
+    ChunkEncryptionService chunkEncryptionService;
+
+    @Mock
+    ChunkBlockService chunkBlockService;
+
+    @Mock
+    KeywordIndexService keywordIndexService;
+
+    EmbeddingMessageListener listener;
+    EventRecord eventRecord;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        listener = new EmbeddingMessageListener(eventRecordRepository, eventRecordChunkRepository,
+                chunkEncryptionService, chunkBlockService, keywordIndexService, new JemberProperties(),
+                new ObjectMapper());
+
+        eventRecord = EventRecord.builder()
+                .id(UUID.randomUUID())
+                .clientId("jember-client")
+                .chunks(new ArrayList<>())
+                .build();
+
+        when(eventRecordRepository.findById(eventRecord.getId())).thenReturn(Optional.of(eventRecord));
+        when(keywordIndexService.isEnabled()).thenReturn(true);
+
+        // stands in for the transaction of the listener
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testIndexedAfterCommit() {
+        listener.listen(successMessage());
+
+        verify(keywordIndexService, never()).index(anyString(), any(), anyMap());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        verify(keywordIndexService).index(eq("jember-client"), eq(eventRecord.getId()),
+                eq(Map.of("embedding-1", "bike course")));
+    }
+
+    @Test
+    void testNotIndexedOnRollback() {
+        listener.listen(successMessage());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(keywordIndexService, never()).index(anyString(), any(), anyMap());
+    }
+
+    private EmbeddingRequestCompleteMessage successMessage() {
+        return EmbeddingRequestCompleteMessage.builder()
+                .eventRecord(eventRecord)
+                .textSegments(List.of(new EmbeddedTextSegment("embedding-1", TextSegment.from("bike course"))))
+                .status(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS)
+                .build();
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.listeners;
+
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.ModelEnum;
+import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage.EmbeddingRequestStatus;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.service.EmbeddingService;
+import org.jemberai.dataintake.service.EmbeddingWorkQueueService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EmbeddingWorkQueueWorkerTest {
+
+    // long enough that only the poll on start runs, further polls are made by the tests
+    private static final Duration POLL_INTERVAL = Duration.ofHours(1);
+
+    @Mock
+    EmbeddingWorkQueueService embeddingWorkQueueService;
+
+    @Mock
+    EmbeddingService embeddingService;
+
+    @Mock
+    EventRecordRepository eventRecordRepository;
+
+    JemberProperties jemberProperties;
+
+    EmbeddingWorkQueueWorker worker;
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        jemberProperties = new JemberProperties();
+        jemberProperties.getWorkQueue().setConcurrency(2);
+        jemberProperties.getWorkQueue().setMaxConcurrencyPerClient(0);
+        jemberProperties.getWorkQueue().setPollInterval(POLL_INTERVAL);
+
+        when(eventRecordRepository.findById(any())).thenReturn(Optional.of(EventRecord.builder().build()));
+        when(embeddingService.processOpenAPIEmbeddingRequest(any())).thenAnswer(invocation -> {
+            release.await();
+            return EmbeddingRequestStatus.SUCCESS;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void testClaimsUpToConcurrency() throws Exception {
+        EmbeddingWorkItem first = workItem("client-a");
+        EmbeddingWorkItem second = workItem("client-b");
+        when(embeddingWorkQueueService.claim(anyInt())).thenReturn(List.of(first, second), List.of());
+
+        startWorker();
+
+        verify(embeddingWorkQueueService, timeout(5000)).claim(2);
+        verify(embeddingService, timeout(5000).times(2)).processOpenAPIEmbeddingRequest(any());
+
+        // both workers busy, nothing more is claimed
+        worker.poll();
+        verify(embeddingWorkQueueService, times(1)).claim(anyInt());
+
+        release.countDown();
+
+        verify(embeddingWorkQueueService, timeout(5000)).complete(first.getId());
+        verify(embeddingWorkQueueService, timeout(5000)).complete(second.getId());
+
+        // permits are returned once the items are done
+        while (claims(2) < 2) {
+            worker.poll();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testClientConcurrencyLimit() {
+        jemberProperties.getWorkQueue().setConcurrency(4);
+        jemberProperties.getWorkQueue().setMaxConcurrencyPerClient(1);
+
+        EmbeddingWorkItem first = workItem("client-a");
+        EmbeddingWorkItem second = workItem("client-a");
+        EmbeddingWorkItem other = workItem("client-b");
+        when(embeddingWorkQueueService.claim(anyInt())).thenReturn(List.of(first, second, other), List.of());
+
+        startWorker();
+
+        verify(embeddingWorkQueueService, timeout(5000)).defer(second.getId(), POLL_INTERVAL);
+        verify(embeddingService, timeout(5000).times(2)).processOpenAPIEmbeddingRequest(any());
+        verify(embeddingWorkQueueService, never()).defer(first.getId(), POLL_INTERVAL);
+        verify(embeddingWorkQueueService, never()).defer(other.getId(), POLL_INTERVAL);
+    }
+
+    @Test
+    void testStopWaitsForItemsInFlight() throws Exception {
+        EmbeddingWorkItem workItem = workItem("client-a");
+        when(embeddingWorkQueueService.claim(anyInt())).thenReturn(List.of(workItem), List.of());
+
+        startWorker();
+        verify(embeddingService, timeout(5000)).processOpenAPIEmbeddingRequest(any());
+
+        Thread releaser = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+
+        worker.stop();
+        releaser.join();
+
+        assertThat(worker.isRunning()).isFalse();
+        verify(embeddingWorkQueueService).complete(workItem.getId());
+
+        // no further claims once stopped
+        worker.poll();
+        verify(embeddingWorkQueueService, times(1)).claim(anyInt());
+    }
+
+    @Test
+    void testProcessFailure() {
+        release.countDown();
+        when(embeddingService.processOpenAPIEmbeddingRequest(any())).thenReturn(EmbeddingRequestStatus.ERROR);
+
+        EmbeddingWorkItem workItem = workItem("client-a");
+        worker = new EmbeddingWorkQueueWorker(embeddingWorkQueueService, embeddingService, eventRecordRepository,
+                jemberProperties);
+
+        worker.process(workItem);
+
+        verify(embeddingWorkQueueService).fail(any(), anyString());
+        verify(embeddingWorkQueueService, never()).complete(any());
+    }
+
+    @Test
+    void testDisabled() {
+        jemberProperties.getWorkQueue().setEnabled(false);
+
+        startWorker();
+
+        assertThat(worker.isRunning()).isFalse();
+        verify(embeddingWorkQueueService, never()).claim(anyInt());
+    }
+
+    private void startWorker() {
+        worker = new EmbeddingWorkQueueWorker(embeddingWorkQueueService, embeddingService, eventRecordRepository,
+                jemberProperties);
+        worker.start();
+    }
+
+    private long claims(int maxItems) {
+        return mockingDetails(embeddingWorkQueueService).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("claim"))
+                .filter(invocation -> invocation.getArgument(0).equals(maxItems))
+                .count();
+    }
+
+    private EmbeddingWorkItem workItem(String clientId) {
+        return EmbeddingWorkItem.builder()
+                .id(UUID.randomUUID())
+                .eventRecordId(UUID.randomUUID())
+                .clientId(clientId)
+                .model(ModelEnum.OPENAI)
+                .embeddingModel(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL)
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.cryptography.model.EncryptedValueDTO;
+import org.jemberai.cryptography.provider.EncryptionProvider;
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.EventRecordChunkListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class ChunkEncryptionServiceImplTest {
+
+    @Mock
+    EncryptionProvider encryptionProvider;
+
+    ChunkEncryptionServiceImpl chunkEncryptionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        JemberProperties jemberProperties = new JemberProperties();
+        jemberProperties.getCryptography().setChunkEncryptionParallelism(4);
+
+        when(encryptionProvider.encrypt(anyString(), any(byte[].class))).thenAnswer(invocation ->
+                new EncryptedValueDTO("test", UUID.randomUUID(), new byte[]{1}, invocation.getArgument(1), new byte[]{2}));
+
+        chunkEncryptionService = new ChunkEncryptionServiceImpl(encryptionProvider, jemberProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunkEncryptionService.destroy();
+    }
+
+    @Test
+    void testEncryptAll() {
+        List<EventRecordChunk> chunks = chunks(100);
+
+        chunkEncryptionService.encryptAll("client", chunks);
+
+        verify(encryptionProvider, times(100)).encrypt(eq("client"), any(byte[].class));
+
+        for (int i = 0; i < chunks.size(); i++) {
+            EventRecordChunk chunk = chunks.get(i);
+
+            assertThat(EventRecordChunkListener.isEncrypted(chunk)).isTrue();
+            assertThat(chunk.getEncryptedValue()).isEqualTo(("chunk " + i).getBytes());
+            assertThat(chunk.getSha256()).isNotNull();
+        }
+    }
+
+    @Test
+    void testAlreadyEncryptedChunksAreSkipped() {
+        List<EventRecordChunk> chunks = chunks(2);
+
+        chunkEncryptionService.encryptAll("client", chunks);
+        chunkEncryptionService.encryptAll("client", chunks);
+
+        verify(encryptionProvider, times(2)).encrypt(anyString(), any(byte[].class));
+    }
+
+    @Test
+    void testEncryptionFailure() {
+        when(encryptionProvider.encrypt(anyString(), any(byte[].class))).thenThrow(new IllegalStateException("no key"));
+
+        assertThatThrownBy(() -> chunkEncryptionService.encryptAll("client", chunks(50)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("no key");
+    }
+
+    private List<EventRecordChunk> chunks(int count) {
+        List<EventRecordChunk> chunks = new ArrayList<>();
+
+        IntStream.range(0, count).forEach(i -> chunks.add(EventRecordChunk.builder()
+                .embeddingId(String.valueOf(i))
+                .data(("chunk " + i).getBytes())
+                .build()));
+
+        return chunks;
+    }
+}
@@ -27,12 +27,19 @@ import dev.langchain4j.model.output.Response;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.tika.parser.AutoDetectParser;
 import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.DocumentMetadataKeys;
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
 import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
 import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.embedding.EmbeddingMetadata;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
+import org.jemberai.dataintake.messages.EmbeddedTextSegment;
 import org.jemberai.dataintake.messages.EmbeddingRequestCompleteMessage;
 import org.jemberai.dataintake.messages.EmbeddingRequestMessage;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.jemberai.dataintake.utils.tika.ApacheTikaDocumentMetaParser;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -40,6 +47,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationEventPublisher;
@@ -49,12 +57,18 @@ import org.springframework.test.context.ContextConfiguration;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
@@ -66,6 +80,8 @@ import static org.mockito.Mockito.when;
 @ContextConfiguration(classes = {JemberProperties.class})
 class EmbeddingServiceImplUnitTests {
 
+    static final OffsetDateTime EVENT_TIME = OffsetDateTime.parse("2024-05-01T10:15:30Z");
+
     @Value("classpath:files/St.-Anthonys-Triathlon-Olympic-Bike-Map-23-3002600_Final.pdf")
     Resource pdfFile;
 
@@ -84,6 +100,16 @@ class EmbeddingServiceImplUnitTests {
     @Mock
     EmbeddingModel embeddingModel;
 
+    @Spy
+    JemberProperties jemberProperties = new JemberProperties();
+
+    @Mock
+    EventRecordRepository eventRecordRepository;
+
+    @Spy
+    ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(new AutoDetectParser(), 2,
+            Duration.ofMinutes(1));
+
     @InjectMocks
     EmbeddingServiceImpl embeddingService;
 
@@ -94,6 +120,9 @@ class EmbeddingServiceImplUnitTests {
     @Captor
     ArgumentCaptor<EmbeddingRequestCompleteMessage> completeCaptor;
 
+    @Captor
+    ArgumentCaptor<List<TextSegment>> segmentsCaptor;
+
     @Test
     void testParsePdf() throws IOException {
 
@@ -167,24 +196,181 @@ class EmbeddingServiceImplUnitTests {
         EventRecord eventRecord = EventRecord.builder()
                 .id(UUID.randomUUID())
                 .clientId("jember-client")
+                .eventType("io.spring.event")
                 .data(pdfFile.getContentAsByteArray())
                 .embeddingStatus(EmbeddingStatusEnum.NEW)
                 .build();
 
         when(embeddingStoreFactory.createEmbeddingStore(anyString(), anyInt())).thenReturn(esMock);
-        when(embeddingModel.embed((TextSegment) any())).thenReturn(new Response<>(new Embedding(new float[]{1.0f, 2.0f, 3.0f})));
-        when(esMock.add(any())).thenReturn("123");
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            return new Response<>(segments.stream()
+                    .map(segment -> new Embedding(new float[]{1.0f, 2.0f, 3.0f}))
+                    .toList());
+        });
+        when(esMock.addAll(anyList(), anyList())).thenAnswer(invocation -> {
+            List<Embedding> embeddings = invocation.getArgument(0);
+            return embeddings.stream()
+                    .map(embedding -> UUID.randomUUID().toString())
+                    .toList();
+        });
 
-        embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
+        val status = embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
                 .eventRecord(eventRecord)
                 .build());
 
+        assertThat(status).isEqualTo(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS);
         then(embeddingStoreFactory).should().createEmbeddingStore(anyString(), anyInt());
-        then(embeddingModel).should(times(6)).embed((TextSegment) any());
-        then(esMock).should(times(6)).add(any());
+        then(embeddingModel).should(times(1)).embedAll(anyList());
+        then(embeddingModel).should(never()).embed((TextSegment) any());
+        then(esMock).should(times(1)).addAll(anyList(), segmentsCaptor.capture());
         then(applicationEventPublisher).should().publishEvent(completeCaptor.capture());
 
         assertThat(completeCaptor.getValue().getStatus()).isEqualTo(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.SUCCESS);
+        assertThat(completeCaptor.getValue().getTextSegments()).hasSize(6);
+
+        // metadata only, the chunk text is not written to the vector store
+        assertThat(segmentsCaptor.getValue()).allSatisfy(segment -> {
+            assertThat(segment.text()).isEqualTo(EmbeddingMetadata.PLACEHOLDER_TEXT);
+            assertThat(segment.metadata().getString(DocumentMetadataKeys.EVENT_TYPE)).isEqualTo("io.spring.event");
+        });
+    }
+
+    @Test
+    void testProcessDuplicateEvent() throws IOException {
+        UUID originalId = UUID.randomUUID();
+
+        EventRecord eventRecord = EventRecord.builder()
+                .id(UUID.randomUUID())
+                .clientId("jember-client")
+                .eventType("io.spring.event")
+                .data(pdfFile.getContentAsByteArray())
+                .sha256("abc123")
+                .eventId("event-1")
+                .source("io.spring")
+                .time(EVENT_TIME)
+                .embeddingStatus(EmbeddingStatusEnum.NEW)
+                .build();
+
+        when(embeddingModel.dimension()).thenReturn(3);
+        // the original must match on the filterable attributes, its embeddings carry them
+        when(eventRecordRepository.findDuplicateIds(eq("jember-client"), eq("io.spring.event"), eq("abc123"),
+                eq(EmbeddingStatusEnum.COMPLETED), eq(eventRecord.getId()), eq("event-1"), eq("io.spring"),
+                isNull(), eq(EVENT_TIME), eq(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL), eq(3), any()))
+                .thenReturn(List.of(originalId));
+
+        val status = embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
+                .eventRecord(eventRecord)
+                .embeddingModel(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL)
+                .build());
+
+        assertThat(status).isEqualTo(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.DUPLICATE);
+        then(embeddingModel).should(never()).embedAll(anyList());
+        then(applicationEventPublisher).should().publishEvent(completeCaptor.capture());
+
+        assertThat(completeCaptor.getValue().getDuplicateOfId()).isEqualTo(originalId);
+    }
+
+    @Test
+    void testRepeatedSegmentsKeepTheirChunks() {
+        // paragraphs too long to be combined into one segment
+        String repeated = "The bike course follows the river to the north beach and back again ".repeat(3).trim();
+        String other = "The run course loops twice around the park before the finish line ".repeat(3).trim();
+
+        EventRecord eventRecord = EventRecord.builder()
+                .id(UUID.randomUUID())
+                .clientId("jember-client")
+                .eventType("io.spring.event")
+                .dataContentType("text/plain")
+                .data((repeated + "\n\n" + other + "\n\n" + repeated).getBytes(StandardCharsets.UTF_8))
+                .embeddingStatus(EmbeddingStatusEnum.NEW)
+                .build();
+
+        when(embeddingModel.dimension()).thenReturn(3);
+        when(embeddingStoreFactory.createEmbeddingStore(anyString(), anyInt())).thenReturn(esMock);
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            return new Response<>(segments.stream()
+                    .map(segment -> new Embedding(new float[]{1.0f, 2.0f, 3.0f}))
+                    .toList());
+        });
+        when(esMock.addAll(anyList(), anyList())).thenAnswer(invocation -> {
+            List<Embedding> embeddings = invocation.getArgument(0);
+            return embeddings.stream()
+                    .map(embedding -> UUID.randomUUID().toString())
+                    .toList();
+        });
+
+        embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
+                .eventRecord(eventRecord)
+                .embeddingModel(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL)
+                .build());
+
+        then(embeddingModel).should().embedAll(segmentsCaptor.capture());
+        then(applicationEventPublisher).should().publishEvent(completeCaptor.capture());
+
+        // embedded once
+        assertThat(segmentsCaptor.getValue()).extracting(TextSegment::text).containsExactly(repeated, other);
+
+        // a chunk for every segment, the repeated ones share the embedding id
+        List<EmbeddedTextSegment> segments = completeCaptor.getValue().getTextSegments();
+        assertThat(segments).extracting(segment -> segment.textSegment().text())
+                .containsExactlyInAnyOrder(repeated, other, repeated);
+        assertThat(segments.stream()
+                .filter(segment -> segment.textSegment().text().equals(repeated))
+                .map(EmbeddedTextSegment::embeddingId)
+                .distinct()).hasSize(1);
+
+        // stored with the chunks
+        assertThat(completeCaptor.getValue().getEmbeddingModel()).isEqualTo(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL);
+        assertThat(completeCaptor.getValue().getEmbeddingDimension()).isEqualTo(3);
+    }
+
+    @Test
+    void testCsvHeaderEmbeddedWithEachChunk() {
+        StringBuilder csv = new StringBuilder("id,title,year\n");
+        for (int i = 0; i < 200; i++) {
+            csv.append(i).append(",\"Movie ").append(i).append("\",1979\n");
+        }
+
+        // no header stored with the event, the first row is the header
+        EventRecord eventRecord = EventRecord.builder()
+                .id(UUID.randomUUID())
+                .clientId("jember-client")
+                .eventType("io.spring.event")
+                .dataContentType("text/csv")
+                .data(csv.toString().getBytes(StandardCharsets.UTF_8))
+                .embeddingStatus(EmbeddingStatusEnum.NEW)
+                .build();
+
+        when(embeddingModel.dimension()).thenReturn(3);
+        when(embeddingStoreFactory.createEmbeddingStore(anyString(), anyInt())).thenReturn(esMock);
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            return new Response<>(segments.stream()
+                    .map(segment -> new Embedding(new float[]{1.0f, 2.0f, 3.0f}))
+                    .toList());
+        });
+        when(esMock.addAll(anyList(), anyList())).thenAnswer(invocation -> {
+            List<Embedding> embeddings = invocation.getArgument(0);
+            return embeddings.stream()
+                    .map(embedding -> UUID.randomUUID().toString())
+                    .toList();
+        });
+
+        embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
+                .eventRecord(eventRecord)
+                .build());
+
+        then(embeddingModel).should(atLeastOnce()).embedAll(segmentsCaptor.capture());
+        then(applicationEventPublisher).should().publishEvent(completeCaptor.capture());
+
+        // what is embedded, and what is stored as chunk text
+        assertThat(segmentsCaptor.getAllValues().stream().flatMap(List::stream))
+                .hasSizeGreaterThan(1)
+                .allSatisfy(segment -> assertThat(segment.text()).startsWith("id,title,year\n"));
+        assertThat(completeCaptor.getValue().getTextSegments())
+                .allSatisfy(segment -> assertThat(segment.textSegment().text()).startsWith("id,title,year\n"));
     }
 
     @Test
@@ -213,12 +399,12 @@ class EmbeddingServiceImplUnitTests {
                 .embeddingStatus(EmbeddingStatusEnum.NEW)
                 .build();
 
-        embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
+        val status = embeddingService.processOpenAPIEmbeddingRequest(EmbeddingRequestMessage.builder()
                 .eventRecord(eventRecord)
                 .build());
 
-        then(applicationEventPublisher).should().publishEvent(completeCaptor.capture());
-
-        assertThat(completeCaptor.getValue().getStatus()).isEqualTo(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.ERROR);
+        // retried by the work queue, the event record is only marked ERROR after the last attempt
+        assertThat(status).isEqualTo(EmbeddingRequestCompleteMessage.EmbeddingRequestStatus.ERROR);
+        then(applicationEventPublisher).should(never()).publishEvent(any());
     }
 }
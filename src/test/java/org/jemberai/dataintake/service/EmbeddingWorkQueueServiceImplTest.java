@@ -0,0 +1,176 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.domain.EmbeddingModelEnum;
+import org.jemberai.dataintake.domain.EmbeddingStatusEnum;
+import org.jemberai.dataintake.domain.EmbeddingWorkItem;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.domain.ModelEnum;
+import org.jemberai.dataintake.domain.WorkItemStatusEnum;
+import org.jemberai.dataintake.repositories.EmbeddingWorkItemRepository;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EmbeddingWorkQueueServiceImplTest {
+
+    @Mock
+    EmbeddingWorkItemRepository embeddingWorkItemRepository;
+
+    @Mock
+    EventRecordRepository eventRecordRepository;
+
+    EmbeddingWorkQueueServiceImpl workQueueService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        JemberProperties jemberProperties = new JemberProperties();
+        jemberProperties.getWorkQueue().setNodeId("test-node");
+        jemberProperties.getWorkQueue().setMaxAttempts(3);
+        jemberProperties.getWorkQueue().setInitialBackoff(Duration.ofSeconds(10));
+        jemberProperties.getWorkQueue().setMaxBackoff(Duration.ofSeconds(30));
+
+        workQueueService = new EmbeddingWorkQueueServiceImpl(embeddingWorkItemRepository, eventRecordRepository,
+                jemberProperties);
+    }
+
+    @Test
+    void testClaim() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.PENDING, 0);
+
+        when(embeddingWorkItemRepository.findClaimable(any(), any(), any(), any(), any())).thenReturn(List.of(workItem));
+
+        List<EmbeddingWorkItem> claimed = workQueueService.claim(4);
+
+        assertThat(claimed).containsExactly(workItem);
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.IN_PROGRESS);
+        assertThat(workItem.getAttempts()).isEqualTo(1);
+        assertThat(workItem.getLockedBy()).isEqualTo("test-node");
+        assertThat(workItem.getLockedAt()).isNotNull();
+    }
+
+    @Test
+    void testClaimExpiredLeaseAtMaxAttempts() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.IN_PROGRESS, 3);
+
+        when(embeddingWorkItemRepository.findClaimable(any(), any(), any(), any(), any())).thenReturn(List.of(workItem));
+
+        assertThat(workQueueService.claim(4)).isEmpty();
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.DEAD_LETTER);
+        verify(eventRecordRepository).findById(workItem.getEventRecordId());
+    }
+
+    @Test
+    void testFailRetries() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.IN_PROGRESS, 1);
+
+        when(embeddingWorkItemRepository.findById(workItem.getId())).thenReturn(Optional.of(workItem));
+
+        workQueueService.fail(workItem.getId(), "boom");
+
+        // not final, the event record keeps its status
+        verifyNoInteractions(eventRecordRepository);
+
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.PENDING);
+        assertThat(workItem.getLastError()).isEqualTo("boom");
+        assertThat(workItem.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(5));
+        assertThat(workItem.getLockedBy()).isNull();
+    }
+
+    @Test
+    void testFailDeadLetter() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.IN_PROGRESS, 3);
+        EventRecord eventRecord = EventRecord.builder()
+                .id(workItem.getEventRecordId())
+                .embeddingStatus(EmbeddingStatusEnum.NEW)
+                .build();
+
+        when(embeddingWorkItemRepository.findById(workItem.getId())).thenReturn(Optional.of(workItem));
+        when(eventRecordRepository.findById(workItem.getEventRecordId())).thenReturn(Optional.of(eventRecord));
+
+        workQueueService.fail(workItem.getId(), "boom");
+
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.DEAD_LETTER);
+        assertThat(eventRecord.getEmbeddingStatus()).isEqualTo(EmbeddingStatusEnum.ERROR);
+    }
+
+    @Test
+    void testComplete() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.IN_PROGRESS, 1);
+
+        when(embeddingWorkItemRepository.findById(workItem.getId())).thenReturn(Optional.of(workItem));
+
+        workQueueService.complete(workItem.getId());
+
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.COMPLETED);
+    }
+
+    @Test
+    void testDefer() {
+        EmbeddingWorkItem workItem = workItem(WorkItemStatusEnum.IN_PROGRESS, 1);
+
+        when(embeddingWorkItemRepository.findById(workItem.getId())).thenReturn(Optional.of(workItem));
+
+        workQueueService.defer(workItem.getId(), Duration.ofSeconds(1));
+
+        assertThat(workItem.getStatus()).isEqualTo(WorkItemStatusEnum.PENDING);
+        assertThat(workItem.getAttempts()).isZero();
+    }
+
+    @Test
+    void testBackoff() {
+        assertThat(workQueueService.backoff(1)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(workQueueService.backoff(2)).isEqualTo(Duration.ofSeconds(20));
+        assertThat(workQueueService.backoff(3)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(workQueueService.backoff(100)).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    private EmbeddingWorkItem workItem(WorkItemStatusEnum status, int attempts) {
+        return EmbeddingWorkItem.builder()
+                .id(UUID.randomUUID())
+                .eventRecordId(UUID.randomUUID())
+                .model(ModelEnum.OPENAI)
+                .embeddingModel(EmbeddingModelEnum.TEXT_EMBEDDING_3_SMALL)
+                .status(status)
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *  
+ */
+
+package org.jemberai.dataintake.service;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.embedding.EmbeddingMetadata;
+import org.jemberai.dataintake.model.QueryFilter;
+import org.jemberai.dataintake.repositories.EventRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class EventRecordServiceImplTest {
+
+    @Mock
+    EventRecordRepository eventRecordRepository;
+
+    @Mock
+    ApplicationEventPublisher applicationEventPublisher;
+
+    @InjectMocks
+    EventRecordServiceImpl eventRecordService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(eventRecordRepository.save(any(EventRecord.class))).thenAnswer(invocation -> {
+            EventRecord eventRecord = invocation.getArgument(0);
+            eventRecord.setId(UUID.randomUUID());
+            return eventRecord;
+        });
+    }
+
+    @Test
+    void testSavedEventFilteredOnCloudEventId() {
+        CloudEvent event = CloudEventBuilder.v1()
+                .withId("order-created-1")
+                .withType("io.spring.event")
+                .withSource(URI.create("/orders"))
+                .withData("text/plain", "order created".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        eventRecordService.save(event, "jember-client");
+
+        ArgumentCaptor<EventRecord> eventRecordCaptor = ArgumentCaptor.forClass(EventRecord.class);
+        verify(eventRecordRepository).save(eventRecordCaptor.capture());
+
+        EventRecord saved = eventRecordCaptor.getValue();
+        assertThat(saved.getEventId()).isEqualTo("order-created-1");
+
+        // the metadata stored with the embeddings of the event
+        var metadata = EmbeddingMetadata.forEventRecord(saved);
+
+        assertThat(EmbeddingMetadata.toFilter(QueryFilter.builder().eventIds(List.of("order-created-1")).build())
+                .test(metadata)).isTrue();
+        assertThat(EmbeddingMetadata.toFilter(QueryFilter.builder().eventIds(List.of("order-created-2")).build())
+                .test(metadata)).isFalse();
+    }
+}
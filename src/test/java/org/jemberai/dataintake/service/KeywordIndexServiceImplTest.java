@@ -0,0 +1,148 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.service;
+
+import org.jemberai.dataintake.config.JemberProperties;
+import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class KeywordIndexServiceImplTest {
+
+    KeywordIndexServiceImpl keywordIndexService;
+    JemberProperties jemberProperties;
+    EventRecordChunkRepository eventRecordChunkRepository = mock(EventRecordChunkRepository.class);
+    ChunkEncryptionService chunkEncryptionService = mock(ChunkEncryptionService.class);
+    ChunkBlockService chunkBlockService = mock(ChunkBlockService.class);
+
+    @BeforeEach
+    void setUp() {
+        jemberProperties = new JemberProperties();
+        jemberProperties.getKeywordSearch().setEnabled(true);
+
+        keywordIndexService = new KeywordIndexServiceImpl(jemberProperties, eventRecordChunkRepository,
+                chunkEncryptionService, chunkBlockService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keywordIndexService.destroy();
+    }
+
+    @Test
+    void testIndexAndSearch() {
+        keywordIndexService.index("client", UUID.randomUUID(), Map.of(
+                "e1", "The triathlon bike course follows the river",
+                "e2", "Swim start is at the north beach",
+                "e3", "Run course loops twice around the park"));
+
+        List<KeywordIndexService.KeywordMatch> matches = keywordIndexService.search("client", "bike course", 10);
+
+        assertThat(matches).extracting(KeywordIndexService.KeywordMatch::embeddingId).containsExactly("e1", "e3");
+        assertThat(matches.get(0).score()).isGreaterThan(matches.get(1).score());
+    }
+
+    @Test
+    void testClientsAreSeparate() {
+        keywordIndexService.index("client-a", UUID.randomUUID(), Map.of("e1", "bike course"));
+
+        assertThat(keywordIndexService.search("client-b", "bike", 10)).isEmpty();
+    }
+
+    @Test
+    void testReindexReplacesDocument() {
+        keywordIndexService.index("client", UUID.randomUUID(), Map.of("e1", "bike course"));
+        keywordIndexService.index("client", UUID.randomUUID(), Map.of("e1", "bike course"));
+
+        assertThat(keywordIndexService.search("client", "bike", 10)).hasSize(1);
+    }
+
+    @Test
+    void testQuerySyntaxIsEscaped() {
+        keywordIndexService.index("client", UUID.randomUUID(), Map.of("e1", "bike course"));
+
+        assertThat(keywordIndexService.search("client", "bike AND (course", 10)).hasSize(1);
+        assertThat(keywordIndexService.search("client", "  ", 10)).isEmpty();
+    }
+
+    @Test
+    void testRebuiltFromStoredChunks() {
+        // saved before a restart, or on another node
+        EventRecordChunkRepository.CreatedChunkContent chunk = storedChunk("e1", LocalDateTime.now());
+        when(eventRecordChunkRepository.findChunkContentsCreatedAfter(eq("client"), any(), any()))
+                .thenReturn(List.of(chunk));
+        when(chunkEncryptionService.decrypt(eq("client"), any()))
+                .thenReturn("bike course".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(keywordIndexService.search("client", "bike", 10))
+                .extracting(KeywordIndexService.KeywordMatch::embeddingId).containsExactly("e1");
+    }
+
+    @Test
+    void testCatchUpSkipsIndexedChunks() {
+        jemberProperties.getKeywordSearch().setSyncInterval(Duration.ZERO);
+        keywordIndexService.index("client", UUID.randomUUID(), Map.of("e1", "bike course"));
+
+        EventRecordChunkRepository.CreatedChunkContent chunk = storedChunk("e1", LocalDateTime.now());
+        when(eventRecordChunkRepository.findChunkContentsCreatedAfter(eq("client"), any(), any()))
+                .thenReturn(List.of(chunk));
+
+        keywordIndexService.search("client", "bike", 10);
+        keywordIndexService.search("client", "bike", 10);
+
+        verify(eventRecordChunkRepository, times(2)).findChunkContentsCreatedAfter(eq("client"), any(), any());
+        verify(chunkEncryptionService, times(0)).decrypt(any(), any());
+    }
+
+    @Test
+    void testCatchUpOncePerSyncInterval() {
+        keywordIndexService.search("client", "bike", 10);
+        keywordIndexService.search("client", "bike", 10);
+
+        verify(eventRecordChunkRepository, times(1)).findChunkContentsCreatedAfter(eq("client"), any(), any());
+    }
+
+    private static EventRecordChunkRepository.CreatedChunkContent storedChunk(String embeddingId,
+                                                                            LocalDateTime dateCreated) {
+        EventRecordChunkRepository.CreatedChunkContent chunk = mock(EventRecordChunkRepository.CreatedChunkContent.class);
+        when(chunk.getEmbeddingId()).thenReturn(embeddingId);
+        when(chunk.getEventRecordId()).thenReturn(UUID.randomUUID());
+        when(chunk.getDateCreated()).thenReturn(dateCreated);
+        return chunk;
+    }
+}
@@ -18,24 +18,34 @@ import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import lombok.extern.slf4j.Slf4j;
 import org.jemberai.dataintake.config.JemberProperties;
-import org.jemberai.dataintake.domain.EventRecordChunk;
+import org.jemberai.dataintake.domain.DocumentMetadataKeys;
+import org.jemberai.dataintake.domain.SearchModeEnum;
+import org.jemberai.dataintake.embedding.ChunkContentSearch;
 import org.jemberai.dataintake.embedding.EmbeddingStoreFactory;
 import org.jemberai.dataintake.model.QueryRequest;
 import org.jemberai.dataintake.model.QueryResponseDocument;
 import org.jemberai.dataintake.repositories.EventRecordChunkRepository;
+import org.jemberai.dataintake.utils.ChunkBlockCodec;
+import org.jemberai.dataintake.utils.SearchModeNotAvailableException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.test.context.ContextConfiguration;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @Slf4j
 @ContextConfiguration(classes = {JemberProperties.class})
@@ -50,6 +60,18 @@ public class QueryServiceImplTest {
     @Mock
     private EventRecordChunkRepository eventRecordChunkRepository;
 
+    @Mock
+    private ChunkEncryptionService chunkEncryptionService;
+
+    @Mock
+    private ChunkBlockService chunkBlockService;
+
+    @Mock
+    private KeywordIndexService keywordIndexService;
+
+    @Spy
+    private JemberProperties jemberProperties = new JemberProperties();
+
     @Mock
     private EmbeddingStore<TextSegment> embeddingStore;
 
@@ -79,17 +101,199 @@ public class QueryServiceImplTest {
         EmbeddingSearchResult<TextSegment> searchResult = new EmbeddingSearchResult<>(List.of(match));
         when(embeddingStore.search(any(EmbeddingSearchRequest.class))).thenReturn(searchResult);
 
-        EventRecordChunk chunk = new EventRecordChunk();
+        EventRecordChunkRepository.ChunkContent chunk = mock(EventRecordChunkRepository.ChunkContent.class);
         UUID chunkId1 = UUID.randomUUID();
-        chunk.setId(chunkId1);
-        chunk.setData("test data".getBytes());
-        when(eventRecordChunkRepository.findAllByEventRecord_ClientIdAndEmbeddingIdIn(any(String.class), any(List.class)))
+        UUID eventRecordId = UUID.randomUUID();
+        when(chunk.getId()).thenReturn(chunkId1);
+        when(chunk.getEmbeddingId()).thenReturn("match-id-1");
+        when(chunk.getEventRecordId()).thenReturn(eventRecordId);
+        when(eventRecordChunkRepository.findChunkContents(any(String.class), any(List.class)))
                 .thenReturn(List.of(chunk));
+        when(chunkEncryptionService.decrypt(eq(clientId), any())).thenReturn("test data".getBytes());
 
         List<QueryResponseDocument> documents = queryService.getDocuments(clientId, queryRequest);
 
         assertEquals(1, documents.size());
         assertEquals(chunkId1.toString(), documents.getFirst().getId());
         assertEquals("test data", documents.getFirst().getContent());
+        assertEquals(eventRecordId.toString(), documents.getFirst().getMetadata().get(DocumentMetadataKeys.PARENT_DOCUMENT_ID));
+        verify(chunkEncryptionService, times(1)).decrypt(eq(clientId), any());
+    }
+
+    @Test
+    public void testGetDocumentsFromBlocks() {
+        String clientId = "test-client";
+        QueryRequest queryRequest = new QueryRequest();
+        queryRequest.setQuery("test query");
+
+        Response<Embedding> embeddingResponse = Response.from(new Embedding(new float[]{0.1f, 0.2f, 0.3f}));
+        when(embeddingModel.embed(any(String.class))).thenReturn(embeddingResponse);
+        when(embeddingStoreFactory.createEmbeddingStore(any(String.class), any(Integer.class))).thenReturn(embeddingStore);
+        when(embeddingStore.search(any(EmbeddingSearchRequest.class))).thenReturn(new EmbeddingSearchResult<>(List.of(
+                new EmbeddingMatch<>(0.9, "match-id-1", new Embedding(new float[]{0.1f}), null),
+                new EmbeddingMatch<>(0.8, "match-id-2", new Embedding(new float[]{0.1f}), null))));
+
+        UUID blockId = UUID.randomUUID();
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(List.of("first".getBytes(), "second".getBytes()));
+
+        EventRecordChunkRepository.ChunkContent chunk1 = blockChunk(blockId, "match-id-1", packed.offsets()[0]);
+        EventRecordChunkRepository.ChunkContent chunk2 = blockChunk(blockId, "match-id-2", packed.offsets()[1]);
+        when(eventRecordChunkRepository.findChunkContents(any(String.class), any(List.class)))
+                .thenReturn(List.of(chunk1, chunk2));
+        when(chunkBlockService.decryptBlocks(eq(clientId), any())).thenReturn(Map.of(blockId, packed.block()));
+
+        List<QueryResponseDocument> documents = queryService.getDocuments(clientId, queryRequest);
+
+        assertEquals(2, documents.size());
+        assertEquals("first", documents.get(0).getContent());
+        assertEquals("second", documents.get(1).getContent());
+        verify(chunkBlockService, times(1)).decryptBlocks(eq(clientId), any());
+        verifyNoInteractions(chunkEncryptionService);
+    }
+
+    @Test
+    public void testKeywordSearchSkipsEmbeddingModel() {
+        String clientId = "test-client";
+        QueryRequest queryRequest = QueryRequest.builder().query("bike course").searchMode(SearchModeEnum.KEYWORD).build();
+
+        when(keywordIndexService.isEnabled()).thenReturn(true);
+        when(keywordIndexService.search(clientId, "bike course", 4)).thenReturn(List.of(
+                new KeywordIndexService.KeywordMatch("match-id-2", 2.0),
+                new KeywordIndexService.KeywordMatch("match-id-1", 1.0)));
+
+        UUID blockId = UUID.randomUUID();
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(List.of("first".getBytes(), "second".getBytes()));
+        EventRecordChunkRepository.ChunkContent chunk1 = blockChunk(blockId, "match-id-1", packed.offsets()[0]);
+        EventRecordChunkRepository.ChunkContent chunk2 = blockChunk(blockId, "match-id-2", packed.offsets()[1]);
+        when(eventRecordChunkRepository.findChunkContents(any(String.class), any(List.class)))
+                .thenReturn(List.of(chunk1, chunk2));
+        when(chunkBlockService.decryptBlocks(eq(clientId), any())).thenReturn(Map.of(blockId, packed.block()));
+
+        List<QueryResponseDocument> documents = queryService.getDocuments(clientId, queryRequest);
+
+        // ranked order of the keyword search
+        assertEquals(2, documents.size());
+        assertEquals("second", documents.get(0).getContent());
+        assertEquals("first", documents.get(1).getContent());
+        verifyNoInteractions(embeddingModel, embeddingStoreFactory);
+    }
+
+    @Test
+    public void testKeywordSearchNotEnabled() {
+        QueryRequest queryRequest = QueryRequest.builder().query("bike course").searchMode(SearchModeEnum.HYBRID).build();
+
+        when(keywordIndexService.isEnabled()).thenReturn(false);
+
+        assertThrows(SearchModeNotAvailableException.class, () -> queryService.getDocuments("test-client", queryRequest));
+    }
+
+    @Test
+    public void testGetDocumentsPagedInRankOrderWithScores() {
+        String clientId = "test-client";
+        QueryRequest queryRequest = QueryRequest.builder().query("test query").topK(2).offset(1).includeEmbedding(true).build();
+
+        when(embeddingModel.embed(any(String.class))).thenReturn(Response.from(new Embedding(new float[]{0.1f})));
+        when(embeddingStoreFactory.createEmbeddingStore(any(String.class), any(Integer.class))).thenReturn(embeddingStore);
+        when(embeddingStore.search(any(EmbeddingSearchRequest.class))).thenReturn(new EmbeddingSearchResult<>(List.of(
+                new EmbeddingMatch<>(0.9, "match-id-1", new Embedding(new float[]{1f}), null),
+                new EmbeddingMatch<>(0.8, "match-id-2", new Embedding(new float[]{2f}), null),
+                new EmbeddingMatch<>(0.7, "match-id-3", new Embedding(new float[]{3f}), null))));
+
+        UUID blockId = UUID.randomUUID();
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(List.of("second".getBytes(), "third".getBytes()));
+        EventRecordChunkRepository.ChunkContent chunk2 = blockChunk(blockId, "match-id-2", packed.offsets()[0]);
+        EventRecordChunkRepository.ChunkContent chunk3 = blockChunk(blockId, "match-id-3", packed.offsets()[1]);
+        // not in rank order
+        when(eventRecordChunkRepository.findChunkContents(clientId, List.of("match-id-2", "match-id-3")))
+                .thenReturn(List.of(chunk3, chunk2));
+        when(chunkBlockService.decryptBlocks(eq(clientId), any())).thenReturn(Map.of(blockId, packed.block()));
+
+        List<QueryResponseDocument> documents = queryService.getDocuments(clientId, queryRequest);
+
+        ArgumentCaptor<EmbeddingSearchRequest> searchRequest = ArgumentCaptor.forClass(EmbeddingSearchRequest.class);
+        verify(embeddingStore).search(searchRequest.capture());
+        assertEquals(3, searchRequest.getValue().maxResults());
+
+        assertEquals(2, documents.size());
+        assertEquals("second", documents.get(0).getContent());
+        assertEquals(0.8, documents.get(0).getScore());
+        assertArrayEquals(new float[]{2f}, documents.get(0).getEmbedding());
+        assertEquals("third", documents.get(1).getContent());
+        assertEquals(0.7, documents.get(1).getScore());
+    }
+
+    @Test
+    public void testBatchEmbedsOnceAndReadsChunksOnce() {
+        String clientId = "test-client";
+        List<QueryRequest> queryRequests = List.of(
+                QueryRequest.builder().query("first query").topK(2).build(),
+                QueryRequest.builder().query("second query").topK(2).build());
+
+        when(embeddingModel.embedAll(any())).thenReturn(Response.from(List.of(
+                new Embedding(new float[]{0.1f}), new Embedding(new float[]{0.2f}))));
+        when(embeddingStoreFactory.createEmbeddingStore(any(String.class), any(Integer.class))).thenReturn(embeddingStore);
+        when(embeddingStore.search(any(EmbeddingSearchRequest.class))).thenAnswer(invocation -> {
+            EmbeddingSearchRequest request = invocation.getArgument(0);
+            return request.queryEmbedding().vector()[0] == 0.1f
+                    ? new EmbeddingSearchResult<>(List.of(new EmbeddingMatch<>(0.9, "match-id-1", null, null),
+                    new EmbeddingMatch<>(0.8, "match-id-2", null, null)))
+                    : new EmbeddingSearchResult<>(List.of(new EmbeddingMatch<>(0.7, "match-id-2", null, null)));
+        });
+
+        UUID blockId = UUID.randomUUID();
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(List.of("first".getBytes(), "second".getBytes()));
+        EventRecordChunkRepository.ChunkContent chunk1 = blockChunk(blockId, "match-id-1", packed.offsets()[0]);
+        EventRecordChunkRepository.ChunkContent chunk2 = blockChunk(blockId, "match-id-2", packed.offsets()[1]);
+        when(eventRecordChunkRepository.findChunkContents(clientId, List.of("match-id-1", "match-id-2")))
+                .thenReturn(List.of(chunk1, chunk2));
+        when(chunkBlockService.decryptBlocks(eq(clientId), any())).thenReturn(Map.of(blockId, packed.block()));
+
+        List<List<QueryResponseDocument>> results = queryService.getDocuments(clientId, queryRequests);
+
+        verify(embeddingModel, times(1)).embedAll(any());
+        verify(embeddingModel, never()).embed(any(String.class));
+        verify(eventRecordChunkRepository, times(1)).findChunkContents(any(String.class), any(List.class));
+        verify(chunkBlockService, times(1)).decryptBlocks(eq(clientId), any());
+
+        assertEquals(2, results.size());
+        assertEquals(List.of("first", "second"), results.get(0).stream().map(QueryResponseDocument::getContent).toList());
+        assertEquals(List.of("second"), results.get(1).stream().map(QueryResponseDocument::getContent).toList());
+        assertEquals(0.7, results.get(1).get(0).getScore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChunksReadWithVectorSearch() {
+        String clientId = "test-client";
+        QueryRequest queryRequest = QueryRequest.builder().query("test query").build();
+
+        EmbeddingStore<TextSegment> pgVectorStore = mock(EmbeddingStore.class, withSettings().extraInterfaces(ChunkContentSearch.class));
+
+        UUID blockId = UUID.randomUUID();
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(List.of("first".getBytes()));
+        EventRecordChunkRepository.ChunkContent chunk = blockChunk(blockId, "match-id-1", packed.offsets()[0]);
+
+        when(embeddingModel.embed(any(String.class))).thenReturn(Response.from(new Embedding(new float[]{0.1f})));
+        when(embeddingStoreFactory.createEmbeddingStore(any(String.class), any(Integer.class))).thenReturn(pgVectorStore);
+        when(((ChunkContentSearch) pgVectorStore).searchChunkContents(any(EmbeddingSearchRequest.class)))
+                .thenReturn(List.of(new ChunkContentSearch.ChunkMatch("match-id-1", 0.9, chunk)));
+        when(chunkBlockService.decryptBlocks(eq(clientId), any())).thenReturn(Map.of(blockId, packed.block()));
+
+        List<QueryResponseDocument> documents = queryService.getDocuments(clientId, queryRequest);
+
+        assertEquals(1, documents.size());
+        assertEquals("first", documents.getFirst().getContent());
+        assertEquals(0.9, documents.getFirst().getScore());
+        verify(pgVectorStore, never()).search(any(EmbeddingSearchRequest.class));
+        verify(eventRecordChunkRepository, never()).findChunkContents(any(String.class), any(List.class));
+    }
+
+    private EventRecordChunkRepository.ChunkContent blockChunk(UUID blockId, String embeddingId, int offset) {
+        EventRecordChunkRepository.ChunkContent chunk = mock(EventRecordChunkRepository.ChunkContent.class);
+        when(chunk.getId()).thenReturn(UUID.randomUUID());
+        when(chunk.getEmbeddingId()).thenReturn(embeddingId);
+        when(chunk.getBlockId()).thenReturn(blockId);
+        when(chunk.getBlockOffset()).thenReturn(offset);
+        return chunk;
     }
 }
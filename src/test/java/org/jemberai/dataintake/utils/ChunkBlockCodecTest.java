@@ -0,0 +1,64 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class ChunkBlockCodecTest {
+
+    @Test
+    void testPackAndSlice() {
+        List<byte[]> entries = List.of("first".getBytes(), new byte[0], "third chunk".getBytes());
+
+        ChunkBlockCodec.Packed packed = ChunkBlockCodec.pack(entries);
+
+        assertThat(packed.block()).hasSize(3 * ChunkBlockCodec.LENGTH_PREFIX_BYTES + 5 + 11);
+        assertThat(packed.offsets()).containsExactly(0, 9, 13);
+
+        for (int i = 0; i < entries.size(); i++) {
+            assertThat(ChunkBlockCodec.slice(packed.block(), packed.offsets()[i])).isEqualTo(entries.get(i));
+        }
+    }
+
+    @Test
+    void testUnpack() {
+        List<byte[]> entries = List.of("a".getBytes(), "bb".getBytes(), "ccc".getBytes());
+
+        assertThat(ChunkBlockCodec.unpack(ChunkBlockCodec.pack(entries).block()))
+                .containsExactlyElementsOf(entries);
+    }
+
+    @Test
+    void testSliceInvalidOffset() {
+        byte[] block = ChunkBlockCodec.pack(List.of("abc".getBytes())).block();
+
+        assertThatThrownBy(() -> ChunkBlockCodec.slice(block, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ChunkBlockCodec.slice(block, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class ReciprocalRankFusionTest {
+
+    @Test
+    void testFuse() {
+        Map<String, Double> fused = ReciprocalRankFusion.fuse(List.of(
+                List.of("a", "b", "c"),
+                List.of("c", "d", "a")), 60, 10);
+
+        // a and c tie, ties keep the order of first appearance
+        assertThat(fused.keySet()).containsExactly("a", "c", "b", "d");
+        assertThat(fused.get("a")).isEqualTo(1.0d / 61 + 1.0d / 63);
+    }
+
+    @Test
+    void testLimit() {
+        Map<String, Double> fused = ReciprocalRankFusion.fuse(List.of(List.of("a", "b", "c")), 60, 2);
+
+        assertThat(fused.keySet()).containsExactly("a", "b");
+    }
+
+    @Test
+    void testEmpty() {
+        assertThat(ReciprocalRankFusion.fuse(List.of(List.of(), List.of()), 60, 4)).isEmpty();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.jemberai.dataintake.embedding.EmbeddingBatcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class CsvPayloadParserTest {
+
+    private static final String HEADER = "id,title,year";
+
+    @Test
+    void testPacksWholeRows() {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < 100; i++) {
+            csv.append(i).append(",\"Movie ").append(i).append("\",19").append(i % 100).append('\n');
+        }
+
+        // a row is about 5 tokens at four characters per token
+        List<TextSegment> segments = parse(csv.toString(), HEADER, 40);
+
+        assertThat(segments).hasSizeGreaterThan(5);
+
+        List<String> rows = new ArrayList<>();
+        for (TextSegment segment : segments) {
+            // the header is embedded and stored with each chunk, and counts against the budget
+            assertThat(segment.text()).startsWith(HEADER + "\n");
+            assertThat(segment.text().length()).isLessThanOrEqualTo(40 * 4 + 10);
+
+            List<String> lines = List.of(segment.text().split("\n"));
+            assertThat(lines.subList(1, lines.size())).doesNotContain(HEADER);
+            rows.addAll(lines.subList(1, lines.size()));
+        }
+
+        // every row is kept whole, in order
+        assertThat(rows).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(rows.get(i)).isEqualTo(i + ",\"Movie " + i + "\",19" + i);
+        }
+    }
+
+    @Test
+    void testFirstRowIsHeaderWithoutStoredHeader() {
+        List<TextSegment> segments = parse("\n" + HEADER + "\n1,Alien,1979\n", null, 256);
+
+        assertThat(segments).extracting(TextSegment::text).containsExactly(HEADER + "\n1,Alien,1979");
+    }
+
+    @Test
+    void testKeepsFirstRowNotMatchingStoredHeader() {
+        List<TextSegment> segments = parse("1,Alien,1979\n2,Aliens,1986\n", HEADER, 256);
+
+        assertThat(segments).extracting(TextSegment::text)
+                .containsExactly(HEADER + "\n1,Alien,1979\n2,Aliens,1986");
+    }
+
+    @Test
+    void testSplitsRowOverBudget() {
+        String longTitle = "word ".repeat(200).strip();
+        String csv = HEADER + "\n1,Alien,1979\n2,\"" + longTitle + "\",1986\n3,Aliens,1986\n";
+
+        List<TextSegment> segments = parse(csv, HEADER, 20);
+
+        assertThat(segments.getFirst().text()).isEqualTo(HEADER + "\n1,Alien,1979");
+        assertThat(segments.getLast().text()).isEqualTo(HEADER + "\n3,Aliens,1986");
+        assertThat(segments.subList(1, segments.size() - 1)).hasSizeGreaterThan(1)
+                .allSatisfy(segment -> {
+                    assertThat(segment.text()).startsWith(HEADER + "\n");
+                    assertThat(segment.text().length()).isLessThanOrEqualTo(300);
+                });
+        assertThat(segments).extracting(segment -> segment.metadata().getString("index"))
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void testHeaderReadsFirstRowWithContent() throws Exception {
+        String csv = "\n  \n\"id\",\"multi\nline\"\n1,2\n";
+
+        assertThat(CsvRows.header(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8))
+                .isEqualTo("\"id\",\"multi\nline\"");
+        assertThat(CsvRows.header(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8)).isNull();
+    }
+
+    private static List<TextSegment> parse(String csv, String header, int maxTokens) {
+        EventRecord eventRecord = EventRecord.builder()
+                .dataContentType("text/csv")
+                .data(csv.getBytes(StandardCharsets.UTF_8))
+                .csvHeader(header)
+                .build();
+
+        List<TextSegment> segments = new ArrayList<>();
+        try (TextSegmentReader reader = PayloadParsers.forContentType("text/csv", maxTokens,
+                EmbeddingBatcher::estimateTokenCount).orElseThrow()
+                .parse(eventRecord, 300)) {
+            for (TextSegment segment = reader.next(); segment != null; segment = reader.next()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+package org.jemberai.dataintake.utils.parser;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.jemberai.dataintake.domain.EventRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class PayloadParsersTest {
+
+    @Test
+    void testForContentType() {
+        assertThat(PayloadParsers.forContentType("text/plain; charset=ISO-8859-1")).containsInstanceOf(PlainTextPayloadParser.class);
+        assertThat(PayloadParsers.forContentType("application/json")).containsInstanceOf(JsonPayloadParser.class);
+        assertThat(PayloadParsers.forContentType("application/cloudevents+json")).containsInstanceOf(JsonPayloadParser.class);
+        assertThat(PayloadParsers.forContentType("text/csv")).containsInstanceOf(CsvPayloadParser.class);
+        assertThat(PayloadParsers.forContentType("application/pdf")).isEmpty();
+        assertThat(PayloadParsers.forContentType("not a type")).isEmpty();
+        assertThat(PayloadParsers.forContentType(null)).isEmpty();
+    }
+
+    @Test
+    void testIsCsv() {
+        assertThat(PayloadParsers.isCsv("text/csv; charset=UTF-8")).isTrue();
+        assertThat(PayloadParsers.isCsv("application/json")).isFalse();
+        assertThat(PayloadParsers.isCsv(null)).isFalse();
+    }
+
+    @Test
+    void testPlainText() {
+        List<TextSegment> segments = parse("text/plain", "Hello world.\n\nSecond paragraph.", null);
+
+        assertThat(segments).extracting(TextSegment::text).containsExactly("Hello world.\n\nSecond paragraph.");
+    }
+
+    @Test
+    void testMalformedTextFails() {
+        EventRecord eventRecord = eventRecord("text/plain", new byte[]{'a', (byte) 0xC3, (byte) 0x28}, null);
+
+        assertThrows(RuntimeException.class, () -> PayloadParsers.forContentType("text/plain").orElseThrow()
+                .parse(eventRecord, 300));
+    }
+
+    @Test
+    void testJson() {
+        String json = """
+                {
+                    "appinfoA" : "abc",
+                    "appinfoB" : 123,
+                    "order" : { "items" : [ { "name" : "Widget" }, { "name" : "Gadget", "note" : null } ], "paid" : true }
+                }
+                """;
+
+        List<TextSegment> segments = parse("application/json", json, null);
+
+        assertThat(segments).hasSize(1);
+        assertThat(segments.getFirst().text().split("\n")).containsExactly(
+                "appinfoA: abc",
+                "appinfoB: 123",
+                "order.items[0].name: Widget",
+                "order.items[1].name: Gadget",
+                "order.paid: true");
+    }
+
+    @Test
+    void testInvalidJsonFails() {
+        assertThrows(RuntimeException.class, () -> parse("application/json", "{ \"a\" : ", null));
+    }
+
+    @Test
+    void testCsvSkipsStoredHeader() {
+        String csv = "id,title\n1,\"Alien\"\n2,\"The Thing,\nextended\"\n";
+
+        assertThat(parse("text/csv", csv, "id,title").getFirst().text())
+                .isEqualTo("1,\"Alien\"\n2,\"The Thing,\nextended\"");
+        assertThat(parse("text/csv", csv, null).getFirst().text()).isEqualTo("1,\"Alien\"\n2,\"The Thing,\nextended\"");
+    }
+
+    private static List<TextSegment> parse(String contentType, String data, String csvHeader) {
+        EventRecord eventRecord = eventRecord(contentType, data.getBytes(StandardCharsets.UTF_8), csvHeader);
+
+        List<TextSegment> segments = new ArrayList<>();
+        try (TextSegmentReader reader = PayloadParsers.forContentType(contentType).orElseThrow().parse(eventRecord, 300)) {
+            for (TextSegment segment = reader.next(); segment != null; segment = reader.next()) {
+                segments.add(segment);
+            }
+
+            assertThat(reader.metadata().getString("Content-Type")).isEqualTo(contentType);
+        }
+        return segments;
+    }
+
+    private static EventRecord eventRecord(String contentType, byte[] data, String csvHeader) {
+        return EventRecord.builder()
+                .dataContentType(contentType)
+                .data(data)
+                .csvHeader(csvHeader)
+                .build();
+    }
+}
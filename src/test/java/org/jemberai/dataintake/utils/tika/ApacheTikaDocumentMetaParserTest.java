@@ -0,0 +1,208 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils.tika;
+
+import dev.langchain4j.data.document.Document;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class ApacheTikaDocumentMetaParserTest {
+
+    @Test
+    void testParseContextsAreReused() {
+        RecordingParser parser = new RecordingParser();
+        ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(parser, 1, Duration.ofSeconds(10));
+
+        Document document = documentParser.parse(new ByteArrayInputStream("first".getBytes()));
+        documentParser.parse(new ByteArrayInputStream("second".getBytes()));
+
+        assertThat(document.text()).contains("first");
+        assertThat(parser.contexts).hasSize(2);
+        assertThat(parser.contexts.get(1)).isSameAs(parser.contexts.get(0));
+    }
+
+    @Test
+    void testTimeout() {
+        RecordingParser parser = new RecordingParser();
+        ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(parser, 1, Duration.ofMillis(200));
+
+        // never ends
+        InputStream endless = new InputStream() {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                b[off] = 'a';
+                return 1;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return read(new byte[1], 0, 1) == -1 ? -1 : 'a';
+            }
+        };
+
+        assertThrows(DocumentParseTimeoutException.class, () -> documentParser.parse(endless));
+
+        // the abandoned parse ends on the next read and hands its context back
+        Document document = documentParser.parse(new ByteArrayInputStream("next".getBytes()));
+
+        assertThat(document.text()).contains("next");
+        assertThat(parser.contexts.get(1)).isSameAs(parser.contexts.get(0));
+    }
+
+    @Test
+    void testAbandonedParseCountsAgainstPool() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        RecordingParser recordingParser = new RecordingParser();
+
+        // the first parse ignores the cancellation until released
+        Parser parser = new RecordingParser() {
+            @Override
+            public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+                    throws IOException, SAXException {
+                if (first.getAndSet(false)) {
+                    awaitUninterruptibly(release);
+                }
+                recordingParser.parse(stream, handler, metadata, context);
+            }
+        };
+        ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(parser, 1, Duration.ofMillis(100));
+
+        assertThrows(DocumentParseTimeoutException.class,
+                () -> documentParser.parse(new ByteArrayInputStream("stuck".getBytes())));
+
+        CompletableFuture<Document> next = CompletableFuture.supplyAsync(
+                () -> documentParser.parse(new ByteArrayInputStream("next".getBytes())));
+
+        // no context until the abandoned parse ends
+        assertThrows(TimeoutException.class, () -> next.get(300, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+
+        assertThat(next.get(10, TimeUnit.SECONDS).text()).contains("next");
+    }
+
+    @Test
+    void testMaxTextLength() {
+        ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(new RecordingParser(), 1,
+                Duration.ofSeconds(10), 5);
+
+        assertThat(documentParser.parse(new ByteArrayInputStream("abc".getBytes())).text()).contains("abc");
+        assertThatThrownBy(() -> documentParser.parse(new ByteArrayInputStream("abcdefgh".getBytes())))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void testForkParser() throws Exception {
+        ForkParser forkParser = new ForkParser(getClass().getClassLoader(), new AutoDetectParser());
+        forkParser.setPoolSize(1);
+
+        try (ApacheTikaDocumentMetaParser documentParser = new ApacheTikaDocumentMetaParser(forkParser, 1,
+                Duration.ofMinutes(1))) {
+            Document document = documentParser.parse(getClass().getClassLoader()
+                    .getResourceAsStream("files/file_sample_100kb.docx"));
+
+            assertThat(document.text()).isNotBlank();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the input as text.
+     */
+    private static class RecordingParser implements Parser {
+
+        private final List<ParseContext> contexts = new ArrayList<>();
+
+        @Override
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Set.of(MediaType.TEXT_PLAIN);
+        }
+
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+                throws IOException, SAXException {
+            synchronized (contexts) {
+                contexts.add(context);
+            }
+
+            StringBuilder text = new StringBuilder();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                text.append(new String(buffer, 0, read));
+            }
+
+            XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", text.toString());
+            xhtml.endDocument();
+        }
+    }
+}
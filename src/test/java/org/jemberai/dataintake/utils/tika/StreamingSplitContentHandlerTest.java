@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils.tika;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class StreamingSplitContentHandlerTest {
+
+    @Test
+    void testSameSegmentsAsRecursiveSplitter() throws SAXException {
+        String text = paragraphs(5);
+        List<TextSegment> segments = new ArrayList<>();
+
+        StreamingSplitContentHandler handler = new StreamingSplitContentHandler(300, segments::add);
+        write(handler, text);
+        handler.endDocument();
+
+        assertThat(segments).extracting(TextSegment::text).containsExactlyElementsOf(
+                DocumentSplitters.recursive(300, 0).split(Document.from(text)).stream().map(TextSegment::text).toList());
+        assertThat(segments.getLast().metadata().getString("index")).isEqualTo(String.valueOf(segments.size() - 1));
+    }
+
+    @Test
+    void testSegmentsBeforeEndOfDocument() throws SAXException {
+        String text = paragraphs(200);
+        List<TextSegment> segments = new ArrayList<>();
+
+        StreamingSplitContentHandler handler = new StreamingSplitContentHandler(300, segments::add);
+        write(handler, text);
+
+        assertThat(segments).isNotEmpty();
+
+        handler.endDocument();
+
+        assertThat(segments).allSatisfy(segment -> assertThat(segment.text().length()).isLessThanOrEqualTo(300));
+        assertThat(String.join(" ", segments.stream().map(TextSegment::text).toList()).split("\\s+"))
+                .containsExactly(text.trim().split("\\s+"));
+    }
+
+    private static void write(StreamingSplitContentHandler handler, String text) throws SAXException {
+        // in small pieces, as from a parser
+        for (int i = 0; i < text.length(); i += 100) {
+            char[] chars = text.substring(i, Math.min(i + 100, text.length())).toCharArray();
+            handler.characters(chars, 0, chars.length);
+        }
+    }
+
+    private static String paragraphs(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Paragraph ").append(i).append(" of the document. ")
+                    .append("The quick brown fox jumps over the lazy dog. ".repeat(1 + i % 5))
+                    .append("\n\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ *  * Copyright 2023 - 2024 the original author or authors.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  * https://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package org.jemberai.dataintake.utils.tika;
+
+import dev.langchain4j.data.document.BlankDocumentException;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.tika.parser.AutoDetectParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Created by jt, Spring Framework Guru.
+ */
+class TextSegmentStreamTest {
+
+    ApacheTikaDocumentMetaParser parser = new ApacheTikaDocumentMetaParser(new AutoDetectParser(), 2,
+            Duration.ofSeconds(30));
+
+    @Test
+    void testReadsSegmentsAndMetadata() {
+        List<TextSegment> segments = new ArrayList<>();
+
+        try (TextSegmentStream stream = TextSegmentStream.start(parser, input(300), 300, 4)) {
+            for (TextSegment segment = stream.next(); segment != null; segment = stream.next()) {
+                segments.add(segment);
+            }
+
+            assertThat(stream.metadata().getString("Content-Type")).startsWith("text/plain");
+        }
+
+        assertThat(segments).hasSizeGreaterThan(4);
+        assertThat(segments.getFirst().text()).startsWith("Line 0");
+    }
+
+    @Test
+    void testCloseStopsParser() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            // the parser is held back by the full queue until closed
+            try (TextSegmentStream stream = TextSegmentStream.start(parser, input(5000), 300, 1)) {
+                assertThat(stream.next()).isNotNull();
+            }
+
+            // the parse context is returned to the pool
+            try (TextSegmentStream stream = TextSegmentStream.start(parser, input(10), 300, 1)) {
+                assertThat(stream.next()).isNotNull();
+            }
+            try (TextSegmentStream stream = TextSegmentStream.start(parser, input(10), 300, 1)) {
+                assertThat(stream.next()).isNotNull();
+            }
+        });
+    }
+
+    @Test
+    void testBlankDocument() {
+        try (TextSegmentStream stream = TextSegmentStream.start(parser, new ByteArrayInputStream(new byte[0]), 300, 4)) {
+            assertThrows(BlankDocumentException.class, stream::next);
+        }
+    }
+
+    private static ByteArrayInputStream input(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("Line ").append(i).append(" of a plain text document, long enough to fill a few segments.\n");
+        }
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}